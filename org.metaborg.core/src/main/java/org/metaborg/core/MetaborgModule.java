@@ -1,6 +1,7 @@
 package org.metaborg.core;
 
 import org.apache.commons.vfs2.FileSystemManager;
+import org.metaborg.core.analysis.AnalysisMetricsConfiguration;
 import org.metaborg.core.analysis.AnalysisService;
 import org.metaborg.core.analysis.IAnalysisService;
 import org.metaborg.core.analysis.IAnalyzeUnit;
@@ -55,12 +56,14 @@ import org.metaborg.core.processing.analyze.IAnalysisResultUpdater;
 import org.metaborg.core.processing.parse.IParseResultProcessor;
 import org.metaborg.core.processing.parse.IParseResultRequester;
 import org.metaborg.core.processing.parse.IParseResultUpdater;
+import org.metaborg.core.processing.parse.ParseResultCacheConfiguration;
 import org.metaborg.core.processing.parse.ParseResultProcessor;
 import org.metaborg.core.project.IProjectService;
 import org.metaborg.core.project.ISimpleProjectService;
 import org.metaborg.core.project.SimpleProjectService;
 import org.metaborg.core.resource.DefaultFileSystemManagerProvider;
 import org.metaborg.core.resource.IResourceService;
+import org.metaborg.core.resource.ResourceResolutionCacheConfiguration;
 import org.metaborg.core.resource.ResourceService;
 import org.metaborg.core.source.ISourceTextService;
 import org.metaborg.core.source.SourceTextService;
@@ -136,6 +139,7 @@ public class MetaborgModule extends AbstractModule {
     }
 
     protected void bindResource() {
+        bind(ResourceResolutionCacheConfiguration.class).toInstance(new ResourceResolutionCacheConfiguration());
         bind(ResourceService.class).in(Singleton.class);
         bind(IResourceService.class).to(ResourceService.class);
         // Close the resource service late, so that other services can first close their resource handles.
@@ -162,6 +166,7 @@ public class MetaborgModule extends AbstractModule {
         bind(ContextService.class).in(Singleton.class);
         bind(IContextService.class).to(ContextService.class);
         bind(IContextProcessor.class).to(ContextService.class);
+        autoClosableBinder.addBinding().to(ContextService.class);
     }
 
     protected void bindContextFactories(@SuppressWarnings("unused") MapBinder<String, IContextFactory> binder) {
@@ -216,10 +221,12 @@ public class MetaborgModule extends AbstractModule {
     }
 
     protected void bindAnalysis() {
+        bind(AnalysisMetricsConfiguration.class).toInstance(new AnalysisMetricsConfiguration());
         bind(IAnalysisService.class).to(AnalysisService.class).in(Singleton.class);
     }
 
     protected void bindBuilder() {
+        bind(ParseResultCacheConfiguration.class).toInstance(new ParseResultCacheConfiguration());
         bind(ParseResultProcessor.class).in(Singleton.class);
         bind(IParseResultRequester.class).to(ParseResultProcessor.class);
         bind(IParseResultUpdater.class).to(ParseResultProcessor.class);
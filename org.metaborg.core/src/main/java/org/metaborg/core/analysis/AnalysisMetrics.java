@@ -0,0 +1,90 @@
+package org.metaborg.core.analysis;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Performance metrics of one or more analyses. Metrics of several analyses, for example of all contexts analyzed in a
+ * build, are aggregated with {@link #merge(AnalysisMetrics)}: durations and counts are summed per name.
+ */
+public class AnalysisMetrics {
+    /** Number of analyses these metrics were aggregated from. */
+    public final int analyses;
+    /** Number of analyzed units. */
+    public final int units;
+    /** Time in nanoseconds the analyses took. */
+    public final long duration;
+    /** Time in milliseconds the analyses spent in each phase, as reported by the analyzer, in reporting order. */
+    public final Map<String, Long> phaseDurations;
+    /** Analyzer specific counts, such as the number of evaluated tasks, in reporting order. */
+    public final Map<String, Long> counts;
+    /** Partitions that were affected by the analyses. */
+    public final Set<String> affectedPartitions;
+
+
+    public AnalysisMetrics(int analyses, int units, long duration, Map<String, Long> phaseDurations,
+        Map<String, Long> counts, Iterable<String> affectedPartitions) {
+        this.analyses = analyses;
+        this.units = units;
+        this.duration = duration;
+        this.phaseDurations = ImmutableMap.copyOf(phaseDurations);
+        this.counts = ImmutableMap.copyOf(counts);
+        this.affectedPartitions = ImmutableSet.copyOf(affectedPartitions);
+    }
+
+    public AnalysisMetrics(int units, long duration) {
+        this(1, units, duration, Collections.<String, Long>emptyMap(), Collections.<String, Long>emptyMap(),
+            Collections.<String>emptySet());
+    }
+
+
+    /**
+     * @return Metrics aggregated from these and given metrics.
+     */
+    public AnalysisMetrics merge(AnalysisMetrics other) {
+        final Set<String> partitions = Sets.newLinkedHashSet(affectedPartitions);
+        partitions.addAll(other.affectedPartitions);
+        return new AnalysisMetrics(analyses + other.analyses, units + other.units, duration + other.duration,
+            sum(phaseDurations, other.phaseDurations), sum(counts, other.counts), partitions);
+    }
+
+    private static Map<String, Long> sum(Map<String, Long> left, Map<String, Long> right) {
+        final Map<String, Long> result = Maps.newLinkedHashMap(left);
+        for(Entry<String, Long> entry : right.entrySet()) {
+            final Long value = result.get(entry.getKey());
+            result.put(entry.getKey(), value == null ? entry.getValue() : value + entry.getValue());
+        }
+        return result;
+    }
+
+
+    @Override public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(analyses).append(" analyses of ").append(units).append(" units in ")
+            .append(TimeUnit.NANOSECONDS.toMillis(duration)).append(" ms");
+        if(!phaseDurations.isEmpty()) {
+            sb.append(", phases:");
+            for(Entry<String, Long> entry : phaseDurations.entrySet()) {
+                sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+            }
+        }
+        if(!counts.isEmpty()) {
+            sb.append(", counts:");
+            for(Entry<String, Long> entry : counts.entrySet()) {
+                sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        if(!affectedPartitions.isEmpty()) {
+            sb.append(", ").append(affectedPartitions.size()).append(" affected partitions");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package org.metaborg.core.analysis;
+
+/**
+ * Configuration of the collection of {@link AnalysisMetrics} by analyzers. Metrics are not collected by default.
+ */
+public class AnalysisMetricsConfiguration {
+    public final boolean enabled;
+
+    public AnalysisMetricsConfiguration() {
+        this(false);
+    }
+
+    public AnalysisMetricsConfiguration(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
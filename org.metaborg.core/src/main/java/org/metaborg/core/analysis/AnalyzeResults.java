@@ -2,6 +2,8 @@ package org.metaborg.core.analysis;
 
 import java.util.Collection;
 
+import javax.annotation.Nullable;
+
 import org.metaborg.core.context.IContext;
 
 import com.google.common.collect.Lists;
@@ -10,12 +12,19 @@ public class AnalyzeResults<A extends IAnalyzeUnit, AU extends IAnalyzeUnitUpdat
     private final Collection<A> results;
     private final Collection<AU> updates;
     private final IContext context;
+    private final @Nullable AnalysisMetrics metrics;
 
 
-    public AnalyzeResults(Collection<A> results, Collection<AU> updates, IContext context) {
+    public AnalyzeResults(Collection<A> results, Collection<AU> updates, IContext context,
+        @Nullable AnalysisMetrics metrics) {
         this.results = results;
         this.updates = updates;
         this.context = context;
+        this.metrics = metrics;
+    }
+
+    public AnalyzeResults(Collection<A> results, Collection<AU> updates, IContext context) {
+        this(results, updates, context, null);
     }
 
     public AnalyzeResults(Collection<A> results, IContext context) {
@@ -38,4 +47,8 @@ public class AnalyzeResults<A extends IAnalyzeUnit, AU extends IAnalyzeUnitUpdat
     @Override public IContext context() {
         return context;
     }
+
+    @Override public @Nullable AnalysisMetrics metrics() {
+        return metrics;
+    }
 }
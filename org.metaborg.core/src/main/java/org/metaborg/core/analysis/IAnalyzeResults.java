@@ -2,6 +2,8 @@ package org.metaborg.core.analysis;
 
 import java.util.Collection;
 
+import javax.annotation.Nullable;
+
 import org.metaborg.core.context.IContext;
 
 /**
@@ -27,4 +29,10 @@ public interface IAnalyzeResults<A extends IAnalyzeUnit, AU extends IAnalyzeUnit
      * @return The context that was used during analysis.
      */
     IContext context();
+
+    /**
+     * @return Performance metrics of the analysis, or null if the analyzer did not collect metrics. Metrics are only
+     *         collected when enabled in the {@link AnalysisMetricsConfiguration}.
+     */
+    @Nullable AnalysisMetrics metrics();
 }
@@ -0,0 +1,62 @@
+package org.metaborg.core.build;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Worker pools of a single build. Pools are created on first use, shared by all languages and contexts of the build,
+ * and shut down when the build finishes. Not thread-safe, only the thread running the build may use this.
+ */
+final class BuildExecutors implements AutoCloseable {
+    private final BuildInput input;
+
+    private @Nullable ExecutorService parseExecutor;
+    private @Nullable ExecutorService transformExecutor;
+
+
+    BuildExecutors(BuildInput input) {
+        this.input = input;
+    }
+
+
+    /**
+     * @return Worker pool with {@link BuildInput#parseThreads} threads, for reading and parsing resources.
+     */
+    ExecutorService parse() {
+        if(parseExecutor == null) {
+            parseExecutor = newExecutor(input.parseThreads, "metaborg-parse-%d");
+        }
+        return parseExecutor;
+    }
+
+    /**
+     * @return Worker pool with {@link BuildInput#transformThreads} threads, for transforming units.
+     */
+    ExecutorService transform() {
+        if(transformExecutor == null) {
+            transformExecutor = newExecutor(input.transformThreads, "metaborg-transform-%d");
+        }
+        return transformExecutor;
+    }
+
+    @Override public void close() {
+        if(parseExecutor != null) {
+            parseExecutor.shutdownNow();
+            parseExecutor = null;
+        }
+        if(transformExecutor != null) {
+            transformExecutor.shutdownNow();
+            transformExecutor = null;
+        }
+    }
+
+
+    private static ExecutorService newExecutor(int threads, String nameFormat) {
+        return Executors.newFixedThreadPool(threads,
+            new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    }
+}
@@ -94,12 +94,46 @@ public class BuildInput {
      */
     public final Set<ILanguageImpl> pardonedLanguages;
 
+    /**
+     * Number of threads used to parse changed resources. When 1, resources are parsed sequentially on the calling
+     * thread. When larger than 1, languages whose parser does not support concurrent parsing are still parsed
+     * sequentially.
+     */
+    public final int parseThreads;
+
+    /**
+     * Number of threads used to transform the units of a context. When 1, units are transformed sequentially on the
+     * calling thread. When larger than 1, the transformer of each language must support concurrent transformation.
+     */
+    public final int transformThreads;
+
 
     public BuildInput(BuildState state, IProject project, Iterable<ResourceChange> resourceChanges,
         Multimap<ILanguageImpl, FileObject> includePaths, BuildOrder buildOrder, @Nullable FileSelector parseSelector,
         boolean analyze, @Nullable FileSelector analyzeSelector, boolean transform,
         @Nullable FileSelector transformSelector, Iterable<ITransformGoal> transformGoals,
         @Nullable IMessagePrinter messagePrinter, boolean throwOnErrors, Set<ILanguageImpl> pardonedLanguages) {
+        this(state, project, resourceChanges, includePaths, buildOrder, parseSelector, analyze, analyzeSelector,
+            transform, transformSelector, transformGoals, messagePrinter, throwOnErrors, pardonedLanguages, 1);
+    }
+
+    public BuildInput(BuildState state, IProject project, Iterable<ResourceChange> resourceChanges,
+        Multimap<ILanguageImpl, FileObject> includePaths, BuildOrder buildOrder, @Nullable FileSelector parseSelector,
+        boolean analyze, @Nullable FileSelector analyzeSelector, boolean transform,
+        @Nullable FileSelector transformSelector, Iterable<ITransformGoal> transformGoals,
+        @Nullable IMessagePrinter messagePrinter, boolean throwOnErrors, Set<ILanguageImpl> pardonedLanguages,
+        int parseThreads) {
+        this(state, project, resourceChanges, includePaths, buildOrder, parseSelector, analyze, analyzeSelector,
+            transform, transformSelector, transformGoals, messagePrinter, throwOnErrors, pardonedLanguages,
+            parseThreads, 1);
+    }
+
+    public BuildInput(BuildState state, IProject project, Iterable<ResourceChange> resourceChanges,
+        Multimap<ILanguageImpl, FileObject> includePaths, BuildOrder buildOrder, @Nullable FileSelector parseSelector,
+        boolean analyze, @Nullable FileSelector analyzeSelector, boolean transform,
+        @Nullable FileSelector transformSelector, Iterable<ITransformGoal> transformGoals,
+        @Nullable IMessagePrinter messagePrinter, boolean throwOnErrors, Set<ILanguageImpl> pardonedLanguages,
+        int parseThreads, int transformThreads) {
         this.state = state;
         this.project = project;
         this.sourceChanges = resourceChanges;
@@ -114,5 +148,7 @@ public class BuildInput {
         this.messagePrinter = messagePrinter;
         this.throwOnErrors = throwOnErrors;
         this.pardonedLanguages = pardonedLanguages;
+        this.parseThreads = parseThreads;
+        this.transformThreads = transformThreads;
     }
 }
@@ -60,6 +60,9 @@ public class BuildInputBuilder {
     private Set<ILanguageImpl> pardonedLanguages;
     private Set<String> pardonedLanguageStrings;
 
+    private int parseThreads;
+    private int transformThreads;
+
 
     @Inject public BuildInputBuilder(IProject project) {
         this.project = project;
@@ -88,6 +91,8 @@ public class BuildInputBuilder {
         throwOnErrors = false;
         pardonedLanguages = Sets.newHashSet();
         pardonedLanguageStrings = Sets.newHashSet();
+        parseThreads = 1;
+        transformThreads = 1;
         return this;
     }
 
@@ -384,6 +389,32 @@ public class BuildInputBuilder {
     }
 
 
+    /**
+     * Sets the number of threads used to parse changed resources. Defaults to 1, which parses sequentially. Parsing
+     * with multiple threads requires parsers that support concurrent parsing.
+     */
+    public BuildInputBuilder withParseThreads(int parseThreads) {
+        if(parseThreads < 1) {
+            throw new IllegalArgumentException("Number of parse threads must be at least 1, got " + parseThreads);
+        }
+        this.parseThreads = parseThreads;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used to transform the units of a context. Defaults to 1, which transforms
+     * sequentially. Transforming with multiple threads requires transformers that support concurrent transformation.
+     */
+    public BuildInputBuilder withTransformThreads(int transformThreads) {
+        if(transformThreads < 1) {
+            throw new IllegalArgumentException(
+                "Number of transform threads must be at least 1, got " + transformThreads);
+        }
+        this.transformThreads = transformThreads;
+        return this;
+    }
+
+
     /**
      * Builds a build input object from the current state.
      * 
@@ -423,6 +454,6 @@ public class BuildInputBuilder {
 
         return new BuildInput(state, this.project, sourceChanges, includePaths, new BuildOrder(languages), selector,
             analyze, analyzeSelector, transform, transformSelector, transformGoals, messagePrinter, throwOnErrors,
-            pardonedLanguages);
+            pardonedLanguages, parseThreads, transformThreads);
     }
 }
@@ -11,6 +11,7 @@ import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.util.collection.BiLinkedHashMultimap;
 import org.metaborg.util.collection.BiSetMultimap;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -34,7 +35,7 @@ public class BuildOrder {
      */
     public BuildOrder(Iterable<ILanguageImpl> languages) throws MetaborgRuntimeException {
         final int size = Iterables.size(languages);
-        this.languages = languages;
+        this.languages = ImmutableList.copyOf(languages);
         this.buildOrder = Lists.newArrayListWithCapacity(size);
         if(size == 0) {
             return;
@@ -1,10 +1,14 @@
 package org.metaborg.core.build;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.analysis.AnalysisMetrics;
 import org.metaborg.core.analysis.IAnalyzeUnit;
 import org.metaborg.core.analysis.IAnalyzeUnitUpdate;
 import org.metaborg.core.messages.IMessage;
@@ -13,6 +17,7 @@ import org.metaborg.core.transform.ITransformUnit;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 public class BuildOutput<P extends IParseUnit, A extends IAnalyzeUnit, AU extends IAnalyzeUnitUpdate, T extends ITransformUnit<?>>
@@ -23,6 +28,8 @@ public class BuildOutput<P extends IParseUnit, A extends IAnalyzeUnit, AU extend
     public final Set<FileName> includedResources = Sets.newHashSet();
     public final Collection<FileObject> changedResources = Lists.newArrayList();
     public final Collection<P> parseResults = Lists.newArrayList();
+    public final Map<FileName, Long> parseDurations = Maps.newLinkedHashMap();
+    public @Nullable AnalysisMetrics analysisMetrics;
     public final Collection<A> analysisResults = Lists.newArrayList();
     public final Collection<AU> analysisUpdates = Lists.newArrayList();
     public final Collection<T> transformResults = Lists.newArrayList();
@@ -53,6 +60,14 @@ public class BuildOutput<P extends IParseUnit, A extends IAnalyzeUnit, AU extend
         return parseResults;
     }
 
+    @Override public Map<FileName, Long> parseDurations() {
+        return parseDurations;
+    }
+
+    @Override public @Nullable AnalysisMetrics analysisMetrics() {
+        return analysisMetrics;
+    }
+
     @Override public Iterable<A> analysisResults() {
         return analysisResults;
     }
@@ -102,4 +117,16 @@ public class BuildOutput<P extends IParseUnit, A extends IAnalyzeUnit, AU extend
         Iterables.addAll(this.transformResults, transformResults);
         Iterables.addAll(this.extraMessages, extraMessages);
     }
+
+    @Override public void addParseDurations(Map<FileName, Long> parseDurations) {
+        this.parseDurations.putAll(parseDurations);
+    }
+
+    @Override public void addAnalysisMetrics(AnalysisMetrics analysisMetrics) {
+        if(this.analysisMetrics == null) {
+            this.analysisMetrics = analysisMetrics;
+        } else {
+            this.analysisMetrics = this.analysisMetrics.merge(analysisMetrics);
+        }
+    }
 }
@@ -2,8 +2,13 @@ package org.metaborg.core.build;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -14,6 +19,7 @@ import org.apache.commons.vfs2.FileSystemException;
 import org.metaborg.core.MetaborgRuntimeException;
 import org.metaborg.core.action.ITransformGoal;
 import org.metaborg.core.analysis.AnalysisException;
+import org.metaborg.core.analysis.AnalysisMetrics;
 import org.metaborg.core.analysis.IAnalysisService;
 import org.metaborg.core.analysis.IAnalyzeResults;
 import org.metaborg.core.analysis.IAnalyzeUnit;
@@ -23,6 +29,8 @@ import org.metaborg.core.context.ContextException;
 import org.metaborg.core.context.ContextUtils;
 import org.metaborg.core.context.IContext;
 import org.metaborg.core.context.IContextService;
+import org.metaborg.core.editor.IEditor;
+import org.metaborg.core.editor.IEditorRegistry;
 import org.metaborg.core.language.ILanguageIdentifierService;
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.core.language.IdentifiedResource;
@@ -44,10 +52,13 @@ import org.metaborg.core.syntax.IInputUnit;
 import org.metaborg.core.syntax.IParseUnit;
 import org.metaborg.core.syntax.ISyntaxService;
 import org.metaborg.core.syntax.ParseException;
+import org.metaborg.core.transform.ITransformConfig;
 import org.metaborg.core.transform.ITransformOutput;
 import org.metaborg.core.transform.ITransformService;
 import org.metaborg.core.transform.ITransformUnit;
+import org.metaborg.core.transform.TransformConfig;
 import org.metaborg.core.transform.TransformException;
+import org.metaborg.core.unit.IUnit;
 import org.metaborg.core.unit.IUnitService;
 import org.metaborg.util.RefBool;
 import org.metaborg.util.concurrent.IClosableLock;
@@ -57,10 +68,14 @@ import org.metaborg.util.log.LoggerUtils;
 import org.metaborg.util.resource.FileSelectorUtils;
 import org.metaborg.util.task.ICancel;
 import org.metaborg.util.task.IProgress;
+import org.metaborg.util.task.NullProgress;
+import org.metaborg.util.time.Timer;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
@@ -98,6 +113,7 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
 
     private final IParseResultUpdater<P> parseResultUpdater;
     private final IAnalysisResultUpdater<P, A> analysisResultUpdater;
+    private final IEditorRegistry editorRegistry;
 
     private final Provider<IBuildOutputInternal<P, A, AU, T>> buildOutputProvider;
 
@@ -107,7 +123,7 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
         ISourceTextService sourceTextService, ISyntaxService<I, P> syntaxService, IContextService contextService,
         IAnalysisService<P, A, AU> analysisService, ITransformService<P, A, TP, TA> transformService,
         IParseResultUpdater<P> parseResultUpdater, IAnalysisResultUpdater<P, A> analysisResultUpdater,
-        Provider<IBuildOutputInternal<P, A, AU, T>> buildOutputProvider) {
+        IEditorRegistry editorRegistry, Provider<IBuildOutputInternal<P, A, AU, T>> buildOutputProvider) {
         this.resourceService = resourceService;
         this.languageIdentifier = languageIdentifier;
         this.languagePathService = languagePathService;
@@ -120,6 +136,7 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
 
         this.parseResultUpdater = parseResultUpdater;
         this.analysisResultUpdater = analysisResultUpdater;
+        this.editorRegistry = editorRegistry;
 
         this.buildOutputProvider = buildOutputProvider;
     }
@@ -147,32 +164,38 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
 
         final Iterable<ILanguageImpl> buildOrder = input.buildOrder.buildOrder();
         progress.setWorkRemaining(Iterables.size(buildOrder));
-        for(ILanguageImpl language : buildOrder) {
-            cancel.throwIfCancelled();
+        final Multimap<ILanguageImpl, IContext> analyzedContexts = LinkedHashMultimap.create();
+        try(BuildExecutors executors = new BuildExecutors(input)) {
+            for(ILanguageImpl language : buildOrder) {
+                cancel.throwIfCancelled();
 
-            final LanguageBuildState languageState = input.state.get(resourceService, languageIdentifier, language);
-            final Collection<IdentifiedResourceChange> sourceChanges = changes.get(language);
-            if(sourceChanges.size() == 0) {
-                // When there are no source changes for this language, keep the old state and don't build.
-                newState.add(language, languageState);
-                continue;
-            }
+                final LanguageBuildState languageState =
+                    input.state.get(resourceService, languageIdentifier, language);
+                final Collection<IdentifiedResourceChange> sourceChanges = changes.get(language);
+                if(sourceChanges.size() == 0) {
+                    // When there are no source changes for this language, keep the old state and don't build.
+                    newState.add(language, languageState);
+                    continue;
+                }
 
-            final Iterable<FileObject> includePaths = input.includePaths.get(language);
-            final Iterable<IdentifiedResource> includeFiles = languagePathService.toFiles(includePaths, language);
-            final LanguageBuildDiff diff = languageState.diff(changes.get(language), includeFiles);
-            final boolean pardoned = input.pardonedLanguages.contains(language);
+                final Iterable<FileObject> includePaths = input.includePaths.get(language);
+                final Iterable<IdentifiedResource> includeFiles = languagePathService.toFiles(includePaths, language);
+                final LanguageBuildDiff diff = languageState.diff(changes.get(language), includeFiles);
+                final boolean pardoned = input.pardonedLanguages.contains(language);
 
-            final Collection<FileObject> newResources =
-                updateLanguageResources(input, language, diff, buildOutput, pardoned, progress.subProgress(1), cancel);
+                final Collection<FileObject> newResources = updateLanguageResources(input, language, diff,
+                    buildOutput, pardoned, analyzedContexts, executors, progress.subProgress(1), cancel);
 
-            final Iterable<ResourceChange> newResourceChanges =
-                ResourceUtils.toChanges(newResources, ResourceChangeKind.Create);
-            identifyResources(newResourceChanges, input, changes, cancel);
+                final Iterable<ResourceChange> newResourceChanges =
+                    ResourceUtils.toChanges(newResources, ResourceChangeKind.Create);
+                identifyResources(newResourceChanges, input, changes, cancel);
 
-            newState.add(language, diff.newState);
+                newState.add(language, diff.newState);
+            }
         }
 
+        flushContexts(input, analyzedContexts, buildOutput);
+
         final IMessagePrinter printer = input.messagePrinter;
         if(printer != null) {
             printer.printSummary();
@@ -182,6 +205,29 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
     }
 
 
+    /**
+     * Waits until the contexts analyzed in this build have been persisted, such that a successful build has persisted
+     * its analysis data. Contexts are persisted in the background while building, which coalesces persists of contexts
+     * that are analyzed several times, so this only waits for persists that have not finished yet.
+     */
+    private void flushContexts(BuildInput input, Multimap<ILanguageImpl, IContext> analyzedContexts,
+        IBuildOutputInternal<P, A, AU, T> output) {
+        final FileObject location = input.project.location();
+        for(ILanguageImpl language : analyzedContexts.keySet()) {
+            try {
+                contextService.flush(analyzedContexts.get(language));
+            } catch(IOException e) {
+                final String message = "Persisting analysis data failed unexpectedly";
+                final boolean pardoned = input.pardonedLanguages.contains(language);
+                final boolean noErrors = printMessage(message, e, input, pardoned);
+                final IMessage error = MessageFactory.newAnalysisErrorAtTop(location, message, e);
+                output.add(noErrors, Iterables2.<FileName>empty(), Iterables2.<FileName>empty(),
+                    Iterables2.<FileObject>empty(), Iterables2.<P>empty(), Iterables2.<A>empty(),
+                    Iterables2.<AU>empty(), Iterables2.<T>empty(), Iterables2.singleton(error));
+            }
+        }
+    }
+
     private void identifyResources(Iterable<ResourceChange> changes, BuildInput input,
         Multimap<ILanguageImpl, IdentifiedResourceChange> identifiedChanges, ICancel cancel)
         throws InterruptedException {
@@ -213,7 +259,8 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
 
 
     private Collection<FileObject> updateLanguageResources(BuildInput input, ILanguageImpl language,
-        LanguageBuildDiff diff, IBuildOutputInternal<P, A, AU, T> output, boolean pardoned, IProgress progress,
+        LanguageBuildDiff diff, IBuildOutputInternal<P, A, AU, T> output, boolean pardoned,
+        Multimap<ILanguageImpl, IContext> analyzedContexts, BuildExecutors executors, IProgress progress,
         ICancel cancel) throws InterruptedException {
         cancel.throwIfCancelled();
 
@@ -230,6 +277,7 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
         final FileObject location = input.project.location();
         final Collection<FileObject> changedSources = Sets.newHashSet();
         final Set<FileName> removedResources = Sets.newHashSet();
+        final Map<FileName, Long> parseDurations = Maps.newLinkedHashMap();
         final Collection<IMessage> extraMessages = Lists.newLinkedList();
         final RefBool success = new RefBool(true);
 
@@ -239,11 +287,11 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
         // Parse
         cancel.throwIfCancelled();
         final Collection<P> sourceParseUnits = parse(input, language, sourceChanges, pardoned, changedSources,
-            removedResources, extraMessages, success, progress.subProgress(5), cancel);
+            removedResources, parseDurations, extraMessages, success, executors, progress.subProgress(5), cancel);
         // GTODO: when a new context is created, all include files need to be parsed and analyzed in that context, this
         // approach does not do that!
         final Collection<P> includeParseUnits = parse(input, language, includeChanges, pardoned, changedSources,
-            removedResources, extraMessages, success, progress.subProgress(5), cancel);
+            removedResources, parseDurations, extraMessages, success, executors, progress.subProgress(5), cancel);
         final Iterable<P> allParseResults = Iterables.concat(sourceParseUnits, includeParseUnits);
 
         // Segregate by context
@@ -266,11 +314,13 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
         cancel.throwIfCancelled();
         final Multimap<IContext, A> allAnalyzeUnits;
         final Collection<AU> allAnalyzeUpdates = Lists.newArrayList();
+        final Collection<AnalysisMetrics> analysisMetrics = Lists.newArrayList();
         if(analyze) {
             // Run analysis
             cancel.throwIfCancelled();
             allAnalyzeUnits = analyze(input, language, location, parseUnitsPerContext, includeParseUnits, pardoned,
-                allAnalyzeUpdates, removedResources, extraMessages, success, progress.subProgress(45), cancel);
+                allAnalyzeUpdates, analysisMetrics, removedResources, extraMessages, success, progress.subProgress(45),
+                cancel);
         } else {
             allAnalyzeUnits = ArrayListMultimap.create();
         }
@@ -279,22 +329,42 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
         cancel.throwIfCancelled();
         final Collection<T> allTransformUnits;
         if(transform) {
-            allTransformUnits = transform(input, language, location, parseUnitsPerContext, allAnalyzeUnits, includes, pardoned,
-                removedResources, extraMessages, success, progress.subProgress(45), cancel);
+            allTransformUnits = transform(input, language, location, parseUnitsPerContext, allAnalyzeUnits, includes,
+                pardoned, removedResources, extraMessages, success, executors, progress.subProgress(45), cancel);
         } else {
             allTransformUnits = Lists.newLinkedList();
         }
 
+        if(analyze) {
+            // Persisted in the background, and flushed once all languages have been built.
+            analyzedContexts.putAll(language, parseUnitsPerContext.keySet());
+        }
+
         printMessages(extraMessages, "Something", input, pardoned);
 
         output.add(success.get(), removedResources, includes, changedSources, allParseResults, allAnalyzeUnits.values(),
             allAnalyzeUpdates, allTransformUnits, extraMessages);
+        output.addParseDurations(parseDurations);
+        for(AnalysisMetrics metrics : analysisMetrics) {
+            output.addAnalysisMetrics(metrics);
+        }
+
+        // Only keep parse results of resources that are open in an editor strongly reachable, such that building many
+        // resources does not fill a bounded parse result cache. Released parse results are still returned until
+        // collected. Releasing does nothing when the cache is unbounded.
+        final Set<FileName> openResources = openResources();
+        for(FileObject resource : changedSources) {
+            if(!openResources.contains(resource.getName())) {
+                parseResultUpdater.release(resource);
+            }
+        }
 
         final Collection<FileObject> newResources = Lists.newArrayList();
         for(T transformUnit : allTransformUnits) {
             for(ITransformOutput transformOutput : transformUnit.outputs()) {
                 final FileObject outputFile = transformOutput.output();
-                if(outputFile != null) {
+                // Unchanged outputs were not written, so they do not need to be processed again.
+                if(outputFile != null && transformOutput.changed()) {
                     newResources.add(outputFile);
                 }
             }
@@ -302,11 +372,23 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
         return newResources;
     }
 
+    private Set<FileName> openResources() {
+        final Set<FileName> openResources = Sets.newHashSet();
+        for(IEditor editor : editorRegistry.openEditors()) {
+            final @Nullable FileObject resource = editor.resource();
+            if(resource != null) {
+                openResources.add(resource.getName());
+            }
+        }
+        return openResources;
+    }
+
     private Collection<P> parse(BuildInput input, ILanguageImpl langImpl, Iterable<IdentifiedResourceChange> changes,
         boolean pardoned, Collection<FileObject> changedResources, Set<FileName> removedResources,
-        Collection<IMessage> extraMessages, RefBool success, IProgress progress, ICancel cancel)
-        throws InterruptedException {
-        final int size = Iterables.size(changes);
+        Map<FileName, Long> parseDurations, Collection<IMessage> extraMessages, RefBool success,
+        BuildExecutors executors, IProgress progress, ICancel cancel) throws InterruptedException {
+        final List<IdentifiedResourceChange> changeList = Lists.newArrayList(changes);
+        final int size = changeList.size();
         progress.setWorkRemaining(size);
         final Collection<P> allParseUnits = Lists.newArrayListWithCapacity(size);
         if(size == 0) {
@@ -316,61 +398,164 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
         progress.setDescription("Parsing " + size + " file(s) of " + langImpl.belongsTo().name());
         logger.debug("Parsing {} resources", size);
 
-        for(IdentifiedResourceChange identifiedChange : changes) {
-            cancel.throwIfCancelled();
-            final ResourceChange change = identifiedChange.change;
-            final FileObject resource = change.resource;
-            final ILanguageImpl dialect = identifiedChange.dialect;
-            final ResourceChangeKind changeKind = change.kind;
-
-            try {
-                if(changeKind == ResourceChangeKind.Delete) {
-                    parseResultUpdater.remove(resource);
-                    removedResources.add(resource.getName());
-                    // LEGACY: add empty parse result, to indicate to analysis that this resource was
-                    // removed. There is special handling in updating the analysis result processor, the marker
-                    // updater, and the compiler, to exclude removed resources.
-                    final I inputUnit = unitService.emptyInputUnit(resource, langImpl, dialect);
-                    final P emptyParseResult = unitService.emptyParseUnit(inputUnit);
-                    allParseUnits.add(emptyParseResult);
-                    // Don't add resource as changed when it has been deleted, because it does not exist any more.
+        boolean parallel = input.parseThreads > 1 && size > 1;
+        if(parallel && !syntaxService.concurrent(langImpl)) {
+            logger.warn("Parser of {} does not support concurrent parsing, ignoring {} parse threads and parsing "
+                + "sequentially", langImpl, input.parseThreads);
+            parallel = false;
+        }
+        if(!parallel) {
+            for(IdentifiedResourceChange identifiedChange : changeList) {
+                cancel.throwIfCancelled();
+                final FileObject resource = identifiedChange.change.resource;
+                if(identifiedChange.change.kind == ResourceChangeKind.Delete) {
+                    parseRemoved(langImpl, identifiedChange, allParseUnits, removedResources);
                     progress.work(1);
                 } else {
-                    final String sourceText = sourceTextService.text(resource);
                     parseResultUpdater.invalidate(resource);
-                    final I inputUnit = unitService.inputUnit(resource, sourceText, langImpl, dialect);
-                    final P parseResult = syntaxService.parse(inputUnit, progress.subProgress(1), cancel);
-                    final boolean noErrors = printMessages(parseResult.messages(), "Parsing", input, pardoned);
-                    success.and(noErrors);
-                    allParseUnits.add(parseResult);
-                    parseResultUpdater.update(resource, parseResult);
-                    changedResources.add(resource);
+                    final ParseOutcome outcome =
+                        parseResource(langImpl, identifiedChange, progress.subProgress(1), cancel);
+                    processParseOutcome(input, langImpl, identifiedChange, outcome, pardoned, allParseUnits,
+                        changedResources, parseDurations, extraMessages, success);
+                }
+            }
+            return allParseUnits;
+        }
+
+        // Read and parse resources on a worker pool, then process the outcomes on this thread in the order of the
+        // changes, such that updates, messages, and parse units are delivered deterministically.
+        final ExecutorService executor = executors.parse();
+        final List<Future<ParseOutcome>> futures = Lists.newArrayListWithCapacity(size);
+        try {
+            for(IdentifiedResourceChange identifiedChange : changeList) {
+                if(identifiedChange.change.kind == ResourceChangeKind.Delete) {
+                    futures.add(null);
+                } else {
+                    parseResultUpdater.invalidate(identifiedChange.change.resource);
+                    futures.add(executor.submit(
+                        () -> parseResource(langImpl, identifiedChange, new NullProgress(), cancel)));
+                }
+            }
+
+            for(int i = 0; i < size; ++i) {
+                cancel.throwIfCancelled();
+                final IdentifiedResourceChange identifiedChange = changeList.get(i);
+                final @Nullable Future<ParseOutcome> future = futures.get(i);
+                if(future == null) {
+                    parseRemoved(langImpl, identifiedChange, allParseUnits, removedResources);
+                } else {
+                    final ParseOutcome outcome;
+                    try {
+                        outcome = future.get();
+                    } catch(ExecutionException e) {
+                        throw rethrow(e.getCause(), "Parsing failed unexpectedly");
+                    }
+                    processParseOutcome(input, langImpl, identifiedChange, outcome, pardoned, allParseUnits,
+                        changedResources, parseDurations, extraMessages, success);
+                }
+                progress.work(1);
+            }
+        } finally {
+            // Cancels the remaining parses when processing outcomes was cancelled or failed.
+            for(Future<ParseOutcome> future : futures) {
+                if(future != null) {
+                    future.cancel(true);
                 }
-            } catch(ParseException e) {
-                final String message = logger.format("Parsing {} failed unexpectedly", resource);
-                final boolean noErrors = printMessage(resource, message, e, input, pardoned);
-                success.and(noErrors);
-                parseResultUpdater.error(resource, e);
-                extraMessages.add(MessageFactory.newParseErrorAtTop(resource, "Parsing failed unexpectedly", e));
-                changedResources.add(resource);
-            } catch(IOException e) {
-                final String message = logger.format("Getting source text for {} failed unexpectedly", resource);
-                final boolean noErrors = printMessage(resource, message, e, input, pardoned);
-                success.and(noErrors);
-                final I inputUnit = unitService.emptyInputUnit(resource, langImpl, dialect);
-                parseResultUpdater.error(resource, new ParseException(inputUnit, e));
-                extraMessages
-                    .add(MessageFactory.newParseErrorAtTop(resource, "Getting source text failed unexpectedly", e));
-                changedResources.add(resource);
             }
         }
         return allParseUnits;
     }
 
+    private void parseRemoved(ILanguageImpl langImpl, IdentifiedResourceChange identifiedChange,
+        Collection<P> allParseUnits, Set<FileName> removedResources) {
+        final FileObject resource = identifiedChange.change.resource;
+        parseResultUpdater.remove(resource);
+        removedResources.add(resource.getName());
+        // LEGACY: add empty parse result, to indicate to analysis that this resource was
+        // removed. There is special handling in updating the analysis result processor, the marker
+        // updater, and the compiler, to exclude removed resources.
+        final I inputUnit = unitService.emptyInputUnit(resource, langImpl, identifiedChange.dialect);
+        final P emptyParseResult = unitService.emptyParseUnit(inputUnit);
+        allParseUnits.add(emptyParseResult);
+        // Don't add resource as changed when it has been deleted, because it does not exist any more.
+    }
+
+    /**
+     * Gets the source text of given resource and parses it. Does not change any shared state, and may therefore be
+     * called from multiple threads at the same time, provided that the parser supports that.
+     */
+    private ParseOutcome parseResource(ILanguageImpl langImpl, IdentifiedResourceChange identifiedChange,
+        IProgress progress, ICancel cancel) throws InterruptedException {
+        cancel.throwIfCancelled();
+        final FileObject resource = identifiedChange.change.resource;
+        final Timer timer = new Timer(true);
+        try {
+            final String sourceText = sourceTextService.text(resource);
+            final I inputUnit = unitService.inputUnit(resource, sourceText, langImpl, identifiedChange.dialect);
+            final P parseResult = syntaxService.parse(inputUnit, progress, cancel);
+            return new ParseOutcome(parseResult, null, null, timer.stop());
+        } catch(ParseException e) {
+            return new ParseOutcome(null, e, null, timer.stop());
+        } catch(IOException e) {
+            return new ParseOutcome(null, null, e, timer.stop());
+        }
+    }
+
+    private void processParseOutcome(BuildInput input, ILanguageImpl langImpl,
+        IdentifiedResourceChange identifiedChange, ParseOutcome outcome, boolean pardoned, Collection<P> allParseUnits,
+        Collection<FileObject> changedResources, Map<FileName, Long> parseDurations,
+        Collection<IMessage> extraMessages, RefBool success) {
+        final FileObject resource = identifiedChange.change.resource;
+        parseDurations.put(resource.getName(), outcome.duration);
+        if(outcome.parseException != null) {
+            final ParseException e = outcome.parseException;
+            final String message = logger.format("Parsing {} failed unexpectedly", resource);
+            final boolean noErrors = printMessage(resource, message, e, input, pardoned);
+            success.and(noErrors);
+            parseResultUpdater.error(resource, e);
+            extraMessages.add(MessageFactory.newParseErrorAtTop(resource, "Parsing failed unexpectedly", e));
+        } else if(outcome.ioException != null) {
+            final IOException e = outcome.ioException;
+            final String message = logger.format("Getting source text for {} failed unexpectedly", resource);
+            final boolean noErrors = printMessage(resource, message, e, input, pardoned);
+            success.and(noErrors);
+            final I inputUnit = unitService.emptyInputUnit(resource, langImpl, identifiedChange.dialect);
+            parseResultUpdater.error(resource, new ParseException(inputUnit, e));
+            extraMessages.add(MessageFactory.newParseErrorAtTop(resource, "Getting source text failed unexpectedly", e));
+        } else {
+            final P parseResult = outcome.parseUnit;
+            final boolean noErrors = printMessages(parseResult.messages(), "Parsing", input, pardoned);
+            success.and(noErrors);
+            allParseUnits.add(parseResult);
+            parseResultUpdater.update(resource, parseResult);
+        }
+        changedResources.add(resource);
+    }
+
+    /**
+     * Result of getting the source text of a resource and parsing it: either a parse unit or the exception that
+     * occurred, and the time it took in nanoseconds.
+     */
+    private final class ParseOutcome {
+        final @Nullable P parseUnit;
+        final @Nullable ParseException parseException;
+        final @Nullable IOException ioException;
+        final long duration;
+
+        ParseOutcome(@Nullable P parseUnit, @Nullable ParseException parseException,
+            @Nullable IOException ioException, long duration) {
+            this.parseUnit = parseUnit;
+            this.parseException = parseException;
+            this.ioException = ioException;
+            this.duration = duration;
+        }
+    }
+
     private Multimap<IContext, A> analyze(BuildInput input, ILanguageImpl langImpl, FileObject location,
         Multimap<IContext, P> sourceParseUnits, Iterable<P> includeParseUnits, boolean pardoned,
-        Collection<AU> analyzeUpdates, Set<FileName> removedResources, Collection<IMessage> extraMessages,
-        RefBool success, IProgress progress, ICancel cancel) throws InterruptedException {
+        Collection<AU> analyzeUpdates, Collection<AnalysisMetrics> analysisMetrics, Set<FileName> removedResources,
+        Collection<IMessage> extraMessages, RefBool success, IProgress progress, ICancel cancel)
+        throws InterruptedException {
         final int size = sourceParseUnits.size() + Iterables.size(includeParseUnits);
         final Multimap<IContext, A> allAnalyzeUnits = ArrayListMultimap.create();
         if(size == 0) {
@@ -408,8 +593,14 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
                         // analysisResultUpdater.update(update, removedResources);
                         analyzeUpdates.add(update);
                     }
+                    final @Nullable AnalysisMetrics metrics = results.metrics();
+                    if(metrics != null) {
+                        logger.debug("Analysis metrics of {}: {}", context, metrics);
+                        analysisMetrics.add(metrics);
+                    }
                 } finally {
-                    context.persist();
+                    // Persisted in the background, and flushed at the end of the build.
+                    contextService.schedulePersist(context);
                 }
             } catch(AnalysisException e) {
                 final String message = "Analysis failed unexpectedly";
@@ -417,21 +608,19 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
                 success.and(noErrors);
                 analysisResultUpdater.error(parseResults, e);
                 extraMessages.add(MessageFactory.newAnalysisErrorAtTop(location, message, e));
-            } catch(IOException e) {
-                final String message = "Persisting analysis data failed unexpectedly";
-                final boolean noErrors = printMessage(message, e, input, pardoned);
-                success.and(noErrors);
-                extraMessages.add(MessageFactory.newAnalysisErrorAtTop(location, message, e));
             }
         }
         return allAnalyzeUnits;
     }
 
     private Collection<T> transform(BuildInput input, ILanguageImpl langImpl, FileObject location,
-        Multimap<IContext, P> parseUnits, Multimap<IContext, A> allAnalysisUnits, Set<FileName> includeFiles, boolean pardoned,
-        Set<FileName> removedResources, Collection<IMessage> extraMessages, RefBool success, IProgress progress,
-        ICancel cancel) throws InterruptedException {
+        Multimap<IContext, P> parseUnits, Multimap<IContext, A> allAnalysisUnits, Set<FileName> includeFiles,
+        boolean pardoned, Set<FileName> removedResources, Collection<IMessage> extraMessages, RefBool success,
+        BuildExecutors executors, IProgress progress, ICancel cancel) throws InterruptedException {
         final Collection<T> allTransformUnits = Lists.newArrayList();
+        // Runtimes are only reused across units when transforming concurrently; sequential transformations keep using a
+        // fresh runtime for each unit.
+        final ITransformConfig config = new TransformConfig(null, false, input.transformThreads > 1);
 
         final int numberOfGoals = Iterables.size(input.transformGoals);
         progress.setWorkRemaining(numberOfGoals);
@@ -467,46 +656,32 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
                         continue;
                     }
 
-                    try(IClosableLock lock = context.read()) {
-                        for(A analysisResult : analysisResults) {
-                            cancel.throwIfCancelled();
-
-                            final FileObject source = analysisResult.source();
-                            final FileName name = source.getName();
-
-                            if(removedResources.contains(name) || includeFiles.contains(name)) {
-                                // Don't compile removed resources, which the analysis results contain for legacy reasons.
-                                // Don't transform included resources, they should just be parsed and analyzed.
-                                transformProgress.work(1);
-                                continue;
-                            }
-
-                            if(!analysisResult.valid()) {
-                                logger.warn("Input result for {} is invalid, cannot transform it",
-                                    source != null ? source.getName().getPath() : "detached source");
-                                transformProgress.work(1);
-                                continue;
-                            }
-
-                            try {
-                                final Collection<TA> results = transformService.transform(analysisResult, context, goal);
-                                for(TA result : results) {
-                                    final boolean noErrors =
-                                        printMessages(result.messages(), goal + " transformation", input, pardoned);
-                                    success.and(noErrors);
-                                    @SuppressWarnings("unchecked") final T genericResult = (T) result;
-                                    allTransformUnits.add(genericResult);
-                                }
-                                transformProgress.work(1);
-                            } catch(TransformException e) {
-                                final String message = String.format("Transformation failed unexpectedly for %s", name);
-                                logger.error(message, e);
-                                final boolean noErrors = printMessage(source, message, e, input, pardoned);
-                                success.and(noErrors);
-                                extraMessages.add(
-                                    MessageFactory.newBuilderErrorAtTop(location, "Transformation failed unexpectedly", e));
-                            }
+                    final List<A> toTransform = Lists.newArrayListWithCapacity(analysisResults.size());
+                    for(A analysisResult : analysisResults) {
+                        final FileObject source = analysisResult.source();
+                        final FileName name = source.getName();
+
+                        if(removedResources.contains(name) || includeFiles.contains(name)) {
+                            // Don't compile removed resources, which the analysis results contain for legacy reasons.
+                            // Don't transform included resources, they should just be parsed and analyzed.
+                            transformProgress.work(1);
+                            continue;
+                        }
+
+                        if(!analysisResult.valid()) {
+                            logger.warn("Input result for {} is invalid, cannot transform it",
+                                source != null ? source.getName().getPath() : "detached source");
+                            transformProgress.work(1);
+                            continue;
                         }
+
+                        toTransform.add(analysisResult);
+                    }
+
+                    try(IClosableLock lock = context.read()) {
+                        transformUnits(toTransform, goal,
+                            unit -> transformService.transform(unit, context, goal, config), input, location, pardoned,
+                            allTransformUnits, extraMessages, success, executors, transformProgress, cancel);
                     }
                 }
             } else {
@@ -529,9 +704,8 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
                         continue;
                     }
 
+                    final List<P> toTransform = Lists.newArrayListWithCapacity(parseResults.size());
                     for(P parseResult : parseResults) {
-                        cancel.throwIfCancelled();
-
                         final FileObject source = parseResult.source();
                         final FileName name = source.getName();
 
@@ -549,25 +723,12 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
                             continue;
                         }
 
-                        try {
-                            final Collection<TP> results = transformService.transform(parseResult, context, goal);
-                            for(TP result : results) {
-                                final boolean noErrors =
-                                    printMessages(result.messages(), goal + " transformation", input, pardoned);
-                                success.and(noErrors);
-                                @SuppressWarnings("unchecked") final T genericResult = (T) result;
-                                allTransformUnits.add(genericResult);
-                            }
-                            transformProgress.work(1);
-                        } catch(TransformException e) {
-                            final String message = String.format("Transformation failed unexpectedly for %s", name);
-                            logger.error(message, e);
-                            final boolean noErrors = printMessage(source, message, e, input, pardoned);
-                            success.and(noErrors);
-                            extraMessages.add(
-                                MessageFactory.newBuilderErrorAtTop(location, "Transformation failed unexpectedly", e));
-                        }
+                        toTransform.add(parseResult);
                     }
+
+                    transformUnits(toTransform, goal, unit -> transformService.transform(unit, context, goal, config),
+                        input, location, pardoned, allTransformUnits, extraMessages, success, executors,
+                        transformProgress, cancel);
                 }
                 // GTODO: also compile any affected sources
             }
@@ -576,6 +737,98 @@ public class Builder<I extends IInputUnit, P extends IParseUnit, A extends IAnal
         return allTransformUnits;
     }
 
+    @FunctionalInterface private interface ITransformFunction<U, R> {
+        Collection<R> transform(U unit) throws TransformException;
+    }
+
+    /**
+     * Transforms given units, on a worker pool when multiple transform threads are configured. Results and failures are
+     * processed on the calling thread in the order of the units, such that transform units and messages are delivered
+     * deterministically.
+     */
+    private <U extends IUnit, R extends ITransformUnit<?>> void transformUnits(List<U> units, ITransformGoal goal,
+        ITransformFunction<U, R> function, BuildInput input, FileObject location, boolean pardoned,
+        Collection<T> allTransformUnits, Collection<IMessage> extraMessages, RefBool success,
+        BuildExecutors executors, IProgress progress, ICancel cancel) throws InterruptedException {
+        final int size = units.size();
+        if(input.transformThreads <= 1 || size <= 1) {
+            for(U unit : units) {
+                cancel.throwIfCancelled();
+                try {
+                    addTransformResults(function.transform(unit), goal, input, pardoned, allTransformUnits, success);
+                } catch(TransformException e) {
+                    transformFailed(unit.source(), e, input, location, pardoned, extraMessages, success);
+                }
+                progress.work(1);
+            }
+            return;
+        }
+
+        final ExecutorService executor = executors.transform();
+        final List<Future<Collection<R>>> futures = Lists.newArrayListWithCapacity(size);
+        try {
+            for(U unit : units) {
+                futures.add(executor.submit(() -> function.transform(unit)));
+            }
+
+            for(int i = 0; i < size; ++i) {
+                cancel.throwIfCancelled();
+                final U unit = units.get(i);
+                try {
+                    final Collection<R> results = futures.get(i).get();
+                    addTransformResults(results, goal, input, pardoned, allTransformUnits, success);
+                } catch(ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if(!(cause instanceof TransformException)) {
+                        throw rethrow(cause, "Transformation failed unexpectedly");
+                    }
+                    transformFailed(unit.source(), (TransformException) cause, input, location, pardoned,
+                        extraMessages, success);
+                }
+                progress.work(1);
+            }
+        } finally {
+            // Cancels the remaining transformations when processing results was cancelled or failed.
+            for(Future<Collection<R>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private <R extends ITransformUnit<?>> void addTransformResults(Collection<R> results, ITransformGoal goal,
+        BuildInput input, boolean pardoned, Collection<T> allTransformUnits, RefBool success) {
+        for(R result : results) {
+            final boolean noErrors = printMessages(result.messages(), goal + " transformation", input, pardoned);
+            success.and(noErrors);
+            @SuppressWarnings("unchecked") final T genericResult = (T) result;
+            allTransformUnits.add(genericResult);
+        }
+    }
+
+    private void transformFailed(FileObject source, TransformException e, BuildInput input, FileObject location,
+        boolean pardoned, Collection<IMessage> extraMessages, RefBool success) {
+        final String message = String.format("Transformation failed unexpectedly for %s", source.getName());
+        logger.error(message, e);
+        final boolean noErrors = printMessage(source, message, e, input, pardoned);
+        success.and(noErrors);
+        extraMessages.add(MessageFactory.newBuilderErrorAtTop(location, "Transformation failed unexpectedly", e));
+    }
+
+    /**
+     * Rethrows the cause of an exception thrown by a worker, wrapping checked exceptions in a
+     * {@link MetaborgRuntimeException} with given message.
+     */
+    private static RuntimeException rethrow(Throwable cause, String message) throws InterruptedException {
+        if(cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        } else if(cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if(cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new MetaborgRuntimeException(message, cause);
+    }
+
     private boolean printMessages(Iterable<IMessage> messages, String phase, BuildInput input, boolean pardoned) {
         final IMessagePrinter printer = input.messagePrinter;
         if(printer != null) {
@@ -1,10 +1,14 @@
 package org.metaborg.core.build;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.analysis.AnalysisMetrics;
 import org.metaborg.core.analysis.IAnalyzeUnit;
 import org.metaborg.core.analysis.IAnalyzeUnitUpdate;
 import org.metaborg.core.messages.IMessage;
@@ -57,6 +61,16 @@ public interface IBuildOutput<P extends IParseUnit, A extends IAnalyzeUnit, AU e
      */
     Iterable<P> parseResults();
 
+    /**
+     * @return Time in nanoseconds it took to get the source text of and parse each changed resource.
+     */
+    Map<FileName, Long> parseDurations();
+
+    /**
+     * @return Metrics of all analyses in the build, or null if no analysis collected metrics.
+     */
+    @Nullable AnalysisMetrics analysisMetrics();
+
     /**
      * @return Analysis results for changed resources. Resources that could not be parsed are not analyzed.
      */
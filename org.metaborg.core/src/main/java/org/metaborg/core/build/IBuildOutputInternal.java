@@ -1,7 +1,10 @@
 package org.metaborg.core.build;
 
+import java.util.Map;
+
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.analysis.AnalysisMetrics;
 import org.metaborg.core.analysis.IAnalyzeUnit;
 import org.metaborg.core.analysis.IAnalyzeUnitUpdate;
 import org.metaborg.core.messages.IMessage;
@@ -15,4 +18,8 @@ public interface IBuildOutputInternal<P extends IParseUnit, A extends IAnalyzeUn
     void add(boolean success, Iterable<FileName> removedResources, Iterable<FileName> includedResources,
         Iterable<FileObject> changedResources, Iterable<P> parseResults, Iterable<A> analysisResults,
         Iterable<AU> analysisUpdates, Iterable<T> transformResults, Iterable<IMessage> extraMessages);
+
+    void addParseDurations(Map<FileName, Long> parseDurations);
+
+    void addAnalysisMetrics(AnalysisMetrics analysisMetrics);
 }
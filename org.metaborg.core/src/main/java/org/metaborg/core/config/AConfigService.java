@@ -1,6 +1,7 @@
 package org.metaborg.core.config;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 
@@ -8,6 +9,8 @@ import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.HierarchicalConfiguration;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.configuration2.tree.ImmutableNode;
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.metaborg.core.messages.IMessage;
@@ -16,13 +19,18 @@ import org.metaborg.util.file.IFileAccess;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 
+import com.google.common.collect.Maps;
+
 /**
- * Stores and retrieves configurations using the {@link Configuration} class.
+ * Stores and retrieves configurations using the {@link Configuration} class. Retrieved configurations are cached per
+ * configuration file, and are only read again when the modification time or size of the file changes, or when the
+ * configuration is written through this service.
  */
 public abstract class AConfigService<TSubject, TConfig> {
     private static final ILogger logger = LoggerUtils.logger(AConfigService.class);
 
     protected final AConfigurationReaderWriter configReaderWriter;
+    private final ConcurrentMap<FileName, CachedConfig<TConfig>> cache = Maps.newConcurrentMap();
 
 
     /**
@@ -85,6 +93,17 @@ public abstract class AConfigService<TSubject, TConfig> {
      * @return The configuration, or <code>null</code> when no configuration could be retrieved.
      */
     public ConfigRequest<TConfig> getFromConfigFile(FileObject configFile, FileObject rootFolder) {
+        final FileName configFileName = configFile.getName();
+        final @Nullable Stamp stamp = stamp(configFile);
+        if(stamp != null) {
+            final CachedConfig<TConfig> cached = cache.get(configFileName);
+            if(cached != null && cached.stamp.equals(stamp) && cached.rootFolder.equals(rootFolder.getName())) {
+                return cached.request;
+            }
+        } else {
+            cache.remove(configFileName);
+        }
+
         final HierarchicalConfiguration<ImmutableNode> configuration;
         try {
             configuration = readConfig(configFile, rootFolder);
@@ -101,7 +120,11 @@ public abstract class AConfigService<TSubject, TConfig> {
         }
         
         if(configuration != null) {
-            return toConfig(configuration, configFile);
+            final ConfigRequest<TConfig> request = toConfig(configuration, configFile);
+            if(stamp != null) {
+                cache.put(configFileName, new CachedConfig<>(stamp, rootFolder.getName(), request));
+            }
+            return request;
         } else {
             return new ConfigRequest<>();
         }
@@ -146,10 +169,30 @@ public abstract class AConfigService<TSubject, TConfig> {
             access.write(configFile);
         }
         final HierarchicalConfiguration<ImmutableNode> configuration = fromConfig(config);
-        writeConfig(configFile, configuration, rootDirectory);
+        try {
+            writeConfig(configFile, configuration, rootDirectory);
+        } finally {
+            cache.remove(configFile.getName());
+        }
     }
 
 
+    /**
+     * @return Modification time and size of given configuration file, or null if it does not exist or cannot be
+     *         accessed.
+     */
+    private static @Nullable Stamp stamp(FileObject configFile) {
+        try {
+            if(!configFile.exists()) {
+                return null;
+            }
+            final FileContent content = configFile.getContent();
+            return new Stamp(content.getLastModifiedTime(), content.getSize());
+        } catch(FileSystemException e) {
+            return null;
+        }
+    }
+
     /**
      * Reads a configuration from a file.
      *
@@ -245,4 +288,39 @@ public abstract class AConfigService<TSubject, TConfig> {
      * @return The configuration.
      */
     protected abstract HierarchicalConfiguration<ImmutableNode> fromConfig(TConfig config);
+
+
+    private static class Stamp {
+        final long lastModified;
+        final long size;
+
+        Stamp(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override public boolean equals(Object obj) {
+            if(!(obj instanceof Stamp)) {
+                return false;
+            }
+            final Stamp other = (Stamp) obj;
+            return lastModified == other.lastModified && size == other.size;
+        }
+
+        @Override public int hashCode() {
+            return Long.hashCode(lastModified) * 31 + Long.hashCode(size);
+        }
+    }
+
+    private static class CachedConfig<TConfig> {
+        final Stamp stamp;
+        final FileName rootFolder;
+        final ConfigRequest<TConfig> request;
+
+        CachedConfig(Stamp stamp, FileName rootFolder, ConfigRequest<TConfig> request) {
+            this.stamp = stamp;
+            this.rootFolder = rootFolder;
+            this.request = request;
+        }
+    }
 }
@@ -1,7 +1,15 @@
 package org.metaborg.core.context;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.language.ILanguageImpl;
@@ -10,18 +18,33 @@ import org.metaborg.core.project.IProject;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 
-public class ContextService implements IContextService, IContextProcessor {
+public class ContextService implements IContextService, IContextProcessor, AutoCloseable {
     private static final ILogger logger = LoggerUtils.logger(ContextService.class);
 
+    /**
+     * Delay in milliseconds between scheduling a context to be persisted and persisting it, during which further
+     * schedules of that context are coalesced.
+     */
+    public static final long persistDelay = 1000;
+
     private final Injector injector;
 
     private final ConcurrentMap<ContextIdentifier, IContextInternal> idToContext = Maps.newConcurrentMap();
     private final ConcurrentMap<ILanguageImpl, ContextIdentifier> langToContextId = Maps.newConcurrentMap();
 
+    private final Object persistLock = new Object();
+    private final Set<IContext> scheduledPersists = Sets.newLinkedHashSet();
+    // Failures of persists that have not been followed by a successful persist, guarded by scheduledPersists.
+    private final Map<IContext, IOException> persistFailures = Maps.newHashMap();
+    private @Nullable ScheduledExecutorService persistExecutor;
+
     @Inject public ContextService(Injector injector) {
         this.injector = injector;
     }
@@ -58,6 +81,10 @@ public class ContextService implements IContextService, IContextProcessor {
 
     @Override public void unload(IContext context) {
         final IContextInternal contextInternal = (IContextInternal) context;
+        persistIfScheduled(contextInternal);
+        synchronized(scheduledPersists) {
+            persistFailures.remove(contextInternal);
+        }
         contextInternal.unload();
         final ContextIdentifier identifier = contextInternal.identifier();
         idToContext.remove(identifier);
@@ -71,6 +98,7 @@ public class ContextService implements IContextService, IContextProcessor {
                 if(id != null) {
                     final IContextInternal removed = idToContext.remove(id);
                     if(removed != null) {
+                        persistIfScheduled(removed);
                         removed.unload();
                         logger.debug("Removing {}", removed);
                     }
@@ -83,6 +111,107 @@ public class ContextService implements IContextService, IContextProcessor {
     }
 
 
+    @Override public void schedulePersist(IContext context) {
+        synchronized(scheduledPersists) {
+            final boolean first = scheduledPersists.isEmpty();
+            if(!scheduledPersists.add(context) || !first) {
+                // Already scheduled, or a persist of other contexts is scheduled which also persists this context.
+                return;
+            }
+            if(persistExecutor == null) {
+                persistExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("context-persister-%d").setDaemon(true).build());
+            }
+            persistExecutor.schedule(this::persistScheduled, persistDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override public void flush() {
+        persistScheduled();
+    }
+
+    @Override public void flush(Iterable<? extends IContext> contexts) throws IOException {
+        @Nullable IOException failure = null;
+        for(IContext context : contexts) {
+            persistIfScheduled(context);
+            final @Nullable IOException contextFailure;
+            synchronized(scheduledPersists) {
+                contextFailure = persistFailures.remove(context);
+            }
+            if(contextFailure == null) {
+                continue;
+            }
+            if(failure == null) {
+                failure = contextFailure;
+            } else {
+                failure.addSuppressed(contextFailure);
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override public void close() {
+        flush();
+        final @Nullable ScheduledExecutorService executor;
+        synchronized(scheduledPersists) {
+            executor = persistExecutor;
+            persistExecutor = null;
+        }
+        if(executor != null) {
+            executor.shutdownNow();
+        }
+        // Persist contexts that were scheduled while shutting down.
+        flush();
+    }
+
+
+    private void persistScheduled() {
+        synchronized(persistLock) {
+            final List<IContext> contexts;
+            synchronized(scheduledPersists) {
+                contexts = Lists.newArrayList(scheduledPersists);
+                scheduledPersists.clear();
+            }
+            for(IContext context : contexts) {
+                persist(context);
+            }
+        }
+    }
+
+    private void persistIfScheduled(IContext context) {
+        synchronized(persistLock) {
+            final boolean scheduled;
+            synchronized(scheduledPersists) {
+                scheduled = scheduledPersists.remove(context);
+            }
+            if(scheduled) {
+                persist(context);
+            }
+        }
+    }
+
+    private void persist(IContext context) {
+        @Nullable IOException failure = null;
+        try {
+            context.persist();
+        } catch(IOException e) {
+            failure = e;
+        } catch(RuntimeException e) {
+            failure = new IOException("Persisting " + context + " failed unexpectedly", e);
+        }
+        synchronized(scheduledPersists) {
+            if(failure != null) {
+                logger.error("Persisting {} failed unexpectedly", failure, context);
+                persistFailures.put(context, failure);
+            } else {
+                persistFailures.remove(context);
+            }
+        }
+    }
+
+
     private boolean available(ILanguageImpl language) {
         final ContextFacet facet = language.facet(ContextFacet.class);
         return facet != null;
@@ -1,5 +1,7 @@
 package org.metaborg.core.context;
 
+import java.io.IOException;
+
 import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.MetaborgRuntimeException;
 import org.metaborg.core.language.ILanguageImpl;
@@ -53,4 +55,30 @@ public interface IContextService {
      *            Context to unload.
      */
     void unload(IContext context);
+
+    /**
+     * Schedules given context to be persisted by a background writer. Scheduling a context that is already scheduled
+     * has no effect, such that rapid successive changes to a context are persisted once. Contexts that have not changed
+     * since they were last persisted are not written.
+     * 
+     * @param context
+     *            Context to persist.
+     */
+    void schedulePersist(IContext context);
+
+    /**
+     * Persists all contexts that are scheduled to be persisted, and waits until they have been persisted.
+     */
+    void flush();
+
+    /**
+     * Persists given contexts if they are scheduled to be persisted, and waits until they have been persisted.
+     *
+     * @param contexts
+     *            Contexts to persist.
+     * @throws IOException
+     *             When persisting any of the contexts failed, including failed background persists of these contexts
+     *             that have not been followed by a successful persist.
+     */
+    void flush(Iterable<? extends IContext> contexts) throws IOException;
 }
@@ -1,7 +1,10 @@
 package org.metaborg.core.language;
 
+import java.util.Set;
 import java.util.function.Predicate;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.vfs2.FileObject;
 
 /**
@@ -25,4 +28,15 @@ public class IdentificationFacet implements IFacet {
     public boolean identify(FileObject file) {
         return identifier.test(file);
     }
+
+    /**
+     * @return File extensions of the resources this facet identifies, or null if this facet identifies resources by
+     *         other means than their extension.
+     */
+    public @Nullable Set<String> extensions() {
+        if(identifier instanceof ResourceExtensionsIdentifier) {
+            return ((ResourceExtensionsIdentifier) identifier).extensions();
+        }
+        return null;
+    }
 }
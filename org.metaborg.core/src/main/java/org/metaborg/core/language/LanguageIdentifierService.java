@@ -1,6 +1,9 @@
 package org.metaborg.core.language;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 
@@ -10,6 +13,7 @@ import org.apache.commons.vfs2.FileType;
 import org.metaborg.core.MetaborgException;
 import org.metaborg.core.MetaborgRuntimeException;
 import org.metaborg.core.build.dependency.IDependencyService;
+import org.metaborg.core.config.IProjectConfig;
 import org.metaborg.core.language.dialect.IDialectIdentifier;
 import org.metaborg.core.language.dialect.IdentifiedDialect;
 import org.metaborg.core.project.IProject;
@@ -18,10 +22,22 @@ import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 
+/**
+ * Identifies resources using the identification facets of languages. Candidate languages of the active languages, and
+ * of the compile dependencies of each project, are indexed by the file extensions their identification facets
+ * identify, as are immutable collections of languages passed to {@link #identifyToResource(FileObject, Iterable)},
+ * such that identifying a resource only tests the languages that can identify its extension. Indices are
+ * rebuilt when languages change, or when the configuration of a project changes.
+ */
 public class LanguageIdentifierService implements ILanguageIdentifierService {
     private static final ILogger logger = LoggerUtils.logger(LanguageIdentifierService.class);
 
@@ -30,6 +46,14 @@ public class LanguageIdentifierService implements ILanguageIdentifierService {
     private final IProjectService projectService;
     private final IDependencyService dependencyService;
 
+    // Incremented on each language change, indices built for an older version are stale.
+    private final AtomicInteger languagesVersion = new AtomicInteger();
+    private volatile @Nullable IdentificationIndex activeIndex;
+    private final Cache<IProject, ProjectIndex> projectIndices = CacheBuilder.newBuilder().weakKeys().build();
+    // Indices of immutable collections of languages, such as the languages of a build order, keyed by identity.
+    private final Cache<ImmutableCollection<? extends ILanguageImpl>, IdentificationIndex> collectionIndices =
+        CacheBuilder.newBuilder().weakKeys().build();
+
 
     @Inject public LanguageIdentifierService(ILanguageService languageService, IDialectIdentifier dialectIdentifier,
         IProjectService projectService, IDependencyService dependencyService) {
@@ -37,6 +61,9 @@ public class LanguageIdentifierService implements ILanguageIdentifierService {
         this.dialectIdentifier = dialectIdentifier;
         this.projectService = projectService;
         this.dependencyService = dependencyService;
+
+        languageService.componentChanges().subscribe(change -> languagesChanged());
+        languageService.implChanges().subscribe(change -> languagesChanged());
     }
 
 
@@ -59,22 +86,11 @@ public class LanguageIdentifierService implements ILanguageIdentifierService {
     }
 
     @Nullable @Override public ILanguageImpl identify(FileObject resource, @Nullable IProject project) {
-        if(project != null) {
-            try {
-                final Iterable<ILanguageComponent> dependencies = dependencyService.compileDeps(project);
-                final Iterable<ILanguageImpl> impls = LanguageUtils.toImpls(dependencies);
-                ILanguageImpl impl = identify(resource, impls);
-                if(impl == null) {
-                    // Try with all active languages if identification with dependencies fails
-                    impl = identify(resource, LanguageUtils.allActiveImpls(languageService));
-                }
-                return impl;
-            } catch(MetaborgException e) {
-                return identify(resource, LanguageUtils.allActiveImpls(languageService));
-            }
-        } else {
-            return identify(resource, LanguageUtils.allActiveImpls(languageService));
+        final IdentifiedResource identified = identifyToResource(resource, project);
+        if(identified == null) {
+            return null;
         }
+        return identified.dialectOrLanguage();
     }
 
     @Override public @Nullable IdentifiedResource identifyToResource(FileObject resource) {
@@ -82,24 +98,30 @@ public class LanguageIdentifierService implements ILanguageIdentifierService {
     }
 
     @Override public @Nullable IdentifiedResource identifyToResource(FileObject resource, @Nullable IProject project) {
-        if(project != null) {
-            try {
-                final Iterable<ILanguageComponent> dependencies = dependencyService.compileDeps(project);
-                final Iterable<ILanguageImpl> impls = LanguageUtils.toImpls(dependencies);
-                IdentifiedResource identified = identifyToResource(resource, impls);
-                if(identified == null) {
-                    // Try with all active languages if identification with dependencies fails
-                    identified = identifyToResource(resource, LanguageUtils.allActiveImpls(languageService));
-                }
+        if(ignore(resource)) {
+            return null;
+        }
+        final IdentifiedResource dialect;
+        try {
+            dialect = identifyDialect(resource);
+        } catch(MetaborgException e) {
+            return null;
+        }
+        if(dialect != null) {
+            return dialect;
+        }
+
+        final @Nullable IdentificationIndex projectIndex = project != null ? projectIndex(project) : null;
+        if(projectIndex != null) {
+            final IdentifiedResource identified = identifyWithFacets(resource, projectIndex);
+            if(identified != null) {
                 return identified;
-            } catch(MetaborgException e) {
-                return identifyToResource(resource, LanguageUtils.allActiveImpls(languageService));
             }
-        } else {
-            return identifyToResource(resource, LanguageUtils.allActiveImpls(languageService));
+            // Try with all active languages if identification with dependencies fails
         }
+        return identifyWithFacets(resource, activeIndex());
     }
-    
+
     @Override public @Nullable ILanguageImpl identify(FileObject resource,
         Iterable<? extends ILanguageImpl> languages) {
         final IdentifiedResource identified = identifyToResource(resource, languages);
@@ -111,17 +133,48 @@ public class LanguageIdentifierService implements ILanguageIdentifierService {
 
     @Override public @Nullable IdentifiedResource identifyToResource(FileObject resource,
         Iterable<? extends ILanguageImpl> impls) {
+        if(ignore(resource)) {
+            return null;
+        }
+        final IdentifiedResource dialect;
+        try {
+            dialect = identifyDialect(resource);
+        } catch(MetaborgException e) {
+            return null;
+        }
+        if(dialect != null) {
+            return dialect;
+        }
+
+        // Identify using identification facet.
+        if(impls instanceof ImmutableCollection) {
+            return identifyWithFacets(resource, collectionIndex((ImmutableCollection<? extends ILanguageImpl>) impls));
+        }
+        return identifyWithFacets(resource, impls);
+    }
+
+
+    /**
+     * @return True if given resource cannot be identified, because it is a directory or its type cannot be determined.
+     */
+    private boolean ignore(FileObject resource) {
         // Ignore directories.
         try {
-            if(resource.getType() == FileType.FOLDER) {
-                return null;
-            }
+            return resource.getType() == FileType.FOLDER;
         } catch(FileSystemException e) {
             logger.error("Cannot identify {}, cannot determine its file type", e, resource);
-            return null;
+            return true;
         }
+    }
 
-        // Try to identify using the dialect identifier first.
+    /**
+     * Tries to identify using the dialect identifier.
+     *
+     * @return Identified resource, or null if the resource is not of a dialect.
+     * @throws MetaborgException
+     *             When identifying the dialect fails, in which case the resource is not identified at all.
+     */
+    private @Nullable IdentifiedResource identifyDialect(FileObject resource) throws MetaborgException {
         try {
             final IdentifiedDialect dialect = dialectIdentifier.identify(resource);
             if(dialect != null) {
@@ -129,12 +182,15 @@ public class LanguageIdentifierService implements ILanguageIdentifierService {
             }
         } catch(MetaborgException e) {
             logger.error("Cannot identify dialect of {}", e, resource);
-            return null;
+            throw e;
         } catch(MetaborgRuntimeException e) {
             // Ignore
         }
+        return null;
+    }
 
-        // Identify using identification facet.
+    private @Nullable IdentifiedResource identifyWithFacets(FileObject resource,
+        Iterable<? extends ILanguageImpl> impls) {
         final Set<ILanguage> identifiedLanguages = Sets.newLinkedHashSet();
         ILanguageImpl identifiedImpl = null;
         for(ILanguageImpl impl : impls) {
@@ -156,6 +212,61 @@ public class LanguageIdentifierService implements ILanguageIdentifierService {
         return new IdentifiedResource(resource, null, identifiedImpl);
     }
 
+    private @Nullable IdentifiedResource identifyWithFacets(FileObject resource, IdentificationIndex index) {
+        return identifyWithFacets(resource, index.candidates(resource.getName().getExtension()));
+    }
+
+
+    private void languagesChanged() {
+        languagesVersion.incrementAndGet();
+        activeIndex = null;
+        projectIndices.invalidateAll();
+        collectionIndices.invalidateAll();
+    }
+
+    private IdentificationIndex activeIndex() {
+        final @Nullable IdentificationIndex index = activeIndex;
+        if(index != null && index.version == languagesVersion.get()) {
+            return index;
+        }
+        final int version = languagesVersion.get();
+        final IdentificationIndex newIndex =
+            new IdentificationIndex(version, LanguageUtils.allActiveImpls(languageService));
+        activeIndex = newIndex;
+        return newIndex;
+    }
+
+    private IdentificationIndex collectionIndex(ImmutableCollection<? extends ILanguageImpl> impls) {
+        final IdentificationIndex cached = collectionIndices.getIfPresent(impls);
+        if(cached != null && cached.version == languagesVersion.get()) {
+            return cached;
+        }
+        final IdentificationIndex index = new IdentificationIndex(languagesVersion.get(), impls);
+        collectionIndices.put(impls, index);
+        return index;
+    }
+
+    /**
+     * @return Index of the compile dependencies of given project, or null if its dependencies cannot be resolved.
+     */
+    private @Nullable IdentificationIndex projectIndex(IProject project) {
+        final IProjectConfig config = project.config();
+        final ProjectIndex cached = projectIndices.getIfPresent(project);
+        if(cached != null && cached.config == config && cached.version == languagesVersion.get()) {
+            return cached.index;
+        }
+        final int version = languagesVersion.get();
+        @Nullable IdentificationIndex index;
+        try {
+            final Iterable<ILanguageComponent> dependencies = dependencyService.compileDeps(project);
+            index = new IdentificationIndex(version, LanguageUtils.toImpls(dependencies));
+        } catch(MetaborgException e) {
+            index = null;
+        }
+        projectIndices.put(project, new ProjectIndex(version, config, index));
+        return index;
+    }
+
 
     @Override public boolean available(ILanguageImpl impl) {
         final Iterable<IdentificationFacet> facets = impl.facets(IdentificationFacet.class);
@@ -164,4 +275,60 @@ public class LanguageIdentifierService implements ILanguageIdentifierService {
         }
         return true;
     }
+
+
+    /**
+     * Candidate languages for identification, indexed by the file extensions their identification facets identify.
+     * Languages with facets that do not identify by extension are candidates for every resource. Candidates keep the
+     * order of the indexed languages.
+     */
+    private static class IdentificationIndex {
+        final int version;
+        final Map<String, List<ILanguageImpl>> candidatesByExtension = Maps.newHashMap();
+        final List<ILanguageImpl> unindexed = Lists.newArrayList();
+
+        IdentificationIndex(int version, Iterable<? extends ILanguageImpl> impls) {
+            this.version = version;
+            for(ILanguageImpl impl : impls) {
+                final Iterable<IdentificationFacet> facets = impl.facets(IdentificationFacet.class);
+                final Set<String> extensions = Sets.newHashSet();
+                boolean indexable = true;
+                for(IdentificationFacet facet : facets) {
+                    final @Nullable Set<String> facetExtensions = facet.extensions();
+                    if(facetExtensions == null) {
+                        indexable = false;
+                        break;
+                    }
+                    extensions.addAll(facetExtensions);
+                }
+                if(indexable) {
+                    for(String extension : extensions) {
+                        candidatesByExtension.computeIfAbsent(extension, e -> Lists.newArrayList(unindexed)).add(impl);
+                    }
+                } else {
+                    unindexed.add(impl);
+                    for(List<ILanguageImpl> candidates : candidatesByExtension.values()) {
+                        candidates.add(impl);
+                    }
+                }
+            }
+        }
+
+        List<ILanguageImpl> candidates(@Nullable String extension) {
+            final List<ILanguageImpl> candidates = extension != null ? candidatesByExtension.get(extension) : null;
+            return candidates != null ? candidates : unindexed;
+        }
+    }
+
+    private static class ProjectIndex {
+        final int version;
+        final IProjectConfig config;
+        final @Nullable IdentificationIndex index;
+
+        ProjectIndex(int version, IProjectConfig config, @Nullable IdentificationIndex index) {
+            this.version = version;
+            this.config = config;
+            this.index = index;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package org.metaborg.core.language;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Set;
 import java.util.function.Predicate;
 
@@ -19,6 +20,10 @@ public class ResourceExtensionsIdentifier implements Predicate<FileObject>, Seri
     }
 
 
+    public Set<String> extensions() {
+        return Collections.unmodifiableSet(extensions);
+    }
+
     @Override public boolean test(FileObject resource) {
         return extensions.contains(resource.getName().getExtension());
     }
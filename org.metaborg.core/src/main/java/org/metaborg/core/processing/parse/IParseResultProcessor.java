@@ -4,9 +4,13 @@ import org.metaborg.core.syntax.IInputUnit;
 import org.metaborg.core.syntax.IParseUnit;
 
 /**
- * Typedef interface for combining {@link IParseResultRequester} and {@link IParseResultUpdater}.
+ * Interface for combining {@link IParseResultRequester} and {@link IParseResultUpdater}, with control over the cached
+ * parse results.
  */
 public interface IParseResultProcessor<I extends IInputUnit, P extends IParseUnit>
     extends IParseResultRequester<I, P>, IParseResultUpdater<P> {
-
+    /**
+     * @return Statistics of the parse result cache.
+     */
+    ParseResultCacheStatistics statistics();
 }
@@ -56,4 +56,15 @@ public interface IParseResultUpdater<P extends IParseUnit> {
      *            Resource to remove cached parse results for.
      */
     void remove(FileObject resource);
+
+    /**
+     * Releases the cached parse result of given resource, for example when it is closed in an editor, or when it was
+     * built while not being open in an editor. A released parse result is only softly reachable, so it can be garbage
+     * collected, but it is still returned until then. Does nothing if the cache is unbounded, since its parse results
+     * are never evicted.
+     * 
+     * @param resource
+     *            Resource to release the parse result of.
+     */
+    void release(FileObject resource);
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package org.metaborg.core.processing.parse;
+
+/**
+ * Configuration of the parse result cache in {@link ParseResultProcessor}. By default the cache is unbounded. When
+ * {@link #maximumSize} is positive, the least recently used parse results of resources without subscribers are evicted
+ * when more than that number of resources is cached.
+ */
+public class ParseResultCacheConfiguration {
+    public static final int defaultMaximumSize = 0;
+
+    public final int maximumSize;
+
+    public ParseResultCacheConfiguration() {
+        this(defaultMaximumSize);
+    }
+
+    public ParseResultCacheConfiguration(int maximumSize) {
+        if(maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum parse result cache size cannot be negative, got " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    public boolean bounded() {
+        return maximumSize > 0;
+    }
+}
@@ -0,0 +1,33 @@
+package org.metaborg.core.processing.parse;
+
+/**
+ * Statistics of the parse result cache in {@link ParseResultProcessor}.
+ */
+public class ParseResultCacheStatistics {
+    /** Number of requests that were answered with a cached parse result. */
+    public final long hits;
+    /** Number of requests for which no parse result was cached. */
+    public final long misses;
+    /** Number of parse results that were evicted to bound the cache. */
+    public final long evictions;
+    /** Number of resources that have a cached parse result, excluding released parse results. */
+    public final int size;
+
+
+    public ParseResultCacheStatistics(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+
+    public double hitRate() {
+        final long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override public String toString() {
+        return String.format("%d hits, %d misses, %d evictions, %d cached", hits, misses, evictions, size);
+    }
+}
@@ -1,6 +1,13 @@
 package org.metaborg.core.processing.parse;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
@@ -16,22 +23,44 @@ import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.subjects.BehaviorSubject;
 
+/**
+ * Parse result processor that caches the latest parse change per resource. The cache can be bounded with a
+ * {@link ParseResultCacheConfiguration}, in which case the least recently used parse results of resources without
+ * subscribers are evicted. Evicted parse results are parsed again when they are requested.
+ */
 public class ParseResultProcessor<I extends IInputUnit, P extends IParseUnit>
     implements IParseResultProcessor<I, P>, AutoCloseable {
     private static final ILogger logger = LoggerUtils.logger(ParseResultProcessor.class);
 
     private final ISyntaxService<I, P> syntaxService;
+    private final ParseResultCacheConfiguration config;
 
     private final ConcurrentMap<FileName, BehaviorSubject<ParseChange<P>>> updatesPerResource = Maps.newConcurrentMap();
+    private final ConcurrentMap<FileName, ReleasedChange<P>> released = Maps.newConcurrentMap();
+    // Receives released parse changes that have been garbage collected, such that their entries can be pruned.
+    private final ReferenceQueue<ParseChange<P>> collected = new ReferenceQueue<>();
+    private final ConcurrentMap<ILanguageImpl, Set<FileName>> resourcesPerLanguage = Maps.newConcurrentMap();
+    // Access ordered, least recently used resource first. Only maintained when the cache is bounded.
+    private final LinkedHashMap<FileName, Boolean> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
 
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
-    @Inject public ParseResultProcessor(ISyntaxService<I, P> syntaxService) {
+
+    @Inject public ParseResultProcessor(ISyntaxService<I, P> syntaxService, ParseResultCacheConfiguration config) {
         this.syntaxService = syntaxService;
+        this.config = config;
+    }
+
+    public ParseResultProcessor(ISyntaxService<I, P> syntaxService) {
+        this(syntaxService, new ParseResultCacheConfiguration());
     }
 
     @Override public void close() {
@@ -39,6 +68,11 @@ public class ParseResultProcessor<I extends IInputUnit, P extends IParseUnit>
             updates.onComplete();
         }
         updatesPerResource.clear();
+        released.clear();
+        resourcesPerLanguage.clear();
+        synchronized(accessOrder) {
+            accessOrder.clear();
+        }
     }
 
 
@@ -96,10 +130,17 @@ public class ParseResultProcessor<I extends IInputUnit, P extends IParseUnit>
     }
 
     @Override public @Nullable P get(FileObject resource) {
-        final BehaviorSubject<ParseChange<P>> subject = updatesPerResource.get(resource.getName());
+        final FileName name = resource.getName();
+        BehaviorSubject<ParseChange<P>> subject = updatesPerResource.get(name);
         if(subject == null) {
+            subject = restore(name);
+        }
+        if(subject == null) {
+            misses.incrementAndGet();
             return null;
         }
+        hits.incrementAndGet();
+        touch(name);
         final @Nullable ParseChange<P> change = subject.blockingStream().findFirst().orElse(null);
         if(change == null) {
             return null;
@@ -110,42 +151,101 @@ public class ParseResultProcessor<I extends IInputUnit, P extends IParseUnit>
 
     @Override public void invalidate(FileObject resource) {
         logger.trace("Invalidating parse result for {}", resource);
-        final BehaviorSubject<ParseChange<P>> updates = getUpdates(resource.getName());
+        final FileName name = resource.getName();
+        released.remove(name);
+        final BehaviorSubject<ParseChange<P>> updates = getUpdates(name);
         updates.onNext(ParseChange.<P>invalidate(resource));
     }
 
     @Override public void invalidate(ILanguageImpl impl) {
-        for(BehaviorSubject<ParseChange<P>> changes : updatesPerResource.values()) {
-            final @Nullable ParseChange<P> change = changes.blockingStream().findFirst().orElse(null);
-            if(change != null && change.unit != null && impl.equals(change.unit.input().langImpl())) {
-                changes.onNext(ParseChange.<P>invalidate(change.resource));
+        final @Nullable Set<FileName> resources = resourcesPerLanguage.get(impl);
+        if(resources != null) {
+            for(FileName name : resources) {
+                final BehaviorSubject<ParseChange<P>> changes = updatesPerResource.get(name);
+                if(changes == null) {
+                    resources.remove(name);
+                    continue;
+                }
+                final @Nullable ParseChange<P> change = changes.getValue();
+                if(change != null && change.unit != null && impl.equals(change.unit.input().langImpl())) {
+                    changes.onNext(ParseChange.<P>invalidate(change.resource));
+                }
             }
         }
+        released.values().removeIf(reference -> {
+            final @Nullable ParseChange<P> change = reference.get();
+            return change == null || change.unit != null && impl.equals(change.unit.input().langImpl());
+        });
     }
 
     @Override public void update(FileObject resource, P unit) {
         logger.trace("Pushing parse result for {}", resource);
-        final BehaviorSubject<ParseChange<P>> updates = getUpdates(resource.getName());
+        final FileName name = resource.getName();
+        released.remove(name);
+        final BehaviorSubject<ParseChange<P>> updates = getUpdates(name);
         updates.onNext(ParseChange.<P>update(unit));
+        index(name, unit);
     }
 
     @Override public void error(FileObject resource, ParseException exception) {
         logger.trace("Pushing parse error for {}", resource);
-        final BehaviorSubject<ParseChange<P>> updates = getUpdates(resource.getName());
+        final FileName name = resource.getName();
+        released.remove(name);
+        final BehaviorSubject<ParseChange<P>> updates = getUpdates(name);
         updates.onNext(ParseChange.<P>error(exception));
     }
 
     @Override public void remove(FileObject resource) {
         logger.trace("Removing parse result for {}", resource);
-        final BehaviorSubject<ParseChange<P>> updates = getUpdates(resource.getName());
+        final FileName name = resource.getName();
+        released.remove(name);
+        final BehaviorSubject<ParseChange<P>> updates = getUpdates(name);
+        final @Nullable ParseChange<P> previous = updates.getValue();
         updates.onNext(ParseChange.<P>remove(resource));
+        unindex(name, previous);
+    }
+
+
+    @Override public void release(FileObject resource) {
+        if(!config.bounded()) {
+            // Parse results are never evicted from an unbounded cache, so releasing them frees no memory.
+            return;
+        }
+        pruneReleased();
+        final FileName name = resource.getName();
+        final BehaviorSubject<ParseChange<P>> updates = updatesPerResource.get(name);
+        if(updates == null || updates.hasObservers()) {
+            return;
+        }
+        final @Nullable ParseChange<P> change = updates.getValue();
+        if(change == null || change.kind == UpdateKind.Invalidate || !updatesPerResource.remove(name, updates)) {
+            return;
+        }
+        logger.trace("Releasing parse result for {}", resource);
+        forget(name);
+        unindex(name, change);
+        if(change.kind != UpdateKind.Remove) {
+            released.put(name, new ReleasedChange<>(name, change, collected));
+        }
+    }
+
+    @Override public ParseResultCacheStatistics statistics() {
+        return new ParseResultCacheStatistics(hits.get(), misses.get(), evictions.get(), updatesPerResource.size());
     }
 
 
     private BehaviorSubject<ParseChange<P>> getUpdates(FileName file) {
-        final BehaviorSubject<ParseChange<P>> newUpdates = BehaviorSubject.create();
-        final BehaviorSubject<ParseChange<P>> prevUpdates = updatesPerResource.putIfAbsent(file, newUpdates);
-        return prevUpdates == null ? newUpdates : prevUpdates;
+        BehaviorSubject<ParseChange<P>> updates = updatesPerResource.get(file);
+        if(updates == null) {
+            updates = restore(file);
+        }
+        if(updates == null) {
+            final BehaviorSubject<ParseChange<P>> newUpdates = BehaviorSubject.create();
+            final BehaviorSubject<ParseChange<P>> prevUpdates = updatesPerResource.putIfAbsent(file, newUpdates);
+            updates = prevUpdates == null ? newUpdates : prevUpdates;
+        }
+        touch(file);
+        return updates;
     }
 
     private BehaviorSubject<ParseChange<P>> getUpdates(I unit) {
@@ -157,18 +257,144 @@ public class ParseResultProcessor<I extends IInputUnit, P extends IParseUnit>
         // duplicates some work), so it is acceptable.
         BehaviorSubject<ParseChange<P>> updates = updatesPerResource.get(name);
         if(updates == null) {
+            updates = restore(name);
+        }
+        if(updates == null) {
+            misses.incrementAndGet();
             updates = BehaviorSubject.create();
             updatesPerResource.put(name, updates);
             try {
                 logger.trace("Parsing for {}", resource);
                 final P result = syntaxService.parse(unit);
                 updates.onNext(ParseChange.update(result));
+                index(name, result);
             } catch(ParseException e) {
                 final String message = String.format("Parsing for %s failed", name);
                 logger.error(message, e);
                 updates.onNext(ParseChange.<P>error(e));
             }
+        } else {
+            hits.incrementAndGet();
+        }
+        touch(name);
+        return updates;
+    }
+
+    /**
+     * Moves a released parse change back into the cache, if it has not been garbage collected yet.
+     */
+    private @Nullable BehaviorSubject<ParseChange<P>> restore(FileName name) {
+        pruneReleased();
+        final @Nullable ReleasedChange<P> reference = released.remove(name);
+        if(reference == null) {
+            return null;
+        }
+        final @Nullable ParseChange<P> change = reference.get();
+        if(change == null) {
+            return null;
+        }
+        final BehaviorSubject<ParseChange<P>> updates = BehaviorSubject.createDefault(change);
+        final BehaviorSubject<ParseChange<P>> prevUpdates = updatesPerResource.putIfAbsent(name, updates);
+        if(prevUpdates != null) {
+            return prevUpdates;
+        }
+        if(change.unit != null) {
+            index(name, change.unit);
         }
         return updates;
     }
+
+    /**
+     * Removes the entries of released parse changes that have been garbage collected.
+     */
+    private void pruneReleased() {
+        Reference<? extends ParseChange<P>> reference;
+        while((reference = collected.poll()) != null) {
+            released.remove(((ReleasedChange<P>) reference).name, reference);
+        }
+    }
+
+    private void index(FileName name, P unit) {
+        final ILanguageImpl impl = unit.input().langImpl();
+        resourcesPerLanguage.computeIfAbsent(impl, k -> Sets.newConcurrentHashSet()).add(name);
+    }
+
+    private void unindex(FileName name, @Nullable ParseChange<P> change) {
+        if(change == null || change.unit == null) {
+            return;
+        }
+        final @Nullable Set<FileName> resources = resourcesPerLanguage.get(change.unit.input().langImpl());
+        if(resources != null) {
+            resources.remove(name);
+        }
+    }
+
+    /**
+     * Marks the parse result of given resource as most recently used, and evicts parse results if the cache exceeds
+     * its maximum size. The parse result of given resource is never evicted here, since it is about to be returned or
+     * subscribed to.
+     */
+    private void touch(FileName name) {
+        if(!config.bounded()) {
+            return;
+        }
+        synchronized(accessOrder) {
+            accessOrder.put(name, Boolean.TRUE);
+            if(accessOrder.size() > config.maximumSize) {
+                evict(name);
+            }
+        }
+    }
+
+    private void forget(FileName name) {
+        if(!config.bounded()) {
+            return;
+        }
+        synchronized(accessOrder) {
+            accessOrder.remove(name);
+        }
+    }
+
+    /**
+     * Evicts least recently used parse results until the cache fits its maximum size. Parse results of resources with
+     * subscribers, of invalidated resources that are waiting for a new parse result, and of the protected resource,
+     * are never evicted.
+     */
+    private void evict(FileName protect) {
+        final Iterator<FileName> iterator = accessOrder.keySet().iterator();
+        while(accessOrder.size() > config.maximumSize && iterator.hasNext()) {
+            final FileName name = iterator.next();
+            if(name.equals(protect)) {
+                continue;
+            }
+            final @Nullable BehaviorSubject<ParseChange<P>> updates = updatesPerResource.get(name);
+            if(updates == null) {
+                iterator.remove();
+                continue;
+            }
+            if(updates.hasObservers()) {
+                continue;
+            }
+            final @Nullable ParseChange<P> change = updates.getValue();
+            if(change == null || change.kind == UpdateKind.Invalidate) {
+                continue;
+            }
+            if(updatesPerResource.remove(name, updates)) {
+                logger.trace("Evicting parse result for {}", name);
+                iterator.remove();
+                unindex(name, change);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+
+    private static class ReleasedChange<P extends IParseUnit> extends SoftReference<ParseChange<P>> {
+        final FileName name;
+
+        ReleasedChange(FileName name, ParseChange<P> change, ReferenceQueue<ParseChange<P>> queue) {
+            super(change, queue);
+            this.name = name;
+        }
+    }
 }
@@ -145,4 +145,18 @@ public interface IResourceService extends AutoCloseable {
      * @return Local file handle, or null if given resource does not reside on the local file system.
      */
     @Nullable File localPath(FileObject resource);
+
+    /**
+     * Removes cached resolutions of given resource, such that the next call to {@link #resolve(String)} resolves it
+     * again. Resolutions of resources that are deleted through the VFS are removed automatically.
+     * 
+     * @param name
+     *            Name of the resource to remove cached resolutions for.
+     */
+    void invalidate(FileName name);
+
+    /**
+     * @return Statistics of the cache of resources resolved with {@link #resolve(String)}.
+     */
+    ResourceResolutionStatistics resolutionStatistics();
 }
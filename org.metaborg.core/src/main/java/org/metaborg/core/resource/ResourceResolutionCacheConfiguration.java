@@ -0,0 +1,28 @@
+package org.metaborg.core.resource;
+
+/**
+ * Configuration of the cache of resolved resources in {@link ResourceService}. By default at most
+ * {@link #defaultMaximumSize} resolved resources are cached. When {@link #maximumSize} is 0, resolved resources are
+ * not cached.
+ */
+public class ResourceResolutionCacheConfiguration {
+    public static final int defaultMaximumSize = 4096;
+
+    public final int maximumSize;
+
+    public ResourceResolutionCacheConfiguration() {
+        this(defaultMaximumSize);
+    }
+
+    public ResourceResolutionCacheConfiguration(int maximumSize) {
+        if(maximumSize < 0) {
+            throw new IllegalArgumentException(
+                "Maximum resource resolution cache size cannot be negative, got " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    public boolean enabled() {
+        return maximumSize > 0;
+    }
+}
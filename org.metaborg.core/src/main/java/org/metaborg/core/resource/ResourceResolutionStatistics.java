@@ -0,0 +1,30 @@
+package org.metaborg.core.resource;
+
+/**
+ * Statistics of the cache of resolved resources in {@link ResourceService}.
+ */
+public class ResourceResolutionStatistics {
+    /** Number of resolutions that were answered with a cached resource. */
+    public final long hits;
+    /** Number of resolutions for which no resource was cached. */
+    public final long misses;
+    /** Number of cached resources. */
+    public final long size;
+
+
+    public ResourceResolutionStatistics(long hits, long misses, long size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.size = size;
+    }
+
+
+    public double hitRate() {
+        final long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override public String toString() {
+        return String.format("%d hits, %d misses, %d cached", hits, misses, size);
+    }
+}
@@ -3,8 +3,13 @@ package org.metaborg.core.resource;
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.vfs2.AllFileSelector;
+import org.apache.commons.vfs2.FileChangeEvent;
+import org.apache.commons.vfs2.FileListener;
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
@@ -21,6 +26,9 @@ import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 import org.metaborg.util.resource.ResourceUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
@@ -30,11 +38,33 @@ public class ResourceService implements IResourceService {
     private final FileSystemManager fileSystemManager;
     private final FileSystemOptions fileSystemOptions;
 
+    /**
+     * Resolved resources by the string they were resolved from, or null if resolved resources are not cached. Entries
+     * of deleted resources are removed by {@link #deleteListener}, which is registered for each cached resource.
+     */
+    private final @Nullable Cache<String, FileObject> resolutionCache;
+    private final FileListener deleteListener = new DeleteListener();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
 
-    @Inject public ResourceService(FileSystemManager fileSystemManager,
+
+    public ResourceService(FileSystemManager fileSystemManager,
         @Named("ResourceClassLoader") ClassLoader classLoader) {
+        this(fileSystemManager, classLoader, new ResourceResolutionCacheConfiguration());
+    }
+
+    @Inject public ResourceService(FileSystemManager fileSystemManager,
+        @Named("ResourceClassLoader") ClassLoader classLoader, ResourceResolutionCacheConfiguration cacheConfig) {
         this.fileSystemManager = fileSystemManager;
         this.fileSystemOptions = new FileSystemOptions();
+        if(cacheConfig.enabled()) {
+            final RemovalListener<String, FileObject> removalListener =
+                notification -> removeDeleteListener(notification.getValue());
+            this.resolutionCache = CacheBuilder.newBuilder().maximumSize(cacheConfig.maximumSize)
+                .removalListener(removalListener).build();
+        } else {
+            this.resolutionCache = null;
+        }
 
         if(classLoader == null) {
             classLoader = this.getClass().getClassLoader();
@@ -44,6 +74,9 @@ public class ResourceService implements IResourceService {
     }
 
     @Override public void close() {
+        if(resolutionCache != null) {
+            resolutionCache.invalidateAll();
+        }
         if(fileSystemManager instanceof DefaultFileSystemManager) {
             final DefaultFileSystemManager defaultFileSystemManager = (DefaultFileSystemManager) fileSystemManager;
             defaultFileSystemManager.close();
@@ -62,6 +95,29 @@ public class ResourceService implements IResourceService {
     }
 
     @Override public FileObject resolve(String uri) {
+        if(resolutionCache == null) {
+            return resolveUncached(uri);
+        }
+        final @Nullable FileObject cached = resolutionCache.getIfPresent(uri);
+        if(cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        final FileObject resource = resolveUncached(uri);
+        // Listen before caching, such that the listener is always registered when the removal listener removes it.
+        if(!addDeleteListener(resource)) {
+            return resource;
+        }
+        final FileObject existing = resolutionCache.asMap().putIfAbsent(uri, resource);
+        if(existing != null) {
+            removeDeleteListener(resource);
+            return existing;
+        }
+        return resource;
+    }
+
+    private FileObject resolveUncached(String uri) {
         try {
             final String uriEncoded = URIEncode.encode(uri);
             return fileSystemManager.resolveFile(uriEncoded, fileSystemOptions);
@@ -171,4 +227,49 @@ public class ResourceService implements IResourceService {
         }
         return null;
     }
+
+    @Override public void invalidate(FileName name) {
+        if(resolutionCache == null) {
+            return;
+        }
+        resolutionCache.asMap().values().removeIf(resource -> resource.getName().equals(name));
+    }
+
+    @Override public ResourceResolutionStatistics resolutionStatistics() {
+        final long size = resolutionCache != null ? resolutionCache.size() : 0;
+        return new ResourceResolutionStatistics(hits.get(), misses.get(), size);
+    }
+
+
+    private boolean addDeleteListener(FileObject resource) {
+        try {
+            resource.getFileSystem().addListener(resource, deleteListener);
+            return true;
+        } catch(RuntimeException e) {
+            // A resource that cannot be listened to could be deleted unnoticed, do not cache it.
+            logger.debug("Cannot listen for deletion of {}, not caching it", e, resource);
+            return false;
+        }
+    }
+
+    private void removeDeleteListener(FileObject resource) {
+        try {
+            resource.getFileSystem().removeListener(resource, deleteListener);
+        } catch(RuntimeException e) {
+            logger.debug("Cannot stop listening for deletion of {}", e, resource);
+        }
+    }
+
+
+    private class DeleteListener implements FileListener {
+        @Override public void fileDeleted(FileChangeEvent event) {
+            invalidate(event.getFile().getName());
+        }
+
+        @Override public void fileCreated(FileChangeEvent event) {
+        }
+
+        @Override public void fileChanged(FileChangeEvent event) {
+        }
+    }
 }
@@ -40,4 +40,11 @@ public interface IParser<I extends IInputUnit, P extends IParseUnit> {
      */
     Collection<P> parseAll(Iterable<I> inputs, IProgress progress, ICancel cancel)
         throws ParseException, InterruptedException;
+
+    /**
+     * @return True if this parser supports parsing from multiple threads concurrently, false if not.
+     */
+    default boolean concurrent() {
+        return false;
+    }
 }
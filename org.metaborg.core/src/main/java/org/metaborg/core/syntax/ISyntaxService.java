@@ -27,6 +27,17 @@ public interface ISyntaxService<I extends IInputUnit, P extends IParseUnit> {
      */
     boolean available(ILanguageImpl langImpl);
 
+    /**
+     * Checks if given language implementation can be parsed from multiple threads concurrently.
+     * 
+     * @param langImpl
+     *            Language implementation to check.
+     * @return True if parsing is supported from multiple threads concurrently, false if not.
+     */
+    default boolean concurrent(ILanguageImpl langImpl) {
+        return false;
+    }
+
 
     /**
      * Parses given input unit into a parse unit.
@@ -1,7 +1,11 @@
 package org.metaborg.core.syntax;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.util.log.ILogger;
@@ -10,6 +14,7 @@ import org.metaborg.util.task.ICancel;
 import org.metaborg.util.task.IProgress;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
 public abstract class SyntaxService<I extends IInputUnit, P extends IParseUnit> implements ISyntaxService<I, P> {
@@ -27,6 +32,11 @@ public abstract class SyntaxService<I extends IInputUnit, P extends IParseUnit>
         return parser(langImpl) != null;
     }
 
+    @Override public boolean concurrent(ILanguageImpl langImpl) {
+        final IParser<I, P> parser = parser(langImpl);
+        return parser != null && parser.concurrent();
+    }
+
 
     @Override public P parse(I input, IProgress progress, ICancel cancel) throws ParseException, InterruptedException {
         final ILanguageImpl langImpl = input.langImpl();
@@ -40,9 +50,33 @@ public abstract class SyntaxService<I extends IInputUnit, P extends IParseUnit>
 
     @Override public Collection<P> parseAll(Iterable<I> inputs, IProgress progress, ICancel cancel)
         throws ParseException, InterruptedException {
-        final Collection<P> results = Lists.newArrayList();
-        for(I input : inputs) {
-            results.add(parse(input, progress, cancel));
+        // Group inputs by parser, such that each parser receives all its inputs at once and can, for example, parse them
+        // concurrently. Remember the position of each input, to return parse units in the order of the inputs.
+        final List<I> inputList = Lists.newArrayList(inputs);
+        final Map<IParser<I, P>, List<Integer>> positionsPerParser = Maps.newLinkedHashMap();
+        for(int i = 0; i < inputList.size(); ++i) {
+            final I input = inputList.get(i);
+            final ILanguageImpl langImpl = input.langImpl();
+            final IParser<I, P> parser = parser(langImpl);
+            if(parser == null) {
+                final String message = logger.format("Cannot get a parser for {}", langImpl);
+                throw new ParseException(input, message);
+            }
+            positionsPerParser.computeIfAbsent(parser, p -> Lists.newArrayList()).add(i);
+        }
+
+        final List<P> results = Lists.newArrayList(Collections.nCopies(inputList.size(), (P) null));
+        for(Entry<IParser<I, P>, List<Integer>> entry : positionsPerParser.entrySet()) {
+            final IParser<I, P> parser = entry.getKey();
+            final List<Integer> positions = entry.getValue();
+            final List<I> parserInputs = Lists.newArrayListWithCapacity(positions.size());
+            for(int position : positions) {
+                parserInputs.add(inputList.get(position));
+            }
+            final Iterator<P> parseUnits = parser.parseAll(parserInputs, progress, cancel).iterator();
+            for(int position : positions) {
+                results.set(position, parseUnits.next());
+            }
         }
         return results;
     }
@@ -17,4 +17,12 @@ public interface ITransformConfig {
      * If this returns true, the transformation should be performed without side effects like writing output files.
      */
     public boolean dryRun();
+
+    /**
+     * If this returns true, the transformation may run on a runtime that is reused across transformations, for example
+     * from a pool of runtimes. Otherwise, the transformation runs on a fresh runtime.
+     */
+    public default boolean reuseRuntimes() {
+        return false;
+    }
 }
@@ -17,4 +17,10 @@ public interface ITransformOutput {
      * Output file, or null if output was not written to a file.
      */
     @Nullable FileObject output();
+
+    /**
+     * Whether the output file was written. False if the output file already had the same contents and was left
+     * untouched, or if output was not written to a file.
+     */
+    boolean changed();
 }
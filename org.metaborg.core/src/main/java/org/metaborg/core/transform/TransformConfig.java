@@ -7,26 +7,29 @@ import org.metaborg.core.source.ISourceRegion;
 public class TransformConfig implements ITransformConfig {
     private final @Nullable ISourceRegion selection;
     private final boolean dry;
+    private final boolean reuseRuntimes;
 
 
-    public TransformConfig(@Nullable ISourceRegion selection, boolean dry) {
+    public TransformConfig(@Nullable ISourceRegion selection, boolean dry, boolean reuseRuntimes) {
         this.selection = selection;
         this.dry = dry;
+        this.reuseRuntimes = reuseRuntimes;
+    }
+
+    public TransformConfig(@Nullable ISourceRegion selection, boolean dry) {
+        this(selection, dry, false);
     }
 
     public TransformConfig(boolean dry) {
-        this.selection = null;
-        this.dry = dry;
+        this(null, dry, false);
     }
 
     public TransformConfig(@Nullable ISourceRegion selection) {
-        this.selection = selection;
-        this.dry = false;
+        this(selection, false, false);
     }
 
     public TransformConfig() {
-        this.selection = null;
-        this.dry = false;
+        this(null, false, false);
     }
 
 
@@ -37,4 +40,8 @@ public class TransformConfig implements ITransformConfig {
     @Override public boolean dryRun() {
         return dry;
     }
+
+    @Override public boolean reuseRuntimes() {
+        return reuseRuntimes;
+    }
 }
@@ -2,6 +2,7 @@ package org.metaborg.spoofax.core;
 
 import org.metaborg.core.MetaborgModule;
 import org.metaborg.core.action.IActionService;
+import org.metaborg.core.analysis.AnalysisMetricsConfiguration;
 import org.metaborg.core.analysis.IAnalysisService;
 import org.metaborg.core.analysis.IAnalyzer;
 import org.metaborg.core.build.IBuildOutputInternal;
@@ -27,6 +28,7 @@ import org.metaborg.core.processing.analyze.IAnalysisResultUpdater;
 import org.metaborg.core.processing.parse.IParseResultProcessor;
 import org.metaborg.core.processing.parse.IParseResultRequester;
 import org.metaborg.core.processing.parse.IParseResultUpdater;
+import org.metaborg.core.processing.parse.ParseResultCacheConfiguration;
 import org.metaborg.core.style.ICategorizerService;
 import org.metaborg.core.style.IStylerService;
 import org.metaborg.core.syntax.IParser;
@@ -145,6 +147,7 @@ import org.metaborg.spoofax.core.syntax.ISpoofaxParser;
 import org.metaborg.spoofax.core.syntax.ISpoofaxSyntaxService;
 import org.metaborg.spoofax.core.syntax.JSGLRParseService;
 import org.metaborg.spoofax.core.syntax.JSGLRParserConfiguration;
+import org.metaborg.spoofax.core.syntax.JSGLRParserPoolConfiguration;
 import org.metaborg.spoofax.core.syntax.SpoofaxSyntaxService;
 import org.metaborg.spoofax.core.tracing.HoverService;
 import org.metaborg.spoofax.core.tracing.ISpoofaxHoverService;
@@ -358,6 +361,7 @@ public class SpoofaxModule extends MetaborgModule {
         autoClosableBinder.addBinding().to(JSGLRParseService.class);
 
         bind(JSGLRParserConfiguration.class).toInstance(new JSGLRParserConfiguration());
+        bind(JSGLRParserPoolConfiguration.class).toInstance(new JSGLRParserPoolConfiguration());
     }
 
     /**
@@ -365,6 +369,8 @@ public class SpoofaxModule extends MetaborgModule {
      * to provide analyzers.
      */
     @Override protected void bindAnalysis() {
+        bind(AnalysisMetricsConfiguration.class).toInstance(new AnalysisMetricsConfiguration());
+
         // Analysis service
         bind(SpoofaxAnalysisService.class).in(Singleton.class);
         bind(ISpoofaxAnalysisService.class).to(SpoofaxAnalysisService.class);
@@ -595,6 +601,7 @@ public class SpoofaxModule extends MetaborgModule {
      * {@link IStrategoTerm}.
      */
     @Override protected void bindBuilder() {
+        bind(ParseResultCacheConfiguration.class).toInstance(new ParseResultCacheConfiguration());
         bind(SpoofaxParseResultProcessor.class).in(Singleton.class);
 
         bind(ISpoofaxParseResultRequester.class).to(SpoofaxParseResultProcessor.class);
@@ -1,6 +1,8 @@
 package org.metaborg.spoofax.core.analysis;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import javax.annotation.Nullable;
 
@@ -11,6 +13,7 @@ import org.metaborg.core.messages.MessageSeverity;
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
 import org.spoofax.interpreter.core.StackTracer;
 import org.spoofax.interpreter.terms.IStrategoString;
 import org.spoofax.interpreter.terms.IStrategoTerm;
@@ -95,6 +98,29 @@ public class AnalysisCommon {
         return messages;
     }
 
+    /**
+     * Creates messages for the ambiguities of given analyzed AST. Reuses the ambiguities recorded while parsing if the
+     * analyzed AST is the AST of given parse unit. Otherwise, or if the parser did not record ambiguities, traverses
+     * the analyzed AST, since analysis may have resolved or introduced ambiguities.
+     */
+    public Collection<IMessage> ambiguityMessages(FileObject resource, ISpoofaxParseUnit input, IStrategoTerm ast) {
+        if(ast != input.ast()) {
+            return ambiguityMessages(resource, ast);
+        }
+        if(!input.isAmbiguous()) {
+            return Collections.emptyList();
+        }
+        final @Nullable List<IStrategoTerm> ambiguities = input.ambiguities();
+        if(ambiguities == null) {
+            return ambiguityMessages(resource, ast);
+        }
+        final Collection<IMessage> messages = Lists.newArrayListWithCapacity(ambiguities.size());
+        for(IStrategoTerm amb : ambiguities) {
+            messages.add(ambiguityMessage(resource, amb));
+        }
+        return messages;
+    }
+
     public Collection<IMessage> ambiguityMessages(final FileObject resource, IStrategoTerm ast) {
         final Collection<IMessage> messages = Lists.newLinkedList();
         final TermVisitor termVisitor = new TermVisitor() {
@@ -102,15 +128,7 @@ public class AnalysisCommon {
 
             @Override public void preVisit(IStrategoTerm term) {
                 if(ambStart == null && "amb".equals(TermUtils.asAppl(term).map(a -> a.getConstructor().getName()).orElse(null))) {
-                    final String text = "Fragment is ambiguous: " + ambToString(term);
-                    final ISourceLocation location = tracingService.location(term);
-                    if(location != null) {
-                        final ISourceRegion region = location.region();
-                        messages.add(message(resource, region, text, MessageSeverity.WARNING));
-                    } else {
-                        messages.add(message(resource, text, MessageSeverity.WARNING));
-                    }
-
+                    messages.add(ambiguityMessage(resource, term));
                     ambStart = term;
                 }
             }
@@ -120,16 +138,27 @@ public class AnalysisCommon {
                     ambStart = null;
                 }
             }
-
-            private String ambToString(IStrategoTerm amb) {
-                final String result = amb.toString();
-                return result.length() > 5000 ? result.substring(0, 5000) + "..." : result;
-            }
         };
         termVisitor.visit(ast);
         return messages;
     }
 
+    private IMessage ambiguityMessage(FileObject resource, IStrategoTerm amb) {
+        final String text = "Fragment is ambiguous: " + ambToString(amb);
+        final ISourceLocation location = tracingService.location(amb);
+        if(location != null) {
+            final ISourceRegion region = location.region();
+            return message(resource, region, text, MessageSeverity.WARNING);
+        } else {
+            return message(resource, text, MessageSeverity.WARNING);
+        }
+    }
+
+    private static String ambToString(IStrategoTerm amb) {
+        final String result = amb.toString();
+        return result.length() > 5000 ? result.substring(0, 5000) + "..." : result;
+    }
+
 
     private String toString(IStrategoTerm term) {
         if(TermUtils.isString(term)) {
@@ -5,8 +5,19 @@ import org.metaborg.core.language.IFacet;
 public class AnalysisFacet implements IFacet {
     public final String strategyName;
 
+    /**
+     * If the analysis strategy only receives added, changed, and removed files in multi file constraint analysis,
+     * instead of a change for every file in the project.
+     */
+    public final boolean sparseChanges;
 
-    public AnalysisFacet(String strategyName) {
+
+    public AnalysisFacet(String strategyName, boolean sparseChanges) {
         this.strategyName = strategyName;
+        this.sparseChanges = sparseChanges;
+    }
+
+    public AnalysisFacet(String strategyName) {
+        this(strategyName, false);
     }
 }
@@ -21,7 +21,7 @@ public class AnalysisFacetFromESV {
         if(strategyName == null) {
             return null;
         }
-        return new AnalysisFacet(strategyName);
+        return new AnalysisFacet(strategyName, sparseChanges(esv));
     }
 
     private static @Nullable String strategyName(IStrategoAppl esv) {
@@ -33,6 +33,19 @@ public class AnalysisFacetFromESV {
         return observerFunction;
     }
 
+    private static boolean sparseChanges(IStrategoAppl esv) {
+        final IStrategoAppl strategy = ESVReader.findTerm(esv, "SemanticObserver");
+        if(strategy == null) {
+            return false;
+        }
+        for(IStrategoTerm annotation : strategy.getSubterm(1)) {
+            if(TermUtils.isAppl(annotation, "Sparse", 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 
     public static @Nullable String type(IStrategoAppl esv) {
         final IStrategoAppl strategy = ESVReader.findTerm(esv, "SemanticObserver");
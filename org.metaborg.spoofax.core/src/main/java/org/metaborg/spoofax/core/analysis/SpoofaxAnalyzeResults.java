@@ -4,6 +4,7 @@ import java.util.Collection;
 
 import javax.annotation.Nullable;
 
+import org.metaborg.core.analysis.AnalysisMetrics;
 import org.metaborg.core.analysis.AnalyzeResults;
 import org.metaborg.core.context.IContext;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
@@ -18,11 +19,16 @@ public class SpoofaxAnalyzeResults extends AnalyzeResults<ISpoofaxAnalyzeUnit, I
 
 
     public SpoofaxAnalyzeResults(Collection<ISpoofaxAnalyzeUnit> results, Collection<ISpoofaxAnalyzeUnitUpdate> updates,
-        IContext context, @Nullable Object debugData) {
-        super(results, updates, context);
+        IContext context, @Nullable Object debugData, @Nullable AnalysisMetrics metrics) {
+        super(results, updates, context, metrics);
         this.debugData = debugData;
     }
 
+    public SpoofaxAnalyzeResults(Collection<ISpoofaxAnalyzeUnit> results, Collection<ISpoofaxAnalyzeUnitUpdate> updates,
+        IContext context, @Nullable Object debugData) {
+        this(results, updates, context, debugData, null);
+    }
+
     public SpoofaxAnalyzeResults(Collection<ISpoofaxAnalyzeUnit> results, Collection<ISpoofaxAnalyzeUnitUpdate> updates,
         IContext context) {
         this(results, updates, context, null);
@@ -30,6 +30,7 @@ import org.metaborg.spoofax.core.analysis.SpoofaxAnalyzeResults;
 import org.metaborg.spoofax.core.context.constraint.IConstraintContext;
 import org.metaborg.spoofax.core.stratego.IStrategoCommon;
 import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
+import org.metaborg.spoofax.core.stratego.StrategoRuntimeLease;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spoofax.core.unit.AnalyzeContrib;
 import org.metaborg.spoofax.core.unit.AnalyzeUpdateData;
@@ -120,13 +121,6 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         }
         final AnalysisFacet facet = facetContribution.facet;
 
-        final HybridInterpreter runtime;
-        try {
-            runtime = runtimeService.runtime(facetContribution.contributor, context);
-        } catch(MetaborgException e) {
-            throw new AnalysisException(context, "Failed to get Stratego runtime", e);
-        }
-
         final Map<String, ISpoofaxParseUnit> changed = Maps.newHashMap();
         final Map<String, ISpoofaxAnalyzeUnit> removed = Maps.newHashMap();
         final Map<String, ISpoofaxAnalyzeUnit> invalid = Maps.newHashMap();
@@ -148,10 +142,23 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             }
         }
 
+        final StrategoRuntimeLease lease;
+        try {
+            lease = runtimeService.leaseRuntime(facetContribution.contributor, context);
+        } catch(MetaborgException e) {
+            throw new AnalysisException(context, "Failed to get Stratego runtime", e);
+        }
+
         final Timer timer = new Timer(true);
         try {
-            return doAnalysis(changed, removed, invalid, context, runtime, facet.strategyName, progress, cancel);
+            return doAnalysis(changed, removed, invalid, context, lease.runtime(), facet.strategyName,
+                facet.sparseChanges, progress, cancel);
+        } catch(AnalysisException | RuntimeException e) {
+            // Do not return a runtime in an unknown state to the pool.
+            lease.discard();
+            throw e;
         } finally {
+            lease.close();
             logger.debug("Analysis finished in {} s", timer.stop() / 1_000_000_000d);
         }
     }
@@ -162,8 +169,8 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
 
     private ISpoofaxAnalyzeResults doAnalysis(Map<String, ISpoofaxParseUnit> changed,
             Map<String, ISpoofaxAnalyzeUnit> removed, Map<String, ISpoofaxAnalyzeUnit> invalid,
-            IConstraintContext context, HybridInterpreter runtime, String strategy, IProgress progress, ICancel cancel)
-            throws AnalysisException {
+            IConstraintContext context, HybridInterpreter runtime, String strategy, boolean sparse, IProgress progress,
+            ICancel cancel) throws AnalysisException {
 
         /*******************************************************************
          * 1. Compute changeset, and remove invalidated units from context *
@@ -172,8 +179,10 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         final Ref<IStrategoTerm> projectChange = new Ref<>();
         final List<IStrategoTerm> changes = new ArrayList<>();
         final Map<String, Expect> expects = new HashMap<>();
+        final Set<FileName> affected = Sets.newHashSet();
 
-        final boolean realChange = computeChanges(context, changed, removed, projectChange, changes, expects);
+        final boolean realChange =
+                computeChanges(context, changed, removed, sparse, projectChange, changes, expects, affected);
 
         /***************************************
          * 2. Call analysis, and parse results *
@@ -183,8 +192,8 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
 
         if(realChange) {
 
-            callAnalysis(context, changed, projectChange.get(), changes, expects, runtime, strategy, cancel, progress,
-                    results);
+            callAnalysis(context, changed, projectChange.get(), changes, expects, runtime, strategy, sparse, cancel,
+                    progress, results);
 
         }
 
@@ -194,7 +203,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
 
         final ListMultimap<FileName, IMessage> messages = ArrayListMultimap.create();
 
-        processResults(changed, expects, results, messages);
+        processResults(changed, expects, results, affected, messages);
 
         /************************************
          * 4. Create Spoofax analysis units *
@@ -204,7 +213,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         final Set<ISpoofaxAnalyzeUnitUpdate> updateResults = Sets.newHashSet();
         for(Expect expect : expects.values()) {
             Collection<IMessage> fileMessages = messages.get(expect.resource().getName());
-            expect.result(fileMessages, fullResults, updateResults);
+            expect.result(fileMessages, fullResults, updateResults, affected);
         }
         fullResults.addAll(removed.values());
         fullResults.addAll(invalid.values());
@@ -213,8 +222,8 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
     }
 
     private boolean computeChanges(IConstraintContext context, Map<String, ISpoofaxParseUnit> changed,
-            Map<String, ISpoofaxAnalyzeUnit> removed, Ref<IStrategoTerm> projectChange,
-            final List<IStrategoTerm> changes, final Map<String, Expect> expects) {
+            Map<String, ISpoofaxAnalyzeUnit> removed, boolean sparse, Ref<IStrategoTerm> projectChange,
+            final List<IStrategoTerm> changes, final Map<String, Expect> expects, Set<FileName> affected) {
         boolean realChange = false;
 
         // project entry
@@ -223,8 +232,8 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             final IStrategoTerm projectAst = projectAST(resource);
             final IStrategoTerm change;
             final Expect expect;
-            if(context.contains(resource)) {
-                final IConstraintContext.Entry ctxEntry = context.get(resource);
+            final IConstraintContext.Entry ctxEntry = context.get(resource);
+            if(ctxEntry != null) {
                 change = build("Cached", ctxEntry.analysis());
                 expect = new Update(resource, projectAst.hashCode(), projectAst, ctxEntry.analysis(), ctxEntry.errors(),
                         ctxEntry.warnings(), ctxEntry.notes(), ctxEntry.exceptions(), context);
@@ -243,10 +252,13 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         // removed files
         for(Map.Entry<String, ISpoofaxAnalyzeUnit> entry : removed.entrySet()) {
             final String resource = entry.getKey();
-            if(context.contains(entry.getKey())) {
-                final IConstraintContext.Entry ctxEntry = context.get(resource);
+            final IConstraintContext.Entry ctxEntry = context.get(resource);
+            if(ctxEntry != null) {
                 changes.add(
                         termFactory.makeTuple(termFactory.makeString(resource), build("Removed", ctxEntry.analysis())));
+                addMessageSources(ctxEntry.errors(), affected);
+                addMessageSources(ctxEntry.warnings(), affected);
+                addMessageSources(ctxEntry.notes(), affected);
                 context.remove(resource);
                 realChange = true;
             }
@@ -260,8 +272,8 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             final int parseHash = parseAst.hashCode();
             final IStrategoTerm change;
             final Expect expect;
-            if(context.contains(resource)) {
-                final IConstraintContext.Entry ctxEntry = context.get(resource);
+            final IConstraintContext.Entry ctxEntry = context.get(resource);
+            if(ctxEntry != null) {
                 final IStrategoTerm analyzedAst = ctxEntry.analyzedAst();
                 if(ctxEntry.parseHash() != parseHash || analyzedAst == null) {
                     change = build("Changed", parseAst, ctxEntry.analysis());
@@ -277,12 +289,17 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
                 expect = new Full(resource, parseHash, input, context);
                 realChange = true;
             }
-            context.remove(resource);
             expects.put(resource, expect);
-            changes.add(termFactory.makeTuple(termFactory.makeString(resource), change));
+            if(!sparse || !(expect instanceof UpdateFull)) {
+                context.remove(resource);
+                changes.add(termFactory.makeTuple(termFactory.makeString(resource), change));
+            }
+            // Otherwise no change is sent, and the entry stays such that the analysis can get its cached result by
+            // resource key. The expected result replaces the entry.
         }
 
-        // cached files
+        // cached files, which are only sent to the analysis if it is called and does not use sparse changes, but are
+        // always expected to provide the messages they have on other files
         if(multifile()) {
             for(Map.Entry<String, IConstraintContext.Entry> entry : context.entrySet()) {
                 final String resource = entry.getKey();
@@ -290,10 +307,12 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
                 final IStrategoTerm analyzedAst = ctxEntry.analyzedAst();
                 final IStrategoTerm analysis = ctxEntry.analysis();
                 if(!changed.containsKey(resource)) {
-                    final IStrategoTerm change = build("Cached", analysis);
                     expects.put(resource, new Update(resource, ctxEntry.parseHash(), analyzedAst, analysis,
                             ctxEntry.errors(), ctxEntry.warnings(), ctxEntry.notes(), ctxEntry.exceptions(), context));
-                    changes.add(termFactory.makeTuple(termFactory.makeString(resource), change));
+                    if(realChange && !sparse) {
+                        final IStrategoTerm change = build("Cached", analysis);
+                        changes.add(termFactory.makeTuple(termFactory.makeString(resource), change));
+                    }
                 }
             }
         }
@@ -303,13 +322,13 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
 
     private void callAnalysis(IConstraintContext context, Map<String, ISpoofaxParseUnit> changed,
             final IStrategoTerm projectChange, final List<IStrategoTerm> changes, Map<String, Expect> expects,
-            HybridInterpreter runtime, String strategy, ICancel cancel, IProgress progress,
+            HybridInterpreter runtime, String strategy, boolean sparse, ICancel cancel, IProgress progress,
             final Map<String, IStrategoTerm> results) throws AnalysisException {
 
         final IStrategoTerm action;
         if(multifile()) {
-            action = build("AnalyzeMulti", projectChange, termFactory.makeList(changes), B.blob(progress),
-                    B.blob(cancel));
+            action = build(sparse ? "AnalyzeMultiSparse" : "AnalyzeMulti", projectChange,
+                    termFactory.makeList(changes), B.blob(progress), B.blob(cancel));
         } else {
             action = build("AnalyzeSingle", termFactory.makeList(changes), B.blob(progress), B.blob(cancel));
         }
@@ -356,7 +375,8 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
     }
 
     private void processResults(Map<String, ISpoofaxParseUnit> changed, final Map<String, Expect> expects,
-            final Map<String, IStrategoTerm> results, ListMultimap<FileName, IMessage> messages) {
+            final Map<String, IStrategoTerm> results, Set<FileName> affected,
+            ListMultimap<FileName, IMessage> messages) {
 
         // call expects with result
         for(Map.Entry<String, IStrategoTerm> entry : results.entrySet()) {
@@ -369,10 +389,27 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             }
         }
 
-        // collect messages
-        for(Map.Entry<String, Expect> entry : expects.entrySet()) {
-            final Expect expect = entry.getValue();
-            messages.putAll(expect.messages());
+        // Only files whose messages may have changed get an update, which are the files of changed results, and files
+        // that changed or removed results had messages on.
+        for(Expect expect : expects.values()) {
+            if(expect.affected()) {
+                expect.affectedFiles(affected);
+            }
+        }
+        if(affected.isEmpty()) {
+            return;
+        }
+
+        // collect messages on affected files, skipping results without messages
+        for(Expect expect : expects.values()) {
+            if(!expect.affected() && !expect.hasMessages()) {
+                continue;
+            }
+            for(Map.Entry<FileName, IMessage> entry : expect.messages().entries()) {
+                if(affected.contains(entry.getKey())) {
+                    messages.put(entry.getKey(), entry.getValue());
+                }
+            }
         }
 
     }
@@ -389,6 +426,12 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         protected IStrategoTerm notes;
         protected List<String> exceptions;
 
+        // Messages before analysis, to determine which files are affected by changed messages.
+        private final IStrategoTerm initialErrors;
+        private final IStrategoTerm initialWarnings;
+        private final IStrategoTerm initialNotes;
+        private final List<String> initialExceptions;
+
         protected Expect(String resource, int parseHash, IStrategoTerm errors, IStrategoTerm warnings,
                 IStrategoTerm notes, List<String> exceptions, IConstraintContext context) {
             this.resource = resource;
@@ -398,6 +441,10 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             this.notes = notes;
             this.exceptions = exceptions != null ? Lists.newArrayList(exceptions) : Lists.newArrayList();
             this.context = context;
+            this.initialErrors = errors;
+            this.initialWarnings = warnings;
+            this.initialNotes = notes;
+            this.initialExceptions = ImmutableList.copyOf(this.exceptions);
         }
 
         protected FileObject resource() {
@@ -406,6 +453,42 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
 
         abstract boolean requireResult();
 
+        /**
+         * @return True if the result of the analysis differs from the cached result.
+         */
+        abstract boolean changed();
+
+        /**
+         * @return True if messages must be reported for this file and the files it has messages on.
+         */
+        boolean affected() {
+            return changed();
+        }
+
+        protected boolean messagesChanged() {
+            return !sameMessages(initialErrors, errors) || !sameMessages(initialWarnings, warnings)
+                    || !sameMessages(initialNotes, notes) || !initialExceptions.equals(exceptions);
+        }
+
+        boolean hasMessages() {
+            return !isEmpty(errors) || !isEmpty(warnings) || !isEmpty(notes) || !exceptions.isEmpty();
+        }
+
+        /**
+         * Adds this file, and the files this result had or has messages on, to given set.
+         */
+        void affectedFiles(Set<FileName> affected) {
+            affected.add(resource().getName());
+            if(multifile()) {
+                addMessageSources(initialErrors, affected);
+                addMessageSources(initialWarnings, affected);
+                addMessageSources(initialNotes, affected);
+                addMessageSources(errors, affected);
+                addMessageSources(warnings, affected);
+                addMessageSources(notes, affected);
+            }
+        }
+
         protected void resultMessages(IStrategoTerm errors, IStrategoTerm warnings, IStrategoTerm notes) {
             this.errors = errors;
             this.warnings = warnings;
@@ -420,7 +503,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         abstract void accept(IStrategoTerm result);
 
         abstract void result(Collection<IMessage> messages, Collection<ISpoofaxAnalyzeUnit> fullResults,
-                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults);
+                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults, Set<FileName> affected);
 
         ListMultimap<FileName, IMessage> messages() {
             final ListMultimap<FileName, IMessage> messages = LinkedListMultimap.create();
@@ -466,6 +549,10 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             return true;
         }
 
+        @Override boolean changed() {
+            return true;
+        }
+
         @Override public void accept(IStrategoTerm result) {
             final List<IStrategoTerm> results;
             if((results = match(result, "Full", 5)) != null) {
@@ -483,7 +570,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         }
 
         @Override public void result(Collection<IMessage> messages, Collection<ISpoofaxAnalyzeUnit> fullResults,
-                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults) {
+                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults, Set<FileName> affected) {
             if(!input.detached()) {
                 if(analysis != null) {
                     context.put(resource, parseHash, analyzedAst, analysis, errors, warnings, notes, exceptions);
@@ -503,6 +590,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         // 1. initialized by constructor
         private ISpoofaxParseUnit input;
         private IStrategoTerm analyzedAst;
+        private final IStrategoTerm initialAnalysis;
         // 2. initialized by constructor, overwritten by accept
         private IStrategoTerm analysis;
 
@@ -512,6 +600,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             super(resource, parseHash, errors, warnings, notes, exceptions, context);
             this.input = input;
             this.analyzedAst = analyzedAst;
+            this.initialAnalysis = analysis;
             this.analysis = analysis;
         }
 
@@ -519,6 +608,15 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             return false;
         }
 
+        @Override boolean changed() {
+            return initialAnalysis != analysis || messagesChanged();
+        }
+
+        @Override boolean affected() {
+            // A full analysis unit with all messages of this file is reported, even if its result did not change.
+            return true;
+        }
+
         @Override public void accept(IStrategoTerm result) {
             final List<IStrategoTerm> results;
             if((results = match(result, "Update", 4)) != null) {
@@ -535,7 +633,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         }
 
         @Override public void result(Collection<IMessage> messages, Collection<ISpoofaxAnalyzeUnit> fullResults,
-                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults) {
+                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults, Set<FileName> affected) {
             if(analysis != null) {
                 context.put(resource, parseHash, analyzedAst, analysis, errors, warnings, notes, exceptions);
             } else {
@@ -552,6 +650,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
 
         // 1. initialized by constructor
         private IStrategoTerm analyzedAst;
+        private final IStrategoTerm initialAnalysis;
         // 2. initialized by constructor, overwritten by accept
         private IStrategoTerm analysis;
 
@@ -560,6 +659,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
                 IConstraintContext context) {
             super(resource, parseHash, errors, warnings, notes, exceptions, context);
             this.analyzedAst = analyzedAst;
+            this.initialAnalysis = analysis;
             this.analysis = analysis;
         }
 
@@ -567,6 +667,10 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             return false;
         }
 
+        @Override boolean changed() {
+            return initialAnalysis != analysis || messagesChanged();
+        }
+
         @Override public void accept(IStrategoTerm result) {
             final List<IStrategoTerm> results;
             if((results = match(result, "Update", 4)) != null) {
@@ -583,13 +687,18 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         }
 
         @Override public void result(Collection<IMessage> messages, Collection<ISpoofaxAnalyzeUnit> fullResults,
-                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults) {
-            if(analysis != null) {
-                context.put(resource, parseHash, analyzedAst, analysis, errors, warnings, notes, exceptions);
-            } else {
-                context.remove(resource);
+                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults, Set<FileName> affected) {
+            // The project entry is removed from the context before analysis, cached files are not.
+            if(changed() || !context.contains(resource)) {
+                if(analysis != null) {
+                    context.put(resource, parseHash, analyzedAst, analysis, errors, warnings, notes, exceptions);
+                } else {
+                    context.remove(resource);
+                }
+            }
+            if(affected.contains(resource().getName())) {
+                updateResults.add(unitService.analyzeUnitUpdate(resource(), new AnalyzeUpdateData(messages), context));
             }
-            updateResults.add(unitService.analyzeUnitUpdate(resource(), new AnalyzeUpdateData(messages), context));
         }
 
     }
@@ -610,6 +719,10 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
             return true;
         }
 
+        @Override boolean changed() {
+            return true;
+        }
+
         @Override public void accept(IStrategoTerm result) {
             final List<IStrategoTerm> results;
             if((results = match(result, "Full", 5)) != null) {
@@ -626,7 +739,7 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
         }
 
         @Override public void result(Collection<IMessage> messages, Collection<ISpoofaxAnalyzeUnit> fullResults,
-                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults) {
+                Collection<ISpoofaxAnalyzeUnitUpdate> updateResults, Set<FileName> affected) {
             if(analysis != null) {
                 context.put(resource, parseHash, analyzedAst, analysis, errors, warnings, notes, exceptions);
             } else {
@@ -646,6 +759,31 @@ public abstract class AbstractConstraintAnalyzer implements ISpoofaxAnalyzer {
     }
 
 
+    private void addMessageSources(@Nullable IStrategoTerm messagesTerm, Set<FileName> sources) {
+        if(messagesTerm == null) {
+            return;
+        }
+        for(IMessage message : analysisCommon.messages(MessageSeverity.NOTE, messagesTerm)) {
+            if(message.source() != null) {
+                sources.add(message.source().getName());
+            }
+        }
+    }
+
+    /**
+     * Compares messages by identity instead of structurally, which takes constant time, like analysis results are.
+     * Results that the analysis rebuilt are considered changed, which can report an update that was not needed, but
+     * never misses one.
+     */
+    private static boolean sameMessages(@Nullable IStrategoTerm initial, @Nullable IStrategoTerm current) {
+        return initial == current || isEmpty(initial) && isEmpty(current);
+    }
+
+    private static boolean isEmpty(@Nullable IStrategoTerm messagesTerm) {
+        return messagesTerm == null || TermUtils.isList(messagesTerm) && messagesTerm.getSubtermCount() == 0;
+    }
+
+
     protected boolean success(Collection<IMessage> messages) {
         return messages.stream().noneMatch(m -> m.severity().equals(MessageSeverity.ERROR));
     }
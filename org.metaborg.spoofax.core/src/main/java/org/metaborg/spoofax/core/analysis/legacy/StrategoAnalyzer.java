@@ -188,7 +188,7 @@ public class StrategoAnalyzer implements ISpoofaxAnalyzer {
         final Collection<IMessage> warnings =
             analysisCommon.messages(source, MessageSeverity.WARNING, result.getSubterm(2));
         final Collection<IMessage> notes = analysisCommon.messages(source, MessageSeverity.NOTE, result.getSubterm(3));
-        final Collection<IMessage> ambiguities = analysisCommon.ambiguityMessages(source, ast);
+        final Collection<IMessage> ambiguities = analysisCommon.ambiguityMessages(source, input, ast);
 
         final Collection<IMessage> messages =
             Lists.newArrayListWithCapacity(errors.size() + warnings.size() + notes.size() + ambiguities.size());
@@ -2,6 +2,7 @@ package org.metaborg.spoofax.core.analysis.taskengine;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -9,6 +10,8 @@ import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.MetaborgException;
 import org.metaborg.core.MetaborgRuntimeException;
 import org.metaborg.core.analysis.AnalysisException;
+import org.metaborg.core.analysis.AnalysisMetrics;
+import org.metaborg.core.analysis.AnalysisMetricsConfiguration;
 import org.metaborg.core.context.IContext;
 import org.metaborg.core.language.FacetContribution;
 import org.metaborg.core.language.ILanguageImpl;
@@ -35,8 +38,10 @@ import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 import org.metaborg.util.task.ICancel;
 import org.metaborg.util.task.IProgress;
+import org.metaborg.util.time.Timer;
 import org.spoofax.interpreter.terms.IStrategoAppl;
 import org.spoofax.interpreter.terms.IStrategoConstructor;
+import org.spoofax.interpreter.terms.IStrategoInt;
 import org.spoofax.interpreter.terms.IStrategoReal;
 import org.spoofax.interpreter.terms.IStrategoString;
 import org.spoofax.interpreter.terms.IStrategoTerm;
@@ -44,6 +49,7 @@ import org.spoofax.interpreter.terms.ITermFactory;
 import org.spoofax.terms.util.TermUtils;
 import org.strategoxt.HybridInterpreter;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -63,18 +69,20 @@ public class TaskEngineAnalyzer implements ISpoofaxAnalyzer {
 
     private final IStrategoCommon strategoCommon;
     private final AnalysisCommon analysisCommon;
+    private final AnalysisMetricsConfiguration metricsConfig;
     private final IStrategoConstructor fileCons;
 
 
     @Inject public TaskEngineAnalyzer(IResourceService resourceService, ISpoofaxUnitService unitService,
         ITermFactory termFactory, IStrategoRuntimeService runtimeService, IStrategoCommon strategoCommon,
-        AnalysisCommon analysisCommon) {
+        AnalysisCommon analysisCommon, AnalysisMetricsConfiguration metricsConfig) {
         this.resourceService = resourceService;
         this.unitService = unitService;
         this.termFactory = termFactory;
         this.runtimeService = runtimeService;
         this.strategoCommon = strategoCommon;
         this.analysisCommon = analysisCommon;
+        this.metricsConfig = metricsConfig;
 
         this.fileCons = termFactory.makeConstructor("File", 3);
     }
@@ -144,8 +152,11 @@ public class TaskEngineAnalyzer implements ISpoofaxAnalyzer {
 
         logger.trace("Invoking {} strategy", strategy);
         final IStrategoTerm resultTerm;
+        final long duration;
         try {
+            final Timer timer = new Timer(true);
             resultTerm = strategoCommon.invoke(runtime, inputTerm, strategy);
+            duration = timer.stop();
         } catch(MetaborgException e) {
             final String message = analysisCommon.analysisFailedMessage(runtime);
             throw new AnalysisException(context, message, e);
@@ -162,11 +173,13 @@ public class TaskEngineAnalyzer implements ISpoofaxAnalyzer {
         final IStrategoTerm resultsTerm = resultTerm.getSubterm(0);
         final IStrategoTerm updateResultsTerm = resultTerm.getSubterm(1);
 
+        // The task engine analyzes all parse units at once, use the duration of the analysis amortized over all parse
+        // units as the analysis duration of each parse unit.
+        final long unitDuration = duration / Math.max(1, inputsPerSource.size());
         final Collection<ISpoofaxAnalyzeUnit> fileResults =
             Lists.newArrayListWithCapacity(resultsTerm.getSubtermCount());
         for(IStrategoTerm result : resultsTerm) {
-            // HACK: analysis duration per parse unit is unknown, pass -1 as duration.
-            final ISpoofaxAnalyzeUnit fileResult = result(result, inputsPerSource, context, -1);
+            final ISpoofaxAnalyzeUnit fileResult = result(result, inputsPerSource, context, unitDuration);
             if(fileResult == null) {
                 continue;
             }
@@ -183,16 +196,25 @@ public class TaskEngineAnalyzer implements ISpoofaxAnalyzer {
             updateResults.add(updateResult);
         }
 
-        // Currently unused debugging and performance data.
-        // final IStrategoTerm affectedPartitionsTerm = resultTerm.getSubterm(2);
-        // final IStrategoTerm debugResultTerm = resultTerm.getSubterm(3);
-        // final IStrategoTerm timeResultTerm = resultTerm.getSubterm(4);
-        // final Collection<String> affectedPartitions = affectedPartitions(affectedPartitionsTerm);
-        // final AnalysisDebugResult debugResult = debugResult(debugResultTerm);
-        // final AnalysisTimeResult timeResult = timeResult(timeResultTerm);
-        // final TaskEngineAnalyzerData data = new TaskEngineAnalyzerData(affectedPartitions, debugResult, timeResult);
+        if(!metricsConfig.enabled) {
+            return new SpoofaxAnalyzeResults(fileResults, updateResults, context);
+        }
 
-        return new SpoofaxAnalyzeResults(fileResults, updateResults, context);
+        final TaskEngineAnalyzerData data;
+        try {
+            final Collection<String> affectedPartitions = affectedPartitions(resultTerm.getSubterm(2));
+            final AnalysisDebugResult debugResult = debugResult(resultTerm.getSubterm(3));
+            final AnalysisTimeResult timeResult = timeResult(resultTerm.getSubterm(4));
+            data = new TaskEngineAnalyzerData(affectedPartitions, debugResult, timeResult);
+        } catch(RuntimeException e) {
+            logger.warn("Unexpected debug or time results from analysis, not collecting analysis metrics", e);
+            final AnalysisMetrics metrics = new AnalysisMetrics(inputsPerSource.size(), duration);
+            return new SpoofaxAnalyzeResults(fileResults, updateResults, context, null, metrics);
+        }
+        final AnalysisMetrics metrics = metrics(data, inputsPerSource.size(), duration);
+        logger.debug("Analyzed {} parse units in {} ms: {}", inputsPerSource.size(),
+            TimeUnit.NANOSECONDS.toMillis(duration), metrics);
+        return new SpoofaxAnalyzeResults(fileResults, updateResults, context, data, metrics);
     }
 
     private @Nullable ISpoofaxAnalyzeUnit result(IStrategoTerm result, Map<String, ISpoofaxParseUnit> inputsPerSource,
@@ -219,7 +241,7 @@ public class TaskEngineAnalyzer implements ISpoofaxAnalyzer {
         final Collection<IMessage> warnings =
             analysisCommon.messages(source, MessageSeverity.WARNING, result.getSubterm(4));
         final Collection<IMessage> notes = analysisCommon.messages(source, MessageSeverity.NOTE, result.getSubterm(5));
-        final Collection<IMessage> ambiguities = analysisCommon.ambiguityMessages(source, ast);
+        final Collection<IMessage> ambiguities = analysisCommon.ambiguityMessages(source, input, ast);
 
         final Collection<IMessage> messages =
             Lists.newArrayListWithCapacity(errors.size() + warnings.size() + notes.size() + ambiguities.size());
@@ -258,29 +280,58 @@ public class TaskEngineAnalyzer implements ISpoofaxAnalyzer {
         return unitService.analyzeUnitUpdate(source, new AnalyzeUpdateData(messages), context);
     }
 
-    /* Currently unused debugging and performance data. @formatter:off
     private Collection<String> affectedPartitions(IStrategoTerm affectedTerm) {
-        final Collection<String> affected = new ArrayList<>(affectedTerm.getSubtermCount());
+        final Collection<String> affected = Lists.newArrayListWithCapacity(affectedTerm.getSubtermCount());
         for(IStrategoTerm partition : affectedTerm) {
-            affected.add(Tools.asJavaString(partition));
+            affected.add(TermUtils.toJavaString(partition));
         }
         return affected;
     }
 
     private AnalysisDebugResult debugResult(IStrategoTerm debug) {
         final IStrategoTerm collectionDebug = debug.getSubterm(0);
-        return new AnalysisDebugResult(Tools.asJavaInt(collectionDebug.getSubterm(0)),
-            Tools.asJavaInt(collectionDebug.getSubterm(1)), Tools.asJavaInt(collectionDebug.getSubterm(2)),
-            Tools.asJavaInt(collectionDebug.getSubterm(3)), Tools.asJavaInt(collectionDebug.getSubterm(4)),
-            (IStrategoList) debug.getSubterm(1), (IStrategoList) debug.getSubterm(2),
-            (IStrategoList) debug.getSubterm(3));
+        return new AnalysisDebugResult(TermUtils.toJavaIntAt(collectionDebug, 0),
+            TermUtils.toJavaIntAt(collectionDebug, 1), TermUtils.toJavaIntAt(collectionDebug, 2),
+            TermUtils.toJavaIntAt(collectionDebug, 3), TermUtils.toJavaIntAt(collectionDebug, 4),
+            TermUtils.toListAt(debug, 1), TermUtils.toListAt(debug, 2), TermUtils.toListAt(debug, 3));
     }
 
     private AnalysisTimeResult timeResult(IStrategoTerm time) {
-        return new AnalysisTimeResult((long) Tools.asJavaDouble(time.getSubterm(0)),
-            (long) Tools.asJavaDouble(time.getSubterm(1)), (long) Tools.asJavaDouble(time.getSubterm(2)),
-            (long) Tools.asJavaDouble(time.getSubterm(3)), (long) Tools.asJavaDouble(time.getSubterm(4)),
-            (long) Tools.asJavaDouble(time.getSubterm(5)), (long) Tools.asJavaDouble(time.getSubterm(6)));
+        return new AnalysisTimeResult(time(time.getSubterm(0)), time(time.getSubterm(1)), time(time.getSubterm(2)),
+            time(time.getSubterm(3)), time(time.getSubterm(4)), time(time.getSubterm(5)), time(time.getSubterm(6)));
+    }
+
+    private static long time(IStrategoTerm time) {
+        if(time instanceof IStrategoReal) {
+            return (long) ((IStrategoReal) time).realValue();
+        } else if(time instanceof IStrategoInt) {
+            return ((IStrategoInt) time).intValue();
+        }
+        throw new IllegalArgumentException("Expected a real or integer time, got " + time);
+    }
+
+    private static AnalysisMetrics metrics(TaskEngineAnalyzerData data, int units, long duration) {
+        final AnalysisTimeResult time = data.timeResult;
+        final Map<String, Long> phaseDurations = ImmutableMap.<String, Long>builder()
+            .put("parse", time.parse)
+            .put("pre-trans", time.preTrans)
+            .put("collect", time.collect)
+            .put("task-eval", time.taskEval)
+            .put("post-trans", time.postTrans)
+            .put("index-persist", time.indexPersist)
+            .put("task-persist", time.taskPersist)
+            .build();
+        final AnalysisDebugResult debug = data.debugResult;
+        final Map<String, Long> counts = ImmutableMap.<String, Long>builder()
+            .put("index-entries-removed", (long) debug.indexEntriesRemoved)
+            .put("index-entries-added", (long) debug.indexEntriesAdded)
+            .put("tasks-removed", (long) debug.tasksRemoved)
+            .put("tasks-added", (long) debug.tasksAdded)
+            .put("tasks-invalidated", (long) debug.tasksInvalidated)
+            .put("tasks-evaluated", (long) debug.evaluatedTasks.size())
+            .put("tasks-skipped", (long) debug.skippedTasks.size())
+            .put("tasks-unevaluated", (long) debug.unevaluatedTasks.size())
+            .build();
+        return new AnalysisMetrics(1, units, duration, phaseDurations, counts, data.affectedPartitions);
     }
-    @formatter:on */
 }
@@ -5,6 +5,7 @@ import org.metaborg.core.build.Builder;
 import org.metaborg.core.build.IBuildOutputInternal;
 import org.metaborg.core.build.paths.ILanguagePathService;
 import org.metaborg.core.context.IContextService;
+import org.metaborg.core.editor.IEditorRegistry;
 import org.metaborg.core.language.ILanguageIdentifierService;
 import org.metaborg.core.resource.IResourceService;
 import org.metaborg.core.source.ISourceTextService;
@@ -35,10 +36,10 @@ public class SpoofaxBuilder extends
         ILanguagePathService languagePathService, ISpoofaxUnitService unitService, ISourceTextService sourceTextService,
         ISpoofaxSyntaxService syntaxService, IContextService contextService, ISpoofaxAnalysisService analysisService,
         ISpoofaxTransformService transformService, ISpoofaxParseResultUpdater parseResultUpdater,
-        ISpoofaxAnalysisResultUpdater analysisResultUpdater,
+        ISpoofaxAnalysisResultUpdater analysisResultUpdater, IEditorRegistry editorRegistry,
         Provider<IBuildOutputInternal<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit, ISpoofaxAnalyzeUnitUpdate, ISpoofaxTransformUnit<?>>> buildOutputProvider) {
         super(resourceService, languageIdentifier, languagePathService, unitService, sourceTextService, syntaxService,
-            contextService, analysisService, transformService, parseResultUpdater, analysisResultUpdater,
+            contextService, analysisService, transformService, parseResultUpdater, analysisResultUpdater, editorRegistry,
             buildOutputProvider);
     }
 
@@ -41,6 +41,8 @@ public class IndexTaskContext implements IContext, IContextInternal, IIndexTaskC
 
     private IIndex index;
     private ITaskEngine taskEngine;
+    // Set when write access is requested, since the index and task engine do not track their own changes.
+    private volatile boolean changed = false;
 
 
     public IndexTaskContext(Injector injector, ITermFactory termFactory, ContextIdentifier identifier) {
@@ -115,6 +117,7 @@ public class IndexTaskContext implements IContext, IContextInternal, IIndexTaskC
 
     @Override public IClosableLock write() {
         final IClosableLock lock = writeLock();
+        changed = true;
 
         if(index == null) {
             index = loadIndex();
@@ -137,7 +140,7 @@ public class IndexTaskContext implements IContext, IContextInternal, IIndexTaskC
 
 
     @Override public void persist() throws IOException {
-        if(index == null && taskEngine == null) {
+        if((index == null && taskEngine == null) || !changed) {
             return;
         }
 
@@ -148,6 +151,7 @@ public class IndexTaskContext implements IContext, IContextInternal, IIndexTaskC
             if(taskEngine != null) {
                 TaskManager.write(taskEngine, taskEngineFile(), termFactory);
             }
+            changed = false;
         }
     }
 
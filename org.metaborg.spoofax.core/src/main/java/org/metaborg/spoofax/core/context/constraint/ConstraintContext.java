@@ -1,20 +1,27 @@
 package org.metaborg.spoofax.core.context.constraint;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.io.input.ClassLoaderObjectInputStream;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.Selectors;
 import org.metaborg.core.MetaborgRuntimeException;
 import org.metaborg.core.build.CommonPaths;
 import org.metaborg.core.context.ContextIdentifier;
@@ -30,13 +37,17 @@ import org.metaborg.util.time.Timer;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.inject.Injector;
 
 public class ConstraintContext implements IConstraintContext {
 
     private static final ILogger logger = LoggerUtils.logger(ConstraintContext.class);
 
+    private static final int formatVersion = 2;
+
     private final ContextIdentifier identifier;
     private final String persistentIdentifier;
     private final Injector injector;
@@ -64,34 +75,84 @@ public class ConstraintContext implements IConstraintContext {
     }
 
     @Override public boolean contains(FileObject resource) {
-        return state.entries.containsKey(resourceKey(resource));
+        return state.shards.containsKey(resourceKey(resource));
     }
 
     @Override public boolean hasChanged(FileObject resource, int parseHash) {
-        final String key = resourceKey(resource);
-        return !state.entries.containsKey(key) || state.entries.get(key).parseHash() != parseHash;
+        final Shard shard = state.shards.get(resourceKey(resource));
+        return shard == null || shard.parseHash != parseHash;
     }
 
     @Override public boolean put(FileObject resource, int parseHash, IStrategoTerm analyzedAst, IStrategoTerm analysis,
             IStrategoTerm errors, IStrategoTerm warnings, IStrategoTerm notes, List<String> exceptions) {
-        return state.entries.put(resourceKey(resource),
-                new Entry(parseHash, analyzedAst, analysis, errors, warnings, notes, exceptions)) != null;
+        final String key = resourceKey(resource);
+        final Shard previous = state.shards.get(key);
+        final int id = previous != null ? previous.id : state.nextShardId.getAndIncrement();
+        state.shards.put(key, new Shard(id, parseHash));
+        state.loaded.put(key, new Entry(parseHash, analyzedAst, analysis, errors, warnings, notes, exceptions));
+        state.dirty.add(key);
+        state.indexDirty = true;
+        return previous != null;
     }
 
     @Override public IConstraintContext.Entry get(FileObject resource) {
-        return state.entries.get(resourceKey(resource));
+        return load(resourceKey(resource));
     }
 
     @Override public boolean remove(FileObject resource) {
-        return state.entries.remove(resourceKey(resource)) != null;
+        final String key = resourceKey(resource);
+        final Shard shard = state.shards.remove(key);
+        state.loaded.remove(key);
+        state.dirty.remove(key);
+        if(shard == null) {
+            return false;
+        }
+        state.deleted.add(shard.id);
+        state.indexDirty = true;
+        return true;
     }
 
     @Override public Set<Map.Entry<String, IConstraintContext.Entry>> entrySet() {
-        return state.entries.entrySet();
+        for(String key : state.shards.keySet()) {
+            load(key);
+        }
+        return Collections.unmodifiableMap(state.loaded).entrySet();
     }
 
     @Override public void clear() {
-        state.entries.clear();
+        for(Shard shard : state.shards.values()) {
+            state.deleted.add(shard.id);
+        }
+        state.shards.clear();
+        state.loaded.clear();
+        state.dirty.clear();
+        state.indexDirty = true;
+    }
+
+    /**
+     * Gets the entry of given resource key, reading its shard on first access. When the shard cannot be read, the entry
+     * is removed, such that the resource is analyzed again.
+     */
+    private @Nullable IConstraintContext.Entry load(String key) {
+        final IConstraintContext.Entry entry = state.loaded.get(key);
+        if(entry != null) {
+            return entry;
+        }
+        final Shard shard = state.shards.get(key);
+        if(shard == null) {
+            return null;
+        }
+        return state.loaded.computeIfAbsent(key, k -> {
+            try {
+                return readShard(shardFile(shard.id), shard.parseHash);
+            } catch(IOException | ClassNotFoundException | ClassCastException e) {
+                logger.warn("Load context shard of {} failed: {}", key, e.getMessage());
+                state.shards.remove(key, shard);
+                state.deleted.add(shard.id);
+                state.indexDirty = true;
+                return null;
+            }
+        });
     }
 
     // ----------------------------------------------------------
@@ -148,12 +209,13 @@ public class ConstraintContext implements IConstraintContext {
     }
 
     @Override public void persist() throws IOException {
-        if(state == null) {
-            return;
-        }
-
         try(IClosableLock lock = readLock()) {
-            persistState();
+            // Read the state once while holding the lock, reset and unload replace it under the write lock.
+            final State state = this.state;
+            if(state == null) {
+                return;
+            }
+            persistState(state);
         }
     }
 
@@ -162,8 +224,8 @@ public class ConstraintContext implements IConstraintContext {
             if(state != null) {
                 state = null;
             }
-            final FileObject contextFile = contextFile();
-            contextFile.delete();
+            contextDir().delete(Selectors.SELECT_ALL);
+            legacyContextFile().delete();
         }
     }
 
@@ -200,14 +262,15 @@ public class ConstraintContext implements IConstraintContext {
 
     private State loadOrInitState() {
         try {
-            final FileObject contextFile = contextFile();
+            deleteFile(legacyContextFile());
+            final FileObject indexFile = indexFile();
             try {
-                if(contextFile.exists()) {
-                    return readContext(contextFile);
+                if(indexFile.exists()) {
+                    return readIndex(indexFile);
                 }
-            } catch(IOException | ClassNotFoundException e) {
-                logger.warn("Load context {} failed: {}", contextFile, e.getMessage());
-                deleteContextFile(contextFile);
+            } catch(IOException e) {
+                logger.warn("Load context {} failed: {}", indexFile, e.getMessage());
+                deleteContextDir();
             }
         } catch(IOException e) {
             logger.warn("Failed to locate context: {}", e.getMessage());
@@ -219,58 +282,150 @@ public class ConstraintContext implements IConstraintContext {
         return new State();
     }
 
-    private FileObject contextFile() throws FileSystemException {
+    private FileObject contextDir() throws FileSystemException {
+        final CommonPaths paths = new CommonPaths(identifier.location);
+        return paths.targetDir().resolveFile("analysis").resolveFile(persistentIdentifier)
+                .resolveFile("constraint-shards");
+    }
+
+    private FileObject indexFile() throws FileSystemException {
+        return contextDir().resolveFile("index");
+    }
+
+    private FileObject shardFile(int id) throws FileSystemException {
+        return contextDir().resolveFile(id + ".shard");
+    }
+
+    /**
+     * Context file of the format where the whole state was serialized into a single file, which is deleted when found.
+     */
+    private FileObject legacyContextFile() throws FileSystemException {
         final CommonPaths paths = new CommonPaths(identifier.location);
         return paths.targetDir().resolveFile("analysis").resolveFile(persistentIdentifier).resolveFile("constraint");
     }
 
-    private State readContext(FileObject file) throws IOException, ClassNotFoundException, ClassCastException {
-        try(ObjectInputStream ois =
-                new ClassLoaderObjectInputStream(getClass().getClassLoader(), file.getContent().getInputStream())) {
-            State fileState;
-            try {
-                fileState = (State) ois.readObject();
-            } catch(NotSerializableException ex) {
-                logger.warn("Context could not be read: {}", ex.getMessage());
-                fileState = initState();
-            } catch(Exception ex) {
-                final String msg = logger.format("Context file could not be read: {}", ex.getMessage());
-                throw new IOException(msg);
+    private State readIndex(FileObject file) throws IOException {
+        try(DataInputStream dis =
+                new DataInputStream(new BufferedInputStream(file.getContent().getInputStream()))) {
+            final int version = dis.readInt();
+            if(version != formatVersion) {
+                throw new IOException("Context index has version " + version + ", expected " + formatVersion);
             }
-            if(fileState == null) {
-                throw new IOException("Context file is empty.");
+            final State fileState = initState();
+            fileState.nextShardId.set(dis.readInt());
+            final int size = dis.readInt();
+            for(int i = 0; i < size; i++) {
+                final String key = dis.readUTF();
+                final int id = dis.readInt();
+                final int parseHash = dis.readInt();
+                fileState.shards.put(key, new Shard(id, parseHash));
             }
             return fileState;
         }
     }
 
-    private void persistState() {
-        try {
-            final FileObject contextFile = contextFile();
+    private void writeIndex(FileObject file, State state) throws IOException {
+        try(DataOutputStream dos =
+                new DataOutputStream(new BufferedOutputStream(file.getContent().getOutputStream()))) {
+            dos.writeInt(formatVersion);
+            dos.writeInt(state.nextShardId.get());
+            final Map<String, Shard> shards = ImmutableMap.copyOf(state.shards);
+            dos.writeInt(shards.size());
+            for(Map.Entry<String, Shard> entry : shards.entrySet()) {
+                dos.writeUTF(entry.getKey());
+                dos.writeInt(entry.getValue().id);
+                dos.writeInt(entry.getValue().parseHash);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked") private Entry readShard(FileObject file, int parseHash)
+            throws IOException, ClassNotFoundException, ClassCastException {
+        try(ObjectInputStream ois = new ClassLoaderObjectInputStream(getClass().getClassLoader(),
+                new BufferedInputStream(file.getContent().getInputStream()))) {
+            final int version = ois.readInt();
+            if(version != formatVersion) {
+                throw new IOException("Context shard has version " + version + ", expected " + formatVersion);
+            }
+            final int fileParseHash = ois.readInt();
+            if(fileParseHash != parseHash) {
+                throw new IOException("Context shard does not match the context index");
+            }
+            final IStrategoTerm analysis = (IStrategoTerm) ois.readObject();
+            final IStrategoTerm errors = (IStrategoTerm) ois.readObject();
+            final IStrategoTerm warnings = (IStrategoTerm) ois.readObject();
+            final IStrategoTerm notes = (IStrategoTerm) ois.readObject();
+            final List<String> exceptions = (List<String>) ois.readObject();
+            // The analyzed AST is not persisted, such that restored entries are analyzed again.
+            return new Entry(parseHash, null, analysis, errors, warnings, notes, exceptions);
+        }
+    }
+
+    private void writeShard(FileObject file, IConstraintContext.Entry entry) throws IOException {
+        // The analyzed AST is not written, since its origin and term index attachments cannot be serialized, and are
+        // required by editor services. Entries read back have no analyzed AST, and are therefore analyzed again. The
+        // other terms may contain blobs, which are only supported by Java serialization.
+        try(ObjectOutputStream oos =
+                new ObjectOutputStream(new BufferedOutputStream(file.getContent().getOutputStream()))) {
+            oos.writeInt(formatVersion);
+            oos.writeInt(entry.parseHash());
+            oos.writeObject(entry.analysis());
+            oos.writeObject(entry.errors());
+            oos.writeObject(entry.warnings());
+            oos.writeObject(entry.notes());
+            oos.writeObject(ImmutableList.copyOf(entry.exceptions()));
+        }
+    }
+
+    /**
+     * Writes the shards of entries that were changed since the last persist, deletes the shards of removed entries,
+     * and writes the index.
+     */
+    private void persistState(State state) {
+        synchronized(state) {
+            if(!state.indexDirty) {
+                return;
+            }
+            final Timer timer = new Timer(true);
+            int written = 0;
             try {
-                writeContext(contextFile);
+                for(String key : ImmutableList.copyOf(state.dirty)) {
+                    final Shard shard = state.shards.get(key);
+                    final IConstraintContext.Entry entry = state.loaded.get(key);
+                    if(shard != null && entry != null) {
+                        writeShard(shardFile(shard.id), entry);
+                        ++written;
+                    }
+                    state.dirty.remove(key);
+                }
+                for(Integer id : ImmutableList.copyOf(state.deleted)) {
+                    deleteFile(shardFile(id));
+                    state.deleted.remove(id);
+                }
+                state.indexDirty = false;
+                writeIndex(indexFile(), state);
             } catch(IOException e) {
-                logger.warn("Store context {} failed: {}", contextFile, e.getMessage());
+                state.indexDirty = true;
+                logger.warn("Store context {} failed: {}", this, e.getMessage());
+            } catch(RuntimeException e) {
+                state.indexDirty = true;
+                logger.warn("Constraint context persistence failed: {}", e.getMessage());
+            } finally {
+                logger.debug("Context written in {} s, {} of {} shards written",
+                        timer.stop() / 1_000_000_000d, written, state.shards.size());
             }
-        } catch(IOException e) {
-            logger.warn("Failed to locate context: {}", e.getMessage());
         }
     }
 
-    private void writeContext(FileObject file) throws IOException {
-        Timer timer = new Timer(true);
-        try(ObjectOutputStream oos = new ObjectOutputStream(file.getContent().getOutputStream())) {
-            oos.writeObject(state);
-        } catch(NotSerializableException ex) {
-            logger.warn("Constraint context persistence not serializable: {}", ex.getMessage());
-        } catch(Exception ex) {
-            throw new IOException("Context file could not be written.", ex);
-        } finally {
-            logger.debug("Context written in {} s", timer.stop() / 1_000_000_000d);
+    private void deleteContextDir() {
+        try {
+            contextDir().delete(Selectors.SELECT_ALL);
+        } catch(FileSystemException e) {
+            logger.warn("Deleting context failed: {}", e.getMessage());
         }
     }
 
-    private void deleteContextFile(FileObject file) {
+    private void deleteFile(FileObject file) {
         try {
             file.delete();
         } catch(FileSystemException e) {
@@ -302,24 +457,46 @@ public class ConstraintContext implements IConstraintContext {
         return String.format("Constraint context for %s, %s", identifier.location, identifier.language);
     }
 
-    private static class State implements Serializable {
-
-        private static final long serialVersionUID = 1L;
+    private static class State {
 
-        public final Map<String, IConstraintContext.Entry> entries;
+        /** Shard of every entry, including entries whose shard has not been read yet. */
+        public final Map<String, Shard> shards;
+        /** Entries whose shard has been read, or that were put since the state was loaded. */
+        public final Map<String, IConstraintContext.Entry> loaded;
+        /** Keys of entries that were put since the last persist. */
+        public final Set<String> dirty;
+        /** Identifiers of shards that were removed since the last persist. */
+        public final Set<Integer> deleted;
+        public final AtomicInteger nextShardId;
+        public volatile boolean indexDirty;
 
         public State() {
-            this.entries = Maps.newHashMap();
+            this.shards = Maps.newConcurrentMap();
+            this.loaded = Maps.newConcurrentMap();
+            this.dirty = Sets.newConcurrentHashSet();
+            this.deleted = Sets.newConcurrentHashSet();
+            this.nextShardId = new AtomicInteger();
+            this.indexDirty = false;
         }
 
     }
 
-    private static class Entry implements IConstraintContext.Entry, Serializable {
+    private static class Shard {
+
+        public final int id;
+        public final int parseHash;
+
+        Shard(int id, int parseHash) {
+            this.id = id;
+            this.parseHash = parseHash;
+        }
+
+    }
 
-        private static final long serialVersionUID = 1L;
+    private static class Entry implements IConstraintContext.Entry {
 
         public final int parseHash;
-        public transient IStrategoTerm analyzedAst;
+        public final IStrategoTerm analyzedAst;
         public final IStrategoTerm analysis;
         public final IStrategoTerm errors;
         public final IStrategoTerm warnings;
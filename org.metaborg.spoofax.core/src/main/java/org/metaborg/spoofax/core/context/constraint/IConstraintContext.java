@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.context.IContextInternal;
 import org.spoofax.interpreter.terms.IStrategoTerm;
@@ -42,11 +44,11 @@ public interface IConstraintContext extends IContextInternal {
             IStrategoTerm errors, IStrategoTerm warnings, IStrategoTerm notes, List<String> exceptions);
 
 
-    default Entry get(String resource) {
+    default @Nullable Entry get(String resource) {
         return get(keyResource(resource));
     }
 
-    Entry get(FileObject resource);
+    @Nullable Entry get(FileObject resource);
 
 
     default boolean remove(String resource) {
@@ -1,5 +1,6 @@
 package org.metaborg.spoofax.core.processing.parse;
 
+import org.metaborg.core.processing.parse.ParseResultCacheConfiguration;
 import org.metaborg.core.processing.parse.ParseResultProcessor;
 import org.metaborg.spoofax.core.syntax.ISpoofaxSyntaxService;
 import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
@@ -12,7 +13,8 @@ import com.google.inject.Inject;
  */
 public class SpoofaxParseResultProcessor extends ParseResultProcessor<ISpoofaxInputUnit, ISpoofaxParseUnit>
     implements ISpoofaxParseResultProcessor {
-    @Inject public SpoofaxParseResultProcessor(ISpoofaxSyntaxService syntaxService) {
-        super(syntaxService);
+    @Inject public SpoofaxParseResultProcessor(ISpoofaxSyntaxService syntaxService,
+        ParseResultCacheConfiguration config) {
+        super(syntaxService, config);
     }
 }
@@ -40,8 +40,50 @@ public interface IStrategoRuntimeService extends ILanguageCache {
     HybridInterpreter runtime(ILanguageComponent component, FileObject location)
         throws MetaborgException;
 
+    /**
+     * Leases a Stratego runtime for given component from a pool of initialized runtimes, initialized with given context.
+     * Prefer this over {@link #runtime(ILanguageComponent, IContext)} on hot paths, and close the lease as soon as the
+     * runtime is no longer needed.
+     * 
+     * @param component
+     *            Language component to load the Stratego CTree and JAR files from.
+     * @param context
+     *            Context to initialize the runtime with.
+     * @return Lease of a Stratego runtime, which returns the runtime to the pool when closed.
+     * @throws MetaborgException
+     *             When loading a Stratego CTree or JAR fails.
+     */
+    StrategoRuntimeLease leaseRuntime(ILanguageComponent component, IContext context) throws MetaborgException;
+
+    /**
+     * Leases a Stratego runtime for given component from a pool of initialized runtimes, initialized without a context.
+     * 
+     * @param component
+     *            Language component to load the Stratego CTree and JAR files from.
+     * @param location
+     *            Location to initialize the runtime with.
+     * @return Lease of a Stratego runtime, which returns the runtime to the pool when closed.
+     * @throws MetaborgException
+     *             When loading a Stratego CTree or JAR fails.
+     */
+    StrategoRuntimeLease leaseRuntime(ILanguageComponent component, FileObject location) throws MetaborgException;
+
+    /**
+     * @return Statistics of the runtime pool.
+     */
+    StrategoRuntimePoolStatistics poolStatistics();
+
     /**
      * @return Generic Stratego runtime, with just the standard libraries loaded.
      */
     HybridInterpreter genericRuntime();
+
+    /**
+     * Gets a generic Stratego runtime that is cached for the calling thread, with the standard libraries loaded and the
+     * stratego_sglr and stratego_aterm libraries initialized once. The runtime is confined to the calling thread, it
+     * must not be stored or passed to other threads. Use {@link #genericRuntime()} to get a runtime that may be stored.
+     * 
+     * @return Generic Stratego runtime of the calling thread.
+     */
+    HybridInterpreter threadGenericRuntime();
 }
@@ -0,0 +1,55 @@
+package org.metaborg.spoofax.core.stratego;
+
+import org.strategoxt.HybridInterpreter;
+
+/**
+ * A Stratego runtime leased from the runtime pool of {@link IStrategoRuntimeService}. Closing the lease returns the
+ * runtime to the pool, after which the runtime must not be used any more. Call {@link #discard()} when an invocation on
+ * the runtime failed, such that a runtime in an unknown state is not handed out again.
+ */
+public class StrategoRuntimeLease implements AutoCloseable {
+    interface IReturner {
+        void giveBack(HybridInterpreter runtime);
+    }
+
+
+    private final HybridInterpreter runtime;
+    private final IReturner returner;
+    private boolean closed = false;
+    private boolean discarded = false;
+
+
+    StrategoRuntimeLease(HybridInterpreter runtime, IReturner returner) {
+        this.runtime = runtime;
+        this.returner = returner;
+    }
+
+
+    /**
+     * @return Leased runtime.
+     */
+    public HybridInterpreter runtime() {
+        if(closed) {
+            throw new IllegalStateException("Stratego runtime lease has already been closed");
+        }
+        return runtime;
+    }
+
+    /**
+     * Marks the leased runtime as unusable, for example because an invocation threw an exception and left the runtime in
+     * an unknown state. Closing the lease then drops the runtime instead of returning it to the pool.
+     */
+    public void discard() {
+        discarded = true;
+    }
+
+    @Override public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        if(!discarded) {
+            returner.giveBack(runtime);
+        }
+    }
+}
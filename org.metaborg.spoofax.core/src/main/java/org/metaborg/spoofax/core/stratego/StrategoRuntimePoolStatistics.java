@@ -0,0 +1,57 @@
+package org.metaborg.spoofax.core.stratego;
+
+/**
+ * Snapshot of the statistics of the runtime pool of {@link IStrategoRuntimeService}.
+ */
+public class StrategoRuntimePoolStatistics {
+    /**
+     * Number of leases that were served by a pooled runtime.
+     */
+    public final long hits;
+
+    /**
+     * Number of leases that required cloning a new runtime from the prototype.
+     */
+    public final long misses;
+
+    /**
+     * Total time in nanoseconds spent cloning and initializing runtimes from prototypes, for both leased runtimes and
+     * runtimes returned by {@link IStrategoRuntimeService#runtime}.
+     */
+    public final long cloneTime;
+
+    /**
+     * Number of runtimes cloned from prototypes, for both leased runtimes and runtimes returned by
+     * {@link IStrategoRuntimeService#runtime}.
+     */
+    public final long clones;
+
+
+    public StrategoRuntimePoolStatistics(long hits, long misses, long cloneTime, long clones) {
+        this.hits = hits;
+        this.misses = misses;
+        this.cloneTime = cloneTime;
+        this.clones = clones;
+    }
+
+
+    /**
+     * @return Fraction of leases that were served by a pooled runtime, or 0 if no runtimes were leased.
+     */
+    public double hitRate() {
+        final long leases = hits + misses;
+        return leases == 0 ? 0 : (double) hits / leases;
+    }
+
+    /**
+     * @return Average time in nanoseconds to clone and initialize a runtime, or 0 if no runtimes were cloned.
+     */
+    public double averageCloneTime() {
+        return clones == 0 ? 0 : (double) cloneTime / clones;
+    }
+
+    @Override public String toString() {
+        return String.format("hits: %d, misses: %d, hit rate: %.2f, clones: %d, average clone time: %.3f ms", hits,
+            misses, hitRate(), clones, averageCloneTime() / 1_000_000d);
+    }
+}
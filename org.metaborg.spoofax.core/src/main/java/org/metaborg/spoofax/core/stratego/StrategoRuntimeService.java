@@ -4,9 +4,11 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
@@ -22,14 +24,18 @@ import org.metaborg.spoofax.core.dynamicclassloading.DynamicClassLoadingFacet;
 import org.metaborg.spoofax.core.stratego.strategies.ParseStrategoFileStrategy;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
+import org.metaborg.util.time.Timer;
 import org.spoofax.interpreter.core.InterpreterException;
 import org.spoofax.interpreter.library.IOperatorRegistry;
+import org.spoofax.interpreter.library.ssl.SSLLibrary;
 import org.spoofax.interpreter.terms.ITermFactory;
 import org.strategoxt.HybridInterpreter;
 import org.strategoxt.IncompatibleJarException;
+import org.strategoxt.lang.Context;
 import org.strategoxt.strc.parse_stratego_file_0_0;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
 public class StrategoRuntimeService implements IStrategoRuntimeService, AutoCloseable {
@@ -41,7 +47,23 @@ public class StrategoRuntimeService implements IStrategoRuntimeService, AutoClos
     private final ParseStrategoFileStrategy parseStrategoFileStrategy;
     private final Set<ClassLoader> additionalClassLoaders;
 
-    private final Map<ILanguageComponent, HybridInterpreter> prototypes = new HashMap<>();
+    /**
+     * Maximum number of idle runtimes kept in the pool of a single language component.
+     */
+    public static final int maxPooledRuntimes = 8;
+
+    private final Map<ILanguageComponent, HybridInterpreter> prototypes = Maps.newConcurrentMap();
+    // Idle, initialized runtimes per component. A leased runtime is returned to the queue it was taken from, so runtimes
+    // leased before an invalidation are discarded instead of being returned to the new pool.
+    private final Map<ILanguageComponent, Queue<HybridInterpreter>> pools = Maps.newConcurrentMap();
+
+    private final AtomicLong poolHits = new AtomicLong();
+    private final AtomicLong poolMisses = new AtomicLong();
+    private final AtomicLong cloneTime = new AtomicLong();
+    private final AtomicLong clones = new AtomicLong();
+
+    // Replaced on close, such that runtimes cached for other threads become unreachable.
+    private volatile ThreadLocal<HybridInterpreter> threadGenericRuntimes = ThreadLocal.withInitial(this::createGeneric);
 
 
     @Inject public StrategoRuntimeService(IResourceService resourceService, ITermFactory termFactory,
@@ -60,6 +82,8 @@ public class StrategoRuntimeService implements IStrategoRuntimeService, AutoClos
             runtime.uninit();
         }
         prototypes.clear();
+        pools.clear();
+        threadGenericRuntimes = ThreadLocal.withInitial(this::createGeneric);
 
         // Set parse Stratego file strategy to default, freeing reference to services held by ParseStrategoFileStrategy.
         parse_stratego_file_0_0.instance = new parse_stratego_file_0_0();
@@ -68,12 +92,7 @@ public class StrategoRuntimeService implements IStrategoRuntimeService, AutoClos
 
     @Override public HybridInterpreter runtime(ILanguageComponent component, IContext context)
         throws MetaborgException {
-        HybridInterpreter prototype = prototypes.get(component);
-        if(prototype == null) {
-            prototype = createPrototype(component);
-        }
-
-        final HybridInterpreter runtime = clone(prototype, context.location(), component);
+        final HybridInterpreter runtime = clone(prototype(component), context.location(), component);
         runtime.getContext().setContextObject(context);
         runtime.getCompiledContext().setContextObject(context);
         return runtime;
@@ -81,22 +100,40 @@ public class StrategoRuntimeService implements IStrategoRuntimeService, AutoClos
 
     @Override public HybridInterpreter runtime(ILanguageComponent component, FileObject location)
         throws MetaborgException {
-        HybridInterpreter prototype = prototypes.get(component);
-        if(prototype == null) {
-            prototype = createPrototype(component);
-        }
-
-        final HybridInterpreter runtime = clone(prototype, location, component);
+        final HybridInterpreter runtime = clone(prototype(component), location, component);
         return runtime;
     }
 
+    @Override public StrategoRuntimeLease leaseRuntime(ILanguageComponent component, IContext context)
+        throws MetaborgException {
+        final StrategoRuntimeLease lease = lease(component, context.location());
+        final HybridInterpreter runtime = lease.runtime();
+        runtime.getContext().setContextObject(context);
+        runtime.getCompiledContext().setContextObject(context);
+        return lease;
+    }
+
+    @Override public StrategoRuntimeLease leaseRuntime(ILanguageComponent component, FileObject location)
+        throws MetaborgException {
+        return lease(component, location);
+    }
+
+    @Override public StrategoRuntimePoolStatistics poolStatistics() {
+        return new StrategoRuntimePoolStatistics(poolHits.get(), poolMisses.get(), cloneTime.get(), clones.get());
+    }
+
     @Override public HybridInterpreter genericRuntime() {
         return createNew(termFactory);
     }
 
+    @Override public HybridInterpreter threadGenericRuntime() {
+        return threadGenericRuntimes.get();
+    }
+
 
     @Override public void invalidateCache(ILanguageComponent component) {
         logger.debug("Removing cached stratego runtime for {}", component);
+        pools.remove(component);
         final @Nullable HybridInterpreter runtime = prototypes.remove(component);
         if(runtime != null) {
             runtime.uninit();
@@ -106,6 +143,7 @@ public class StrategoRuntimeService implements IStrategoRuntimeService, AutoClos
     @Override public void invalidateCache(ILanguageImpl impl) {
         logger.debug("Removing cached stratego runtime for {}", impl);
         for(ILanguageComponent component : impl.components()) {
+            pools.remove(component);
             final @Nullable HybridInterpreter runtime = prototypes.remove(component);
             if(runtime != null) {
                 runtime.uninit();
@@ -114,15 +152,66 @@ public class StrategoRuntimeService implements IStrategoRuntimeService, AutoClos
     }
 
 
+    private HybridInterpreter prototype(ILanguageComponent component) throws MetaborgException {
+        final @Nullable HybridInterpreter prototype = prototypes.get(component);
+        if(prototype != null) {
+            return prototype;
+        }
+        return createPrototype(component);
+    }
+
+    private StrategoRuntimeLease lease(ILanguageComponent component, FileObject workingLocation)
+        throws MetaborgException {
+        final HybridInterpreter prototype = prototype(component);
+        final Queue<HybridInterpreter> pool =
+            pools.computeIfAbsent(component, c -> new ArrayBlockingQueue<>(maxPooledRuntimes));
+        final @Nullable HybridInterpreter pooled = pool.poll();
+        final HybridInterpreter runtime;
+        if(pooled != null) {
+            poolHits.incrementAndGet();
+            // Use a fresh IO agent for every lease, such that open files and output of a previous use do not leak.
+            pooled.setIOAgent(newAgent(workingLocation, component));
+            runtime = pooled;
+        } else {
+            poolMisses.incrementAndGet();
+            runtime = clone(prototype, workingLocation, component);
+        }
+        return new StrategoRuntimeLease(runtime, returned -> giveBack(pool, prototype, returned));
+    }
+
+    private void giveBack(Queue<HybridInterpreter> pool, HybridInterpreter prototype, HybridInterpreter runtime) {
+        // Only pool runtimes whose SSL library is their own. If the clone shares the library with the prototype,
+        // clearing its tables would clear the tables of the prototype and of every other clone, so drop the runtime.
+        final @Nullable IOperatorRegistry registry =
+            runtime.getCompiledContext().getOperatorRegistry(SSLLibrary.REGISTRY_NAME);
+        if(!(registry instanceof SSLLibrary)
+            || registry == prototype.getCompiledContext().getOperatorRegistry(SSLLibrary.REGISTRY_NAME)
+            || registry == prototype.getContext().getOperatorRegistry(SSLLibrary.REGISTRY_NAME)) {
+            logger.debug("Not pooling Stratego runtime, its SSL library is shared with the prototype");
+            return;
+        }
+
+        // Reset the state that Stratego code can observe across invocations: the context object, the current term,
+        // and the dynamic rule and table tables. Other per-runtime state, such as the class-level state of compiled
+        // strategies, is shared with fresh clones as well. Runtimes in an unknown state after a failed invocation are
+        // discarded by their lease and never end up here.
+        runtime.getContext().setContextObject(null);
+        runtime.getCompiledContext().setContextObject(null);
+        runtime.setCurrent(null);
+        final SSLLibrary sslLibrary = (SSLLibrary) registry;
+        sslLibrary.getDynamicRuleTable().clear();
+        sslLibrary.getTableTable().clear();
+        // Discards the runtime when the pool is full.
+        pool.offer(runtime);
+    }
+
     private HybridInterpreter clone(HybridInterpreter prototype, FileObject workingLocation,
         ILanguageComponent component) {
+        final Timer timer = new Timer(true);
         // TODO: this seems to copy operator registries, but they should be recreated to isolate interpreters?
         final HybridInterpreter runtime = new HybridInterpreter(prototype);
 
-        final ResourceAgent agent = new ResourceAgent(resourceService);
-        agent.setAbsoluteWorkingDir(workingLocation);
-        agent.setAbsoluteDefinitionDir(component.location());
-        runtime.setIOAgent(agent);
+        runtime.setIOAgent(newAgent(workingLocation, component));
 
         runtime.getCompiledContext().getExceptionHandler().setEnabled(false);
 
@@ -136,9 +225,18 @@ public class StrategoRuntimeService implements IStrategoRuntimeService, AutoClos
 
         runtime.init();
 
+        cloneTime.addAndGet(timer.stop());
+        clones.incrementAndGet();
         return runtime;
     }
 
+    private ResourceAgent newAgent(FileObject workingLocation, ILanguageComponent component) {
+        final ResourceAgent agent = new ResourceAgent(resourceService);
+        agent.setAbsoluteWorkingDir(workingLocation);
+        agent.setAbsoluteDefinitionDir(component.location());
+        return agent;
+    }
+
     private HybridInterpreter createNew(ITermFactory termFactory) {
         final HybridInterpreter interpreter = new HybridInterpreter(termFactory);
 
@@ -155,11 +253,25 @@ public class StrategoRuntimeService implements IStrategoRuntimeService, AutoClos
         return interpreter;
     }
 
+    private HybridInterpreter createGeneric() {
+        logger.debug("Creating generic runtime for thread {}", Thread.currentThread().getName());
+        final HybridInterpreter runtime = createNew(termFactory);
+        final Context context = runtime.getCompiledContext();
+        org.strategoxt.stratego_sglr.Main.init(context);
+        org.strategoxt.stratego_aterm.Main.init(context);
+        return runtime;
+    }
+
     private HybridInterpreter createPrototype(ILanguageComponent component) throws MetaborgException {
         logger.debug("Creating prototype runtime for {}", component);
         final HybridInterpreter runtime = createNew(termFactory);
         loadFiles(runtime, component);
-        prototypes.put(component, runtime);
+        final @Nullable HybridInterpreter existing = prototypes.putIfAbsent(component, runtime);
+        if(existing != null) {
+            // Another thread created a prototype concurrently, use that one.
+            runtime.uninit();
+            return existing;
+        }
         return runtime;
     }
 
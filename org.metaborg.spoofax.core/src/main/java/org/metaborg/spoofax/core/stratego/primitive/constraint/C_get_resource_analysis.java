@@ -3,6 +3,8 @@ package org.metaborg.spoofax.core.stratego.primitive.constraint;
 import java.util.List;
 import java.util.Optional;
 
+import javax.annotation.Nullable;
+
 import org.metaborg.spoofax.core.context.constraint.IConstraintContext;
 import org.spoofax.interpreter.core.InterpreterException;
 import org.spoofax.interpreter.terms.IStrategoTerm;
@@ -22,8 +24,12 @@ public class C_get_resource_analysis extends ConstraintContextPrimitive {
         }
 
         final String resource = TermUtils.toJavaString(sterm);
-        final IStrategoTerm analysis = context.contains(resource) ? context.get(resource).analysis() : null;
-        return Optional.ofNullable(analysis);
+        // Get the entry once, it is missing if its shard fails to load, even when the context contains the resource.
+        final @Nullable IConstraintContext.Entry entry = context.get(resource);
+        if(entry == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(entry.analysis());
     }
 
 }
\ No newline at end of file
@@ -1,16 +1,15 @@
 package org.metaborg.spoofax.core.stratego.primitive.flowspec;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.metaborg.core.context.IContext;
@@ -27,7 +26,12 @@ import org.spoofax.interpreter.terms.IStrategoList;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.interpreter.terms.ITermFactory;
 import org.spoofax.terms.ParseError;
+import org.spoofax.terms.io.binary.TermReader;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
 import mb.flowspec.controlflow.IFlowSpecSolution;
@@ -38,22 +42,42 @@ import mb.flowspec.runtime.solver.ParseException;
 import mb.flowspec.terms.B;
 import org.spoofax.terms.util.M;
 import mb.nabl2.spoofax.analysis.IResult;
-
+import mb.nabl2.util.Tuple2;
+
+/**
+ * Primitive that solves FlowSpec data-flow properties. Static info of FlowSpec modules is read with a
+ * {@link TermReader}, which reads the binary term formats as well as the text format, and the terms of each module
+ * are cached until the module file changes. Transfer functions are cached per language implementation. Thread-safe,
+ * the language is taken from the context of each call.
+ */
 public class FS_solve extends AbstractPrimitive implements ILanguageCache {
     private static final ILogger logger = LoggerUtils.logger(FS_solve.class);
     protected final IResourceService resourceService;
     protected final ITermFactory termFactory;
-    private final AnalysisPrimitive prim;
-    private ILanguageImpl currentLanguage;
 
     private static final String FLOWSPEC_STATIC_INFO_DIR = "target/metaborg/flowspec-static-info";
-    private final Map<ILanguageComponent, InterpreterBuilder> flowSpecTransferFunctionCache = new HashMap<>();
+    private final ConcurrentMap<ILanguageImpl, InterpreterBuilder> flowSpecTransferFunctionCache =
+        Maps.newConcurrentMap();
+    // Static info terms per module file, with the modification time of the file they were read from. Kept when a
+    // language is reloaded, such that only changed modules are read again. Soft values, since removed languages never
+    // invalidate their entries.
+    private final Cache<FileName, Tuple2<Long, IStrategoTerm>> staticInfoCache =
+        CacheBuilder.newBuilder().softValues().build();
 
     @Inject public FS_solve(IResourceService resourceService, ITermFactory termFactory) {
         super(FS_solve.class.getSimpleName(), 0, 2);
         this.resourceService = resourceService;
         this.termFactory = termFactory;
-        prim = new AnalysisPrimitive(FS_solve.class.getSimpleName(), 1) {
+    }
+
+    @Override public boolean call(org.spoofax.interpreter.core.IContext env, Strategy[] svars, IStrategoTerm[] tvars)
+            throws InterpreterException {
+        final ILanguageImpl language = ((IContext) env.contextObject()).language();
+        return analysisPrimitive(language).call(env, svars, tvars);
+    }
+
+    private AnalysisPrimitive analysisPrimitive(ILanguageImpl language) {
+        return new AnalysisPrimitive(FS_solve.class.getSimpleName(), 1) {
             @Override protected Optional<? extends IStrategoTerm> call(IResult result, IStrategoTerm term, List<IStrategoTerm> terms)
                     throws InterpreterException {
                 final Optional<List<String>> propertyNames = M.maybe(() -> {
@@ -66,7 +90,7 @@ public class FS_solve extends AbstractPrimitive implements ILanguageCache {
                 });
                 final Optional<IFlowSpecSolution> sol = AnalysisPrimitive.getFSSolution(result);
                 final FixedPoint solver = new FixedPoint();
-                final InterpreterBuilder interpBuilder = getFlowSpecInterpreterBuilder(currentLanguage);
+                final InterpreterBuilder interpBuilder = getFlowSpecInterpreterBuilder(language);
                 if (propertyNames.isPresent() && sol.isPresent()) {
                         final IFlowSpecSolution solution = solver.entryPoint(getFactory(), sol.get(), interpBuilder, propertyNames.get());
                         return Optional.of(B.blob(result.withCustomAnalysis(solution)));
@@ -76,31 +100,49 @@ public class FS_solve extends AbstractPrimitive implements ILanguageCache {
         };
     }
 
-    @Override public boolean call(org.spoofax.interpreter.core.IContext env, Strategy[] svars, IStrategoTerm[] tvars)
-            throws InterpreterException {
-        this.currentLanguage = ((IContext) env.contextObject()).language();
-        return prim.call(env, svars, tvars);
-    }
-
     protected Optional<InterpreterBuilder> getFlowSpecInterpreterBuilder(ILanguageComponent component) {
-        Optional<InterpreterBuilder> optInterpB = Optional.ofNullable(flowSpecTransferFunctionCache.get(component));
-        if (optInterpB.isPresent()) {
-            return optInterpB;
+        final FileObject staticInfoDir = resourceService.resolve(component.location(), FLOWSPEC_STATIC_INFO_DIR);
+        final FileObject[] staticInfoFiles;
+        try {
+            staticInfoFiles = staticInfoDir.getChildren();
+        } catch(FileSystemException e) {
+            logger.info("Could not find FlowSpec static info directory for {}.", component);
+            return Optional.empty();
         }
-
-        optInterpB = getFlowSpecInterpreterBuilder(component, resourceService, termFactory);
-
-        if (!optInterpB.isPresent()) {
-            return optInterpB;
+        final InterpreterBuilder result = new InterpreterBuilder();
+        for(FileObject staticInfoFile : staticInfoFiles) {
+            try {
+                result.add(staticInfoTerm(staticInfoFile), moduleName(staticInfoFile));
+            } catch (IOException e) {
+                logger.info("Could not read FlowSpec static info file for {}. \n{}", component, e.getMessage());
+            } catch (ParseError | ParseException e) {
+                logger.warn("Could not parse FlowSpec static info file for {}. \nError: {}", component, e.getMessage());
+            }
         }
+        return Optional.of(result);
+    }
 
-        logger.debug("Caching FlowSpec static info for language {}", component);
-        flowSpecTransferFunctionCache.put(component, optInterpB.get());
-        return optInterpB;
+    private IStrategoTerm staticInfoTerm(FileObject file) throws IOException {
+        final FileName name = file.getName();
+        final long lastModified = file.getContent().getLastModifiedTime();
+        final Tuple2<Long, IStrategoTerm> cacheEntry = staticInfoCache.getIfPresent(name);
+        if(cacheEntry != null && cacheEntry._1() == lastModified) {
+            return cacheEntry._2();
+        }
+        final IStrategoTerm term = readStaticInfo(file, termFactory);
+        staticInfoCache.put(name, Tuple2.of(lastModified, term));
+        return term;
     }
 
     public InterpreterBuilder getFlowSpecInterpreterBuilder(ILanguageImpl impl) {
-        return getFlowSpecInterpreterBuilder(impl, this::getFlowSpecInterpreterBuilder);
+        final InterpreterBuilder cached = flowSpecTransferFunctionCache.get(impl);
+        if(cached != null) {
+            return cached;
+        }
+        final InterpreterBuilder interpBuilder = getFlowSpecInterpreterBuilder(impl, this::getFlowSpecInterpreterBuilder);
+        logger.debug("Caching FlowSpec static info for language {}", impl);
+        final InterpreterBuilder existing = flowSpecTransferFunctionCache.putIfAbsent(impl, interpBuilder);
+        return existing != null ? existing : interpBuilder;
     }
 
     public static InterpreterBuilder getFlowSpecInterpreterBuilder(ILanguageImpl impl, Function<ILanguageComponent, Optional<InterpreterBuilder>> getStaticInfo) {
@@ -130,10 +172,7 @@ public class FS_solve extends AbstractPrimitive implements ILanguageCache {
             InterpreterBuilder result = new InterpreterBuilder();
             for(FileObject staticInfoFile : staticInfoDir.getChildren()) {
                 try {
-                    String moduleName = FilenameUtils.removeExtension(staticInfoFile.getName().getBaseName().replace('+', '/'));
-                    IStrategoTerm term = termFactory
-                            .parseFromString(IOUtils.toString(staticInfoFile.getContent().getInputStream(), StandardCharsets.UTF_8));
-                    result.add(term, moduleName);
+                    result.add(readStaticInfo(staticInfoFile, termFactory), moduleName(staticInfoFile));
                 } catch (IOException e) {
                     logger.info("Could not read FlowSpec static info file for {}. \n{}", component, e.getMessage());
                 } catch (ParseError | ParseException e) {
@@ -147,18 +186,34 @@ public class FS_solve extends AbstractPrimitive implements ILanguageCache {
         }
     }
 
+    private static String moduleName(FileObject staticInfoFile) {
+        return FilenameUtils.removeExtension(staticInfoFile.getName().getBaseName().replace('+', '/'));
+    }
+
+    /**
+     * Reads a static info file in any of the binary term formats, or in the text format.
+     */
+    private static IStrategoTerm readStaticInfo(FileObject staticInfoFile, ITermFactory termFactory)
+            throws IOException {
+        try(InputStream stream = staticInfoFile.getContent().getInputStream()) {
+            return new TermReader(termFactory).parseFromStream(stream);
+        }
+    }
+
     @Override
     public void invalidateCache(ILanguageComponent component) {
         logger.debug("Removing cached flowspec transfer functions for {}", component);
-        flowSpecTransferFunctionCache.remove(component);
+        for(ILanguageImpl impl : flowSpecTransferFunctionCache.keySet()) {
+            if(Iterables.contains(impl.components(), component)) {
+                flowSpecTransferFunctionCache.remove(impl);
+            }
+        }
     }
 
     @Override
     public void invalidateCache(ILanguageImpl impl) {
         logger.debug("Removing cached flowspec transfer functions for {}", impl);
-        for(ILanguageComponent component : impl.components()) {
-            flowSpecTransferFunctionCache.remove(component);
-        }
+        flowSpecTransferFunctionCache.remove(impl);
     }
 
 }
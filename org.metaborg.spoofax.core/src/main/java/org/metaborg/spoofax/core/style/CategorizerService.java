@@ -2,6 +2,8 @@ package org.metaborg.spoofax.core.style;
 
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.core.style.ICategory;
@@ -15,6 +17,7 @@ import org.metaborg.util.log.LoggerUtils;
 import org.spoofax.interpreter.terms.IStrategoAppl;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.jsglr.client.imploder.IToken;
+import org.spoofax.jsglr.client.imploder.ITokenizer;
 import org.spoofax.jsglr.client.imploder.ITokens;
 import org.spoofax.jsglr.client.imploder.ImploderAttachment;
 import org.spoofax.terms.attachments.ParentAttachment;
@@ -28,7 +31,12 @@ public class CategorizerService implements ISpoofaxCategorizerService {
 
     @Override public Iterable<IRegionCategory<IStrategoTerm>> categorize(ILanguageImpl language,
         ISpoofaxParseUnit parseResult) {
-        final List<IRegionCategory<IStrategoTerm>> regionCategories = Lists.newLinkedList();
+        return categorize(language, parseResult, null);
+    }
+
+    @Override public Iterable<IRegionCategory<IStrategoTerm>> categorize(ILanguageImpl language,
+        ISpoofaxParseUnit parseResult, @Nullable ISourceRegion range) {
+        final List<IRegionCategory<IStrategoTerm>> regionCategories = Lists.newArrayList();
         if(!parseResult.valid()) {
             return regionCategories;
         }
@@ -53,12 +61,30 @@ public class CategorizerService implements ISpoofaxCategorizerService {
             // GTODO: throw exception instead
             return regionCategories;
         }
-        for(IToken token : tokenizer) {
-            final ICategory category = category(facet, token);
-            if(category != null) {
-                final ISourceRegion region = JSGLRSourceRegionFactory.fromToken(token);
-                final IStrategoTerm term = (IStrategoTerm) token.getAstNode();
-                regionCategories.add(new RegionCategory<>(region, category, term));
+
+        final CategoryTable table = facet.categoryTable();
+        if(range == null) {
+            for(IToken token : tokenizer) {
+                add(table, token, regionCategories);
+            }
+        } else if(tokenizer instanceof ITokenizer) {
+            final ITokenizer indexedTokens = (ITokenizer) tokenizer;
+            final int count = indexedTokens.getTokenCount();
+            for(int i = firstTokenEndingAtOrAfter(indexedTokens, range.startOffset()); i < count; ++i) {
+                final IToken token = indexedTokens.getTokenAt(i);
+                if(token.getStartOffset() > range.endOffset()) {
+                    break;
+                }
+                add(table, token, regionCategories);
+            }
+        } else {
+            for(IToken token : tokenizer) {
+                if(token.getStartOffset() > range.endOffset()) {
+                    break;
+                }
+                if(token.getEndOffset() >= range.startOffset()) {
+                    add(table, token, regionCategories);
+                }
             }
         }
 
@@ -71,86 +97,69 @@ public class CategorizerService implements ISpoofaxCategorizerService {
     }
 
 
-    private ICategory category(StylerFacet facet, IToken token) {
+    private static int firstTokenEndingAtOrAfter(ITokenizer tokens, int offset) {
+        int low = 0;
+        int high = tokens.getTokenCount();
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if(tokens.getTokenAt(mid).getEndOffset() < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void add(CategoryTable table, IToken token, List<IRegionCategory<IStrategoTerm>> regionCategories) {
+        final ICategory category = category(table, token);
+        if(category != null) {
+            final ISourceRegion region = JSGLRSourceRegionFactory.fromToken(token);
+            final IStrategoTerm term = (IStrategoTerm) token.getAstNode();
+            regionCategories.add(new RegionCategory<>(region, category, term));
+        }
+    }
+
+    private @Nullable ICategory category(CategoryTable table, IToken token) {
         IStrategoTerm term = (IStrategoTerm) token.getAstNode();
         if(term == null) {
-            return tokenCategory(token);
+            return tokenCategory(table, token);
         }
 
         if(!TermUtils.isAppl(term) && !TermUtils.isTuple(term) && !TermUtils.isList(term)) {
             // Try to use the parent of terminal nodes, mimicking behavior of old Spoofax/IMP runtime.
             final IStrategoTerm parentTerm = ParentAttachment.getParent(term);
             if(parentTerm != null) {
-                final ICategory category = sortConsCategory(facet, parentTerm);
+                final ICategory category = sortConsCategory(table, parentTerm);
                 if(category != null) {
                     return category;
                 }
             }
         }
 
-        final ICategory category = sortConsCategory(facet, term);
+        final ICategory category = sortConsCategory(table, term);
         if(category != null) {
             return category;
         }
 
-        return tokenCategory(token);
+        return tokenCategory(table, token);
     }
 
-    private ICategory sortConsCategory(StylerFacet facet, IStrategoTerm term) {
+    private @Nullable ICategory sortConsCategory(CategoryTable table, IStrategoTerm term) {
         final ImploderAttachment imploderAttachment = ImploderAttachment.get(term);
         final String sort = imploderAttachment.getSort();
         if(sort == null) {
             return null;
         }
-        // LEGACY: for some reason, when using concrete syntax extensions, all sorts are appended with _sort.
-        final String massagedSort = sort.replace("_sort", "");
-        if(TermUtils.isAppl(term)) {
-            final String cons = ((IStrategoAppl) term).getConstructor().getName();
-            if(facet.hasSortConsStyle(massagedSort, cons)) {
-                return new SortConsCategory(massagedSort, cons);
-            } else if(facet.hasConsStyle(cons)) {
-                return new ConsCategory(cons);
-            } else if(facet.hasSortStyle(massagedSort)) {
-                return new SortCategory(massagedSort);
-            }
-            return null;
-        }
-
-        if(facet.hasSortStyle(massagedSort)) {
-            return new SortCategory(massagedSort);
-        }
-
-        return null;
+        final String cons = TermUtils.isAppl(term) ? ((IStrategoAppl) term).getConstructor().getName() : null;
+        return table.category(sort, cons);
     }
 
-    private ICategory tokenCategory(IToken token) {
-        switch(token.getKind()) {
-            case TK_IDENTIFIER:
-                return new TokenCategory("TK_IDENTIFIER");
-            case TK_NUMBER:
-                return new TokenCategory("TK_NUMBER");
-            case TK_STRING:
-                return new TokenCategory("TK_STRING");
-            case TK_ERROR_KEYWORD:
-            case TK_KEYWORD:
-                return new TokenCategory("TK_KEYWORD");
-            case TK_OPERATOR:
-                return new TokenCategory("TK_OPERATOR");
-            case TK_VAR:
-                return new TokenCategory("TK_VAR");
-            case TK_ERROR_LAYOUT:
-            case TK_LAYOUT:
-                return new TokenCategory("TK_LAYOUT");
-            default:
-                logger.debug("Unhandled token kind " + token.getKind());
-            case TK_UNKNOWN:
-            case TK_ERROR:
-            case TK_EOF:
-            case TK_ERROR_EOF_UNEXPECTED:
-            case TK_ESCAPE_OPERATOR:
-            case TK_RESERVED:
-            case TK_NO_TOKEN_KIND:
-                return null;
+    private @Nullable ICategory tokenCategory(CategoryTable table, IToken token) {
+        final ICategory category = table.tokenCategory(token.getKind());
+        if(category == null) {
+            logger.trace("No category for token kind {}", token.getKind());
         }
+        return category;
     }
 }
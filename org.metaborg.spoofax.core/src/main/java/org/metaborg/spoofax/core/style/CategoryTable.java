@@ -0,0 +1,147 @@
+package org.metaborg.spoofax.core.style;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.metaborg.core.style.ICategory;
+import org.metaborg.core.style.IStyle;
+import org.spoofax.jsglr.client.imploder.IToken;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Lookup table compiled from a {@link StylerFacet}, which maps token kinds and sort/constructor pairs to shared category
+ * instances, and categories to styles. Lookups of previously seen sorts and constructors do not allocate. Thread-safe.
+ */
+public class CategoryTable {
+    private static final Map<IToken.Kind, TokenCategory> tokenCategories = new EnumMap<>(IToken.Kind.class);
+
+    static {
+        final TokenCategory identifier = new TokenCategory("TK_IDENTIFIER");
+        final TokenCategory number = new TokenCategory("TK_NUMBER");
+        final TokenCategory string = new TokenCategory("TK_STRING");
+        final TokenCategory keyword = new TokenCategory("TK_KEYWORD");
+        final TokenCategory operator = new TokenCategory("TK_OPERATOR");
+        final TokenCategory var = new TokenCategory("TK_VAR");
+        final TokenCategory layout = new TokenCategory("TK_LAYOUT");
+        tokenCategories.put(IToken.Kind.TK_IDENTIFIER, identifier);
+        tokenCategories.put(IToken.Kind.TK_NUMBER, number);
+        tokenCategories.put(IToken.Kind.TK_STRING, string);
+        tokenCategories.put(IToken.Kind.TK_ERROR_KEYWORD, keyword);
+        tokenCategories.put(IToken.Kind.TK_KEYWORD, keyword);
+        tokenCategories.put(IToken.Kind.TK_OPERATOR, operator);
+        tokenCategories.put(IToken.Kind.TK_VAR, var);
+        tokenCategories.put(IToken.Kind.TK_ERROR_LAYOUT, layout);
+        tokenCategories.put(IToken.Kind.TK_LAYOUT, layout);
+    }
+
+    // Marks sort/constructor pairs without a category, since concurrent maps cannot hold null values.
+    private static final ICategory noCategory = new TokenCategory("NO_CATEGORY");
+
+    private final StylerFacet facet;
+    private final ConcurrentMap<String, SortEntry> sorts = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, ConsCategory> consCategories = Maps.newConcurrentMap();
+    private final ConcurrentMap<ICategory, IStyle> styles = Maps.newConcurrentMap();
+
+
+    CategoryTable(StylerFacet facet) {
+        this.facet = facet;
+        for(TokenCategory category : tokenCategories.values()) {
+            final @Nullable IStyle style = facet.tokenStyle(category.token);
+            if(style != null) {
+                styles.put(category, style);
+            }
+        }
+    }
+
+
+    /**
+     * @return Category of tokens of given kind, or null if tokens of that kind are not categorized.
+     */
+    public @Nullable ICategory tokenCategory(IToken.Kind kind) {
+        return tokenCategories.get(kind);
+    }
+
+    /**
+     * @param sort
+     *            Sort of the term, as stored by the imploder.
+     * @param cons
+     *            Constructor name of the term, or null if the term is not an application.
+     * @return Category of a term with given sort and constructor, or null if the facet has no style for it.
+     */
+    public @Nullable ICategory category(String sort, @Nullable String cons) {
+        SortEntry entry = sorts.get(sort);
+        if(entry == null) {
+            final SortEntry newEntry = new SortEntry(sort);
+            entry = sorts.putIfAbsent(sort, newEntry);
+            if(entry == null) {
+                entry = newEntry;
+            }
+        }
+        if(cons == null) {
+            return entry.sortCategory;
+        }
+        ICategory category = entry.consCategories.get(cons);
+        if(category == null) {
+            category = consCategory(entry, cons);
+            entry.consCategories.putIfAbsent(cons, category);
+        }
+        return category != noCategory ? category : null;
+    }
+
+    /**
+     * @return Style of given category, or null if the category was not created by this table, or has no style.
+     */
+    public @Nullable IStyle style(ICategory category) {
+        return styles.get(category);
+    }
+
+
+    private ICategory consCategory(SortEntry entry, String cons) {
+        final @Nullable IStyle sortConsStyle = facet.sortConsStyle(entry.massagedSort, cons);
+        if(sortConsStyle != null) {
+            final SortConsCategory category = new SortConsCategory(entry.massagedSort, cons);
+            styles.put(category, sortConsStyle);
+            return category;
+        }
+        final @Nullable IStyle consStyle = facet.consStyle(cons);
+        if(consStyle != null) {
+            ConsCategory category = consCategories.get(cons);
+            if(category == null) {
+                category = new ConsCategory(cons);
+                final ConsCategory existing = consCategories.putIfAbsent(cons, category);
+                if(existing != null) {
+                    category = existing;
+                }
+                styles.put(category, consStyle);
+            }
+            return category;
+        }
+        if(entry.sortCategory != null) {
+            return entry.sortCategory;
+        }
+        return noCategory;
+    }
+
+
+    private class SortEntry {
+        final String massagedSort;
+        final @Nullable SortCategory sortCategory;
+        final ConcurrentMap<String, ICategory> consCategories = Maps.newConcurrentMap();
+
+        SortEntry(String sort) {
+            // LEGACY: for some reason, when using concrete syntax extensions, all sorts are appended with _sort.
+            this.massagedSort = sort.replace("_sort", "");
+            final @Nullable IStyle sortStyle = facet.sortStyle(massagedSort);
+            if(sortStyle != null) {
+                this.sortCategory = new SortCategory(massagedSort);
+                styles.put(sortCategory, sortStyle);
+            } else {
+                this.sortCategory = null;
+            }
+        }
+    }
+}
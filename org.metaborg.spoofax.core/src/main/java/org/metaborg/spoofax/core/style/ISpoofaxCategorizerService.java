@@ -1,6 +1,11 @@
 package org.metaborg.spoofax.core.style;
 
+import javax.annotation.Nullable;
+
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.core.style.ICategorizerService;
+import org.metaborg.core.style.IRegionCategory;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
 import org.spoofax.interpreter.terms.IStrategoTerm;
@@ -9,5 +14,19 @@ import org.spoofax.interpreter.terms.IStrategoTerm;
  * Typedef interface for {@link ICategorizerService} with Spoofax interfaces.
  */
 public interface ISpoofaxCategorizerService extends ICategorizerService<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit, IStrategoTerm> {
-
+    /**
+     * Returns a categorization of the tokens of given parse result that overlap with given range, for example the range
+     * that is visible in an editor.
+     * 
+     * @param langImpl
+     *            Language implementation that contains the categorization logic.
+     * @param result
+     *            Parse result to categorize.
+     * @param range
+     *            Range of the source text to categorize, or null to categorize the entire source text.
+     * @return Iterable over categories assigned to regions of the source text. Regions do not overlap and are iterated
+     *         over in ascending order.
+     */
+    Iterable<IRegionCategory<IStrategoTerm>> categorize(ILanguageImpl langImpl, ISpoofaxParseUnit result,
+        @Nullable ISourceRegion range);
 }
@@ -15,6 +15,21 @@ public class StylerFacet implements IFacet {
     private final Map<String, IStyle> sortToStyle = Maps.newHashMap();
     private final Map<String, IStyle> tokenToStyle = Maps.newHashMap();
 
+    private volatile @Nullable CategoryTable categoryTable;
+
+
+    /**
+     * @return Lookup table of categories and styles of this facet, compiled on first use.
+     */
+    public CategoryTable categoryTable() {
+        CategoryTable table = categoryTable;
+        if(table == null) {
+            table = new CategoryTable(this);
+            categoryTable = table;
+        }
+        return table;
+    }
+
 
     public boolean hasSortConsStyle(String sort, String cons) {
         return sortConsToStyle.containsKey(new SortConsCategory(sort, cons));
@@ -52,17 +67,21 @@ public class StylerFacet implements IFacet {
 
     public void mapSortConsToStyle(String sort, String cons, IStyle style) {
         sortConsToStyle.put(new SortConsCategory(sort, cons), style);
+        categoryTable = null;
     }
 
     public void mapConsToStyle(String cons, IStyle style) {
         consToStyle.put(cons, style);
+        categoryTable = null;
     }
 
     public void mapSortToStyle(String sort, IStyle style) {
         sortToStyle.put(sort, style);
+        categoryTable = null;
     }
 
     public void mapTokenToStyle(String builtin, IStyle style) {
         tokenToStyle.put(builtin, style);
+        categoryTable = null;
     }
 }
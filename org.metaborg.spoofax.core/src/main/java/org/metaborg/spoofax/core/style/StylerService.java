@@ -30,7 +30,7 @@ public class StylerService implements ISpoofaxStylerService {
             return Iterables2.empty();
         }
 
-        final List<IRegionStyle<IStrategoTerm>> regionStyles = Lists.newLinkedList();
+        final List<IRegionStyle<IStrategoTerm>> regionStyles = Lists.newArrayList();
         for(IRegionCategory<IStrategoTerm> regionCategory : categorization) {
             final IRegionStyle<IStrategoTerm> regionStyle = style(facet, regionCategory);
             if(regionStyle != null) {
@@ -53,6 +53,21 @@ public class StylerService implements ISpoofaxStylerService {
             return null;
         }
         final ICategory category = regionCategory.category();
+        final IStyle style = style(facet, category);
+        if(style == null) {
+            logger.warn("Cannot determine style for category " + category.name());
+            return null;
+        }
+
+        return new RegionStyle<>(regionCategory.region(), style, regionCategory.fragment());
+    }
+
+    private @Nullable IStyle style(StylerFacet facet, ICategory category) {
+        // Categories created by the categorizer are looked up in the precompiled table of the facet.
+        final IStyle tableStyle = facet.categoryTable().style(category);
+        if(tableStyle != null) {
+            return tableStyle;
+        }
         // HACK: instanceof checks are nasty, but required since we do not have separate specifications for categories
         // and styles, they are intertwined.
         final IStyle style;
@@ -71,12 +86,6 @@ public class StylerService implements ISpoofaxStylerService {
         } else {
             style = null;
         }
-
-        if(style == null) {
-            logger.warn("Cannot determine style for category " + category.name());
-            return null;
-        }
-
-        return new RegionStyle<>(regionCategory.region(), style, regionCategory.fragment());
+        return style;
     }
 }
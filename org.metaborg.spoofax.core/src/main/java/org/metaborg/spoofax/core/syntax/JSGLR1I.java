@@ -2,6 +2,7 @@ package org.metaborg.spoofax.core.syntax;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
@@ -31,22 +32,44 @@ import org.spoofax.terms.util.TermUtils;
 import org.strategoxt.lang.Context;
 import org.strategoxt.stratego_sglr.implode_asfix_0_0;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
 
 public class JSGLR1I extends JSGLRI<ParseTable> {
 
     private final SGLR parser;
-    private final Context context;
+    private final Supplier<Context> contextSupplier;
+    /**
+     * Constructors of child terms that cannot occur as leftmost and rightmost child of parent terms with given sort and
+     * constructor, according to the non-associative and non-nested productions of the parse table.
+     */
+    private final Map<String, Map<String, Set<String>>> nonAssocConstructors;
+    private final Map<String, Map<String, Set<String>>> nonNestedConstructors;
 
     public JSGLR1I(IParserConfig config, ITermFactory termFactory, Context context, ILanguageImpl language,
         ILanguageImpl dialect) throws IOException {
+        this(config, termFactory, initStrategoSglr(context), language, dialect);
+    }
+
+    /**
+     * @param contextSupplier
+     *            Supplier of the Stratego context used for imploding, which is called on the parsing thread, and must
+     *            supply a context in which the stratego_sglr library has been initialized.
+     */
+    public JSGLR1I(IParserConfig config, ITermFactory termFactory, Supplier<Context> contextSupplier,
+        ILanguageImpl language, ILanguageImpl dialect) throws IOException {
         super(config, termFactory, language, dialect);
 
         final TermTreeFactory factory = new TermTreeFactory(new ParentTermFactory(termFactory));
         this.parseTable = getParseTable(config.getParseTableProvider());
         this.parser = new SGLR(new TreeBuilder(factory), parseTable);
-        this.context = context;
+        this.contextSupplier = contextSupplier;
+        this.nonAssocConstructors = constructorIndex(parseTable.getNonAssocProductions());
+        this.nonNestedConstructors = constructorIndex(parseTable.getNonNestedProductions());
+    }
+
+    private static Supplier<Context> initStrategoSglr(Context context) {
+        org.strategoxt.stratego_sglr.Main.init(context);
+        return () -> context;
     }
 
     @Override public ParseContrib parse(@Nullable JSGLRParserConfiguration parserConfig, @Nullable FileObject resource,
@@ -99,8 +122,11 @@ public class JSGLR1I extends JSGLRI<ParseTable> {
             messages.add(message);
         }
 
-        // add non-assoc warnings to messages
-        messages.addAll(addNonAssocErrorMessages(ast, resource));
+        // Record ambiguities and add non-assoc warnings to messages, in a single traversal of the AST.
+        final List<IStrategoTerm> ambiguities = new ArrayList<>();
+        if(hasAst) {
+            scan(ast, true, false, resource, ambiguities, messages);
+        }
 
         if(config.getImploderSetting() == ImploderImplementation.stratego) {
             for(BadTokenException badTokenException : parser.getCollectedErrors()) {
@@ -109,27 +135,7 @@ public class JSGLR1I extends JSGLRI<ParseTable> {
             }
         }
         final boolean hasErrors = MessageUtils.containsSeverity(messages, MessageSeverity.ERROR);
-        final boolean isAmbiguous = hasAst && isAmbiguous(ast);
-        return new ParseContrib(hasAst, hasAst && !hasErrors, isAmbiguous, ast, messages, duration);
-    }
-
-    /**
-     * Determines whether the AST has any ambiguities by traversing
-     * the AST until it finds an amb() node.
-     *
-     * @param ast the AST to check
-     * @return {@code true} when the AST has at least one ambiguity;
-     * otherwise, {@code false}
-     */
-    private boolean isAmbiguous(IStrategoTerm ast) {
-        LinkedList<IStrategoTerm> worklist = new LinkedList<>();
-        worklist.add(ast);
-        while (!worklist.isEmpty()) {
-            IStrategoTerm term = worklist.pop();
-            if (TermUtils.isAppl(term, "amb")) return true;
-            worklist.addAll(term.getSubterms());
-        }
-        return false;
+        return new ParseContrib(hasAst, hasAst && !hasErrors, ambiguities, ast, messages, duration);
     }
 
     public SGLRParseResult actuallyParse(String text, @Nullable String filename,
@@ -158,7 +164,7 @@ public class JSGLR1I extends JSGLRI<ParseTable> {
         SGLRParseResult parseResult =
             parseAndRecover(text, filename, disambiguator, getOrDefaultStartSymbol(parserConfig));
         if(config.getImploderSetting() == ImploderImplementation.stratego) {
-            org.strategoxt.stratego_sglr.Main.init(context);
+            final Context context = contextSupplier.get();
             final implode_asfix_0_0 imploder = implode_asfix_0_0.instance;
             final IStrategoTerm syntaxTree = (IStrategoTerm) parseResult.output;
             return new SGLRParseResult(imploder.invoke(context, syntaxTree));
@@ -200,60 +206,92 @@ public class JSGLR1I extends JSGLRI<ParseTable> {
         return parser.getCollectedErrors();
     }
 
-    protected Collection<? extends IMessage> addNonAssocErrorMessages(IStrategoTerm ast,
-        @Nullable FileObject resource) {
-        List<IMessage> result = Lists.newArrayList();
+    /**
+     * Traverses given term once, recording the outermost amb nodes, and adding a message for each operator that is
+     * used as a non-associative or non-nested operand. Like the parser, does not check operators below an operator for
+     * which a message was added.
+     */
+    private void scan(IStrategoTerm term, boolean checkOperators, boolean inAmbiguity, @Nullable FileObject resource,
+        List<IStrategoTerm> ambiguities, List<IMessage> messages) {
+        boolean checkChildOperators = checkOperators;
+        boolean childInAmbiguity = inAmbiguity;
+        if(TermUtils.isAppl(term)) {
+            final String cons = ((IStrategoAppl) term).getConstructor().getName();
+            if(!inAmbiguity && "amb".equals(cons)) {
+                ambiguities.add(term);
+                childInAmbiguity = true;
+            }
+            if(checkOperators && term.getSubtermCount() >= 1 && checkOperator(term, cons, resource, messages)) {
+                checkChildOperators = false;
+            }
+        }
+        for(IStrategoTerm child : term.getAllSubterms()) {
+            scan(child, checkChildOperators, childInAmbiguity, resource, ambiguities, messages);
+        }
+    }
 
+    /**
+     * @return True if a message was added for given operator.
+     */
+    private boolean checkOperator(IStrategoTerm term, String cons, @Nullable FileObject resource,
+        List<IMessage> messages) {
+        final @Nullable String sort = ImploderAttachment.getSort(term);
+        if(sort == null) {
+            return false;
+        }
         boolean addedMessage = false;
+        final @Nullable Set<String> nonAssocChildren = childConstructors(nonAssocConstructors, sort, cons);
+        if(nonAssocChildren != null && isOperand(term.getSubterm(0), nonAssocChildren)) {
+            messages.add(MessageFactory.newParseError(resource, region(term), "Operator is non-associative", null));
+            addedMessage = true;
+        }
+        final @Nullable Set<String> nonNestedChildren = childConstructors(nonNestedConstructors, sort, cons);
+        if(nonNestedChildren != null && isOperand(term.getSubterm(term.getSubtermCount() - 1), nonNestedChildren)) {
+            messages.add(MessageFactory.newParseError(resource, region(term), "Operator is non-nested", null));
+            addedMessage = true;
+        }
+        return addedMessage;
+    }
 
-        // non-associative and non-nested operators should be flagged with warnings
-        if(TermUtils.isAppl(ast) && ast.getAllSubterms().length >= 1) {
-            SetMultimap<String, String> nonAssocProductions = parseTable.getNonAssocProductions();
-            SetMultimap<String, String> nonNestedProductions = parseTable.getNonNestedProductions();
-
-            String sortConsParent =
-                ImploderAttachment.getSort(ast) + "." + ((IStrategoAppl) ast).getConstructor().getName();
-
-            IStrategoTerm firstChild = ast.getSubterm(0);
-            IStrategoTerm lastChild = ast.getSubterm(ast.getSubtermCount() - 1);
-
-            if(TermUtils.isAppl(firstChild)) {
-                IStrategoAppl leftMostChild = (IStrategoAppl) firstChild;
-                @Nullable ImploderAttachment leftMostChildAttachment = ImploderAttachment.get(leftMostChild);
-                String sortConsChild = ImploderAttachment.getSort(ast) + "." + leftMostChild.getConstructor().getName();
-                if(leftMostChildAttachment != null && !leftMostChildAttachment.isBracket()
-                    && parseTable instanceof ParseTable
-                    && nonAssocProductions.containsEntry(sortConsParent, sortConsChild)) {
-                    ISourceRegion region = JSGLRSourceRegionFactory.fromTokens(ImploderAttachment.getLeftToken(ast),
-                        ImploderAttachment.getRightToken(ast));
-                    result.add(MessageFactory.newParseError(resource, region, "Operator is non-associative", null));
-                    addedMessage = true;
-                }
-            }
+    private static @Nullable Set<String> childConstructors(Map<String, Map<String, Set<String>>> index, String sort,
+        String cons) {
+        final @Nullable Map<String, Set<String>> constructors = index.get(sort);
+        return constructors != null ? constructors.get(cons) : null;
+    }
 
-            if(TermUtils.isAppl(lastChild)) {
-                IStrategoAppl rightMostChild = (IStrategoAppl) lastChild;
-                @Nullable ImploderAttachment rightMostChildAttachment = ImploderAttachment.get(rightMostChild);
-                String sortConsChild =
-                    ImploderAttachment.getSort(ast) + "." + rightMostChild.getConstructor().getName();
-                if(rightMostChildAttachment != null && !rightMostChildAttachment.isBracket()
-                    && parseTable instanceof ParseTable
-                    && nonNestedProductions.containsEntry(sortConsParent, sortConsChild)) {
-                    ISourceRegion region = JSGLRSourceRegionFactory.fromTokens(ImploderAttachment.getLeftToken(ast),
-                        ImploderAttachment.getRightToken(ast));
-                    result.add(MessageFactory.newParseError(resource, region, "Operator is non-nested", null));
-                    addedMessage = true;
-                }
-            }
+    private static boolean isOperand(IStrategoTerm child, Set<String> constructors) {
+        if(!TermUtils.isAppl(child)) {
+            return false;
         }
+        final @Nullable ImploderAttachment attachment = ImploderAttachment.get(child);
+        return attachment != null && !attachment.isBracket()
+            && constructors.contains(((IStrategoAppl) child).getConstructor().getName());
+    }
+
+    private static ISourceRegion region(IStrategoTerm term) {
+        return JSGLRSourceRegionFactory.fromTokens(ImploderAttachment.getLeftToken(term),
+            ImploderAttachment.getRightToken(term));
+    }
 
-        if(ast != null && !addedMessage) {
-            for(IStrategoTerm child : ast.getAllSubterms()) {
-                result.addAll(addNonAssocErrorMessages(child, resource));
+    /**
+     * Indexes productions, which map a parent sort.constructor to child sort.constructor strings, by parent sort and
+     * constructor, such that they can be looked up without building strings for each term. Children are always
+     * checked with the sort of the parent, so productions with a child of another sort are dropped.
+     */
+    private static Map<String, Map<String, Set<String>>> constructorIndex(SetMultimap<String, String> productions) {
+        final Map<String, Map<String, Set<String>>> index = new HashMap<>();
+        for(Map.Entry<String, String> production : productions.entries()) {
+            final String parent = production.getKey();
+            final String child = production.getValue();
+            final int parentDot = parent.lastIndexOf('.');
+            final int childDot = child.lastIndexOf('.');
+            if(parentDot < 0 || parentDot != childDot || !parent.regionMatches(0, child, 0, parentDot)) {
+                continue;
             }
+            index.computeIfAbsent(parent.substring(0, parentDot), sort -> new HashMap<>())
+                .computeIfAbsent(parent.substring(parentDot + 1), cons -> new HashSet<>())
+                .add(child.substring(childDot + 1));
         }
-
-        return result;
+        return index;
     }
-
 }
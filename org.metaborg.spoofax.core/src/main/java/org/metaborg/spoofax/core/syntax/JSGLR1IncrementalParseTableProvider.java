@@ -27,7 +27,7 @@ public class JSGLR1IncrementalParseTableProvider implements IParseTableProvider
     }
 
 
-    @Override public ParseTable parseTable() throws IOException {
+    @Override public synchronized ParseTable parseTable() throws IOException {
         if(parseTable != null) {
             return parseTable;
         }
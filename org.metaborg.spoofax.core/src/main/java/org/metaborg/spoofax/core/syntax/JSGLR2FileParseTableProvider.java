@@ -22,7 +22,7 @@ public class JSGLR2FileParseTableProvider implements IParseTableProvider {
         this.termFactory = termFactory;
     }
 
-    @Override public IParseTable parseTable() throws IOException {
+    @Override public synchronized IParseTable parseTable() throws IOException {
         if(parseTable != null) {
             return parseTable;
         }
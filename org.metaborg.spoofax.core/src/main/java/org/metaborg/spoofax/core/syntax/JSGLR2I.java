@@ -39,13 +39,30 @@ import com.google.common.collect.SetMultimap;
 public class JSGLR2I extends JSGLRI<IParseTable> {
 
     private final JSGLR2<IStrategoTerm> parser;
+    private final @Nullable JSGLR2IncrementalCache incrementalCache;
 
     public JSGLR2I(IParserConfig config, ITermFactory termFactory, ILanguageImpl language, ILanguageImpl dialect,
         JSGLRVersion jsglrVersion, JSGLR2Logging jsglr2Logging) throws IOException {
+        this(config, termFactory, language, dialect, jsglrVersion, jsglr2Logging, null);
+    }
+
+    /**
+     * @param incrementalCache
+     *            Cache of previous inputs and results to parse incrementally with, or null to always parse from
+     *            scratch. Only used when {@code jsglrVersion} is an incremental variant.
+     */
+    public JSGLR2I(IParserConfig config, ITermFactory termFactory, ILanguageImpl language, ILanguageImpl dialect,
+        JSGLRVersion jsglrVersion, JSGLR2Logging jsglr2Logging, @Nullable JSGLR2IncrementalCache incrementalCache)
+        throws IOException {
         super(config, termFactory, language, dialect);
 
         this.parseTable = getParseTable(config.getParseTableProvider());
         this.parser = getJSGLR2Spec(jsglrVersion, jsglr2Logging).getJSGLR2(parseTable);
+        this.incrementalCache = isIncremental(jsglrVersion) ? incrementalCache : null;
+    }
+
+    public static boolean isIncremental(JSGLRVersion jsglrVersion) {
+        return jsglrVersion == JSGLRVersion.incremental || jsglrVersion == JSGLRVersion.recoveryIncremental;
     }
 
     private JSGLR2Spec getJSGLR2Spec(JSGLRVersion jsglrVersion, JSGLR2Logging jsglr2Logging) {
@@ -107,7 +124,25 @@ public class JSGLR2I extends JSGLRI<IParseTable> {
             JSGLR2Request.DEFAULT_RECOVERY_ITERATIONS_QUOTA, JSGLR2Request.DEFAULT_SUCCEEDING_RECOVERY_OFFSET,
             parserConfig.completion ? Optional.of(parserConfig.cursorPosition) : Optional.empty());
 
-        final JSGLR2Result<IStrategoTerm> result = parser.parseResult(request);
+        // Completion parses insert placeholders at the cursor, so their results are not reused for later parses.
+        final boolean incremental = incrementalCache != null && resource != null && !parserConfig.completion;
+        final JSGLR2IncrementalCache.Entry previous =
+            incremental ? incrementalCache.get(language, resource.getName()) : null;
+
+        final JSGLR2Result<IStrategoTerm> result;
+        if(previous != null) {
+            result = parser.parseResult(request, previous.input, previous.result);
+        } else {
+            result = parser.parseResult(request);
+        }
+
+        if(incremental) {
+            if(result.isSuccess()) {
+                incrementalCache.put(language, resource.getName(), input, result);
+            } else {
+                incrementalCache.remove(language, resource.getName());
+            }
+        }
         IStrategoTerm ast = result.isSuccess() ? ((JSGLR2Success<IStrategoTerm>) result).ast : null;
         boolean isAmbiguous = result.isSuccess() && ((JSGLR2Success<IStrategoTerm>) result).isAmbiguous();
         final Collection<IMessage> messages = mapMessages(resource, result.messages);
@@ -0,0 +1,95 @@
+package org.metaborg.spoofax.core.syntax;
+
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileName;
+import org.metaborg.core.language.ILanguageImpl;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.jsglr2.JSGLR2Result;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded cache of the last successfully parsed input and parse result per resource, used by {@link JSGLR2I} to parse
+ * incrementally with the {@link org.metaborg.core.config.JSGLRVersion#incremental} and
+ * {@link org.metaborg.core.config.JSGLRVersion#recoveryIncremental} variants. Least recently used entries are evicted
+ * when the cache is full.
+ */
+public class JSGLR2IncrementalCache {
+    public static final int defaultMaximumSize = 128;
+
+    private final Cache<Key, Entry> cache;
+
+
+    public JSGLR2IncrementalCache() {
+        this(defaultMaximumSize);
+    }
+
+    public JSGLR2IncrementalCache(int maximumSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+
+    public @Nullable Entry get(ILanguageImpl language, FileName resource) {
+        return cache.getIfPresent(new Key(language, resource));
+    }
+
+    public void put(ILanguageImpl language, FileName resource, String input, JSGLR2Result<IStrategoTerm> result) {
+        cache.put(new Key(language, resource), new Entry(input, result));
+    }
+
+    public void remove(ILanguageImpl language, FileName resource) {
+        cache.invalidate(new Key(language, resource));
+    }
+
+    /**
+     * Removes all entries of given language implementation, including entries of versions of that language
+     * implementation with parser overrides.
+     */
+    public void invalidate(ILanguageImpl language) {
+        final ILanguageImpl matcher = LanguageImplementationWithParserOverride.matcher(language);
+        cache.asMap().keySet().removeIf(key -> language.equals(key.language) || matcher.equals(key.language));
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+        cache.cleanUp();
+    }
+
+
+    public static class Entry {
+        public final String input;
+        public final JSGLR2Result<IStrategoTerm> result;
+
+        public Entry(String input, JSGLR2Result<IStrategoTerm> result) {
+            this.input = input;
+            this.result = result;
+        }
+    }
+
+    private static class Key {
+        private final ILanguageImpl language;
+        private final FileName resource;
+
+        private Key(ILanguageImpl language, FileName resource) {
+            this.language = language;
+            this.resource = resource;
+        }
+
+        @Override public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(o == null || getClass() != o.getClass())
+                return false;
+            final Key other = (Key) o;
+            return language.equals(other.language) && resource.equals(other.resource);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(language, resource);
+        }
+    }
+}
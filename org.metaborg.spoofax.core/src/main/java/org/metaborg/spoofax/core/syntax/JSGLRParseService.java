@@ -2,7 +2,15 @@ package org.metaborg.spoofax.core.syntax;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
@@ -32,6 +40,7 @@ import org.strategoxt.lang.Context;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 
 public class JSGLRParseService implements ISpoofaxParser, ILanguageCache, AutoCloseable {
@@ -43,22 +52,35 @@ public class JSGLRParseService implements ISpoofaxParser, ILanguageCache, AutoCl
     private final ITermFactory termFactory;
     private final IStrategoRuntimeService strategoRuntimeService;
     private final JSGLRParserConfiguration defaultParserConfig;
+    private final JSGLRParserPoolConfiguration poolConfig;
 
-    private final Map<ILanguageImpl, IParserConfig> parserConfigs = Maps.newHashMap();
-    private final Map<ILanguageImpl, IParserConfig> completionParserConfigs = Maps.newHashMap();
+    private final Map<ILanguageImpl, IParserConfig> parserConfigs = Maps.newConcurrentMap();
+    private final Map<ILanguageImpl, IParserConfig> completionParserConfigs = Maps.newConcurrentMap();
 
-    private final Map<ILanguageImpl, ParseTable> referenceParseTables = Maps.newHashMap();
-    private final Map<ILanguageImpl, ParseTable> referenceCompletionParseTables = Maps.newHashMap();
+    private final Map<ILanguageImpl, ParseTable> referenceParseTables = Maps.newConcurrentMap();
+    private final Map<ILanguageImpl, ParseTable> referenceCompletionParseTables = Maps.newConcurrentMap();
 
-    private final Map<ILanguageImpl, JSGLRI<?>> parsers = Maps.newHashMap();
-    private final Map<ILanguageImpl, JSGLRI<?>> completionParsers = Maps.newHashMap();
+    private final Map<ILanguageImpl, JSGLRI<?>> parsers = Maps.newConcurrentMap();
+    private final Map<ILanguageImpl, JSGLRI<?>> completionParsers = Maps.newConcurrentMap();
+
+    // Idle parser instances in pooled mode. A parser is removed from its queue while it is parsing, such that each
+    // parser is only used by one thread at a time. All parsers in a queue share the parse table of their config.
+    private final Map<ILanguageImpl, Queue<JSGLRI<?>>> parserPools = Maps.newConcurrentMap();
+    private final Map<ILanguageImpl, Queue<JSGLRI<?>>> completionParserPools = Maps.newConcurrentMap();
+
+    // Previous inputs and results for incremental JSGLR2 parsing, shared by all incremental parsers of this service.
+    private final JSGLR2IncrementalCache incrementalCache = new JSGLR2IncrementalCache();
+
+    private @Nullable ExecutorService executor;
 
     @Inject public JSGLRParseService(ISpoofaxUnitService unitService, ITermFactory termFactory,
-        IStrategoRuntimeService strategoRuntimeService, JSGLRParserConfiguration defaultParserConfig) {
+        IStrategoRuntimeService strategoRuntimeService, JSGLRParserConfiguration defaultParserConfig,
+        JSGLRParserPoolConfiguration poolConfig) {
         this.unitService = unitService;
         this.termFactory = termFactory;
         this.strategoRuntimeService = strategoRuntimeService;
         this.defaultParserConfig = defaultParserConfig;
+        this.poolConfig = poolConfig;
     }
 
     @Override public ISpoofaxParseUnit parse(ISpoofaxInputUnit input, IProgress progress, ICancel cancel)
@@ -82,9 +104,27 @@ public class JSGLRParseService implements ISpoofaxParser, ILanguageCache, AutoCl
         try {
             logger.trace("Parsing {}", source);
 
-            final JSGLRI<?> parser = getParser(input, parserConfig, overrideJSGLRVersion, overrideImploder);
-
-            final ParseContrib contrib = parser.parse(parserConfig, source, text);
+            final ParseContrib contrib;
+            if(poolConfig.pooled) {
+                final ILanguageImpl langImpl = parserKey(input, overrideJSGLRVersion, overrideImploder);
+                final Map<ILanguageImpl, Queue<JSGLRI<?>>> poolMap =
+                    parserConfig.completion ? completionParserPools : parserPools;
+                final Queue<JSGLRI<?>> pool = poolMap.computeIfAbsent(langImpl, k -> new ConcurrentLinkedQueue<>());
+                @Nullable JSGLRI<?> parser = pool.poll();
+                if(parser == null) {
+                    parser = createParser(langImpl, input, parserConfig, overrideJSGLRVersion, overrideImploder);
+                }
+                try {
+                    contrib = parser.parse(parserConfig, source, text);
+                } finally {
+                    // When the pool was invalidated in the meantime, the parser is returned to a queue that is no
+                    // longer referenced, and is thus discarded.
+                    pool.offer(parser);
+                }
+            } else {
+                final JSGLRI<?> parser = getParser(input, parserConfig, overrideJSGLRVersion, overrideImploder);
+                contrib = parser.parse(parserConfig, source, text);
+            }
 
             return unitService.parseUnit(input, contrib);
         } catch(IOException e) {
@@ -93,14 +133,56 @@ public class JSGLRParseService implements ISpoofaxParser, ILanguageCache, AutoCl
     }
 
     @Override public Collection<ISpoofaxParseUnit> parseAll(Iterable<ISpoofaxInputUnit> inputs, IProgress progress,
-        ICancel cancel) throws ParseException {
-        final Collection<ISpoofaxParseUnit> parseUnits = Lists.newArrayList();
-        for(ISpoofaxInputUnit input : inputs) {
-            parseUnits.add(parse(input, progress, cancel));
+        ICancel cancel) throws ParseException, InterruptedException {
+        final List<ISpoofaxInputUnit> inputList = Lists.newArrayList(inputs);
+        final Collection<ISpoofaxParseUnit> parseUnits = Lists.newArrayListWithCapacity(inputList.size());
+        if(!poolConfig.pooled || poolConfig.threads <= 1 || inputList.size() <= 1) {
+            for(ISpoofaxInputUnit input : inputList) {
+                cancel.throwIfCancelled();
+                parseUnits.add(parse(input, progress, cancel));
+            }
+            return parseUnits;
+        }
+
+        final ExecutorService executor = executor();
+        final List<Future<ISpoofaxParseUnit>> futures = Lists.newArrayListWithCapacity(inputList.size());
+        for(ISpoofaxInputUnit input : inputList) {
+            futures.add(executor.submit(() -> {
+                cancel.throwIfCancelled();
+                return parse(input, progress, cancel);
+            }));
+        }
+
+        // Collect in input order, such that the result is independent of scheduling.
+        try {
+            for(Future<ISpoofaxParseUnit> future : futures) {
+                parseUnits.add(future.get());
+            }
+        } catch(ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof ParseException) {
+                throw (ParseException) cause;
+            } else if(cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Parsing failed unexpectedly", cause);
+        } finally {
+            for(Future<ISpoofaxParseUnit> future : futures) {
+                future.cancel(true);
+            }
         }
         return parseUnits;
     }
 
+    @Override public boolean concurrent() {
+        // Without pooling, a single parser instance is shared between all threads that parse a language.
+        return poolConfig.pooled;
+    }
+
     @SuppressWarnings("StatementWithEmptyBody")
     @Override public void invalidateCache(ILanguageImpl impl) {
         if(hasIncrementalPTGen(impl)) {
@@ -114,6 +196,9 @@ public class JSGLRParseService implements ISpoofaxParser, ILanguageCache, AutoCl
         completionParserConfigs.remove(impl);
         parsers.remove(impl);
         completionParsers.remove(impl);
+        parserPools.remove(impl);
+        completionParserPools.remove(impl);
+        incrementalCache.invalidate(impl);
 
         ILanguageImpl implWithOverrideMatcher = LanguageImplementationWithParserOverride.matcher(impl);
 
@@ -123,6 +208,8 @@ public class JSGLRParseService implements ISpoofaxParser, ILanguageCache, AutoCl
         while(completionParserConfigs.remove(implWithOverrideMatcher) != null);
         while(parsers.remove(implWithOverrideMatcher) != null);
         while(completionParsers.remove(implWithOverrideMatcher) != null);
+        while(parserPools.remove(implWithOverrideMatcher) != null);
+        while(completionParserPools.remove(implWithOverrideMatcher) != null);
     }
 
     @Override public void invalidateCache(ILanguageComponent component) {
@@ -136,51 +223,72 @@ public class JSGLRParseService implements ISpoofaxParser, ILanguageCache, AutoCl
         referenceCompletionParseTables.clear();
         parsers.clear();
         completionParsers.clear();
+        parserPools.clear();
+        completionParserPools.clear();
+        incrementalCache.clear();
+
+        synchronized(this) {
+            if(executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
     }
 
 
-    private JSGLRI<?> getParser(ISpoofaxInputUnit input, JSGLRParserConfiguration parserConfig,
-        @Nullable JSGLRVersion overrideJSGLRVersion, @Nullable ImploderImplementation overrideImploder)
-        throws IOException, ParseException {
-
-        ILanguageImpl langImpl;
-        final ILanguageImpl base;
-        if(input.dialect() != null) {
-            langImpl = input.dialect();
-            base = input.langImpl();
-        } else {
-            langImpl = input.langImpl();
-            base = null;
+    private synchronized ExecutorService executor() {
+        if(executor == null) {
+            executor = Executors.newFixedThreadPool(poolConfig.threads,
+                new ThreadFactoryBuilder().setNameFormat("jsglr-parser-%d").setDaemon(true).build());
         }
+        return executor;
+    }
+
+
+    private ILanguageImpl parserKey(ISpoofaxInputUnit input, @Nullable JSGLRVersion overrideJSGLRVersion,
+        @Nullable ImploderImplementation overrideImploder) {
+        final ILanguageImpl langImpl = input.dialect() != null ? input.dialect() : input.langImpl();
         // Cache an overridden configuration under a different key
         if(overrideImploder != null || overrideJSGLRVersion != null) {
-            langImpl = new LanguageImplementationWithParserOverride(langImpl, overrideImploder, overrideJSGLRVersion);
+            return new LanguageImplementationWithParserOverride(langImpl, overrideImploder, overrideJSGLRVersion);
         }
+        return langImpl;
+    }
 
+    private JSGLRI<?> getParser(ISpoofaxInputUnit input, JSGLRParserConfiguration parserConfig,
+        @Nullable JSGLRVersion overrideJSGLRVersion, @Nullable ImploderImplementation overrideImploder)
+        throws IOException, ParseException {
+        final ILanguageImpl langImpl = parserKey(input, overrideJSGLRVersion, overrideImploder);
         final Map<ILanguageImpl, JSGLRI<?>> parserMap = parserConfig.completion ? completionParsers : parsers;
 
-        if(!parserMap.containsKey(langImpl)) {
-            final IParserConfig config =
-                getParserConfig(langImpl, input, parserConfig.completion, overrideJSGLRVersion, overrideImploder);
-            final JSGLRVersion version = jsglrVersion(input, overrideJSGLRVersion);
+        @Nullable JSGLRI<?> parser = parserMap.get(langImpl);
+        if(parser == null) {
+            parser = createParser(langImpl, input, parserConfig, overrideJSGLRVersion, overrideImploder);
+            parserMap.put(langImpl, parser);
+        }
+        return parser;
+    }
 
-            final JSGLRI<?> parser;
-            if(version == JSGLRVersion.v1) {
-                final Context context = strategoRuntimeService.genericRuntime().getCompiledContext();
-                if(base != null) {
-                    parser = new JSGLR1I(config, termFactory, context, base, langImpl);
-                } else {
-                    parser = new JSGLR1I(config, termFactory, context, langImpl, null);
-                }
+    private JSGLRI<?> createParser(ILanguageImpl langImpl, ISpoofaxInputUnit input,
+        JSGLRParserConfiguration parserConfig, @Nullable JSGLRVersion overrideJSGLRVersion,
+        @Nullable ImploderImplementation overrideImploder) throws IOException, ParseException {
+        final IParserConfig config =
+            getParserConfig(langImpl, input, parserConfig.completion, overrideJSGLRVersion, overrideImploder);
+        final JSGLRVersion version = jsglrVersion(input, overrideJSGLRVersion);
+
+        if(version == JSGLRVersion.v1) {
+            // Imploding uses the generic runtime of the parsing thread, such that pooled parsers do not share a context.
+            final Supplier<Context> context = () -> strategoRuntimeService.threadGenericRuntime().getCompiledContext();
+            if(input.dialect() != null) {
+                return new JSGLR1I(config, termFactory, context, input.langImpl(), langImpl);
             } else {
-                final JSGLR2Logging jsglr2Logging = jsglr2Logging(input);
-
-                parser = new JSGLR2I(config, termFactory, langImpl, null, version, jsglr2Logging);
+                return new JSGLR1I(config, termFactory, context, langImpl, null);
             }
+        } else {
+            final JSGLR2Logging jsglr2Logging = jsglr2Logging(input);
 
-            parserMap.put(langImpl, parser);
+            return new JSGLR2I(config, termFactory, langImpl, null, version, jsglr2Logging, incrementalCache);
         }
-        return parserMap.get(langImpl);
     }
 
     private IParserConfig getParserConfig(ILanguageImpl lang, ISpoofaxInputUnit input, boolean completion,
@@ -278,7 +386,11 @@ public class JSGLRParseService implements ISpoofaxParser, ILanguageCache, AutoCl
                 parserConfig = new ParserConfig(
                     facet.startSymbols != null ? Iterables.get(facet.startSymbols, 0) : null, provider, facet.imploder);
             }
-            parserConfigMap.put(lang, parserConfig);
+            // Another thread may have created a config concurrently, use that one such that the parse table is shared.
+            final @Nullable IParserConfig existingConfig = parserConfigMap.putIfAbsent(lang, parserConfig);
+            if(existingConfig != null) {
+                parserConfig = existingConfig;
+            }
         }
         return parserConfig;
     }
@@ -0,0 +1,31 @@
+package org.metaborg.spoofax.core.syntax;
+
+/**
+ * Configuration of the parser pool in {@link JSGLRParseService}. When pooling is disabled, a single parser instance is
+ * kept per language implementation, which is not safe for concurrent use. When pooling is enabled, each parse leases a
+ * parser instance that is used by one thread at a time, and {@link JSGLRParseService#parseAll} distributes its inputs
+ * over {@link #threads} worker threads.
+ */
+public class JSGLRParserPoolConfiguration {
+    public static final boolean defaultPooled = false;
+    public static final int defaultThreads = 1;
+
+    public final boolean pooled;
+    public final int threads;
+
+    public JSGLRParserPoolConfiguration() {
+        this(defaultPooled, defaultThreads);
+    }
+
+    public JSGLRParserPoolConfiguration(int threads) {
+        this(true, threads);
+    }
+
+    public JSGLRParserPoolConfiguration(boolean pooled, int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Number of parser threads must be at least 1, got " + threads);
+        }
+        this.pooled = pooled;
+        this.threads = threads;
+    }
+}
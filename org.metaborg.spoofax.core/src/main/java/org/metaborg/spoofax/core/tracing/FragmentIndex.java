@@ -0,0 +1,239 @@
+package org.metaborg.spoofax.core.tracing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.metaborg.core.source.ISourceRegion;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.jsglr.client.imploder.IToken;
+import org.spoofax.jsglr.client.imploder.ImploderAttachment;
+import org.spoofax.terms.attachments.OriginAttachment;
+import org.spoofax.terms.util.TermUtils;
+
+/**
+ * Index of the source regions of all fragments of an AST, for answering which fragments contain, or are within, a
+ * source region in logarithmic time. Fragments are stored in an array sorted by start offset, which is augmented into
+ * an implicit interval tree by storing the maximum end offset of each subtree.
+ *
+ * Answers are identical to those of a full traversal in {@link TracingService#toTerms} and
+ * {@link TracingService#toTermsWithin}, including their order.
+ */
+public class FragmentIndex {
+    private final Node[] nodes;
+    private final int[] maxEnds;
+    private final int rootLevel;
+
+
+    private FragmentIndex(Node[] nodes) {
+        this.nodes = nodes;
+        this.maxEnds = new int[nodes.length];
+        this.rootLevel = buildTree();
+    }
+
+    /**
+     * Builds an index of all fragments in given AST that have a source region.
+     */
+    public static FragmentIndex build(IStrategoTerm ast) {
+        final List<Node> nodes = new ArrayList<>();
+        collect(ast, null, nodes, new int[2]);
+        final Node[] sorted = nodes.toArray(new Node[0]);
+        Arrays.sort(sorted, Comparator.comparingInt((Node n) -> n.start).thenComparingInt(n -> n.preOrder));
+        return new FragmentIndex(sorted);
+    }
+
+
+    /**
+     * @return Fragments whose region contains given region, innermost fragments first.
+     */
+    public List<IStrategoTerm> containing(ISourceRegion region) {
+        final int start = region.startOffset();
+        final int end = Math.max(region.startOffset(), region.endOffset());
+        final List<Node> found = new ArrayList<>();
+        // Fragments with node.start <= start and node.end >= end, as an overlap query on half-open intervals.
+        overlapping(end - 1, start + 1, found);
+        found.sort(Comparator.comparingInt(n -> n.postOrder));
+        return terms(found);
+    }
+
+    /**
+     * @return Outermost fragments whose region is within given region, excluding singleton lists, in traversal order.
+     */
+    public List<IStrategoTerm> within(ISourceRegion region) {
+        final int start = region.startOffset();
+        final int end = region.endOffset();
+        final List<Node> found = new ArrayList<>();
+        for(int i = lowerBound(start); i < nodes.length && nodes[i].start <= end; ++i) {
+            final Node node = nodes[i];
+            if(node.end <= end && !node.singletonList && !hasAncestorWithin(node, start, end)) {
+                found.add(node);
+            }
+        }
+        found.sort(Comparator.comparingInt(n -> n.preOrder));
+        return terms(found);
+    }
+
+
+    private static void collect(IStrategoTerm term, @Nullable Node ancestor, List<Node> nodes, int[] counters) {
+        final int preOrder = counters[0]++;
+        final IStrategoTerm located = locatedTerm(term);
+        final IToken left = ImploderAttachment.getLeftToken(located);
+        final IToken right = ImploderAttachment.getRightToken(located);
+        final Node node;
+        if(left != null && right != null) {
+            node = new Node(term, left.getStartOffset(), right.getEndOffset(), preOrder, ancestor,
+                TermUtils.isList(term, 1));
+            nodes.add(node);
+        } else {
+            node = null;
+        }
+        // Only located fragments that are not singleton lists can be found by a within query, and thus hide their
+        // descendants from that query.
+        final Node childAncestor = node != null && !node.singletonList ? node : ancestor;
+        for(IStrategoTerm subterm : term.getAllSubterms()) {
+            collect(subterm, childAncestor, nodes, counters);
+        }
+        final int postOrder = counters[1]++;
+        if(node != null) {
+            node.postOrder = postOrder;
+        }
+    }
+
+    private static IStrategoTerm locatedTerm(IStrategoTerm term) {
+        final IStrategoTerm origin = OriginAttachment.getOrigin(term);
+        return origin != null ? origin : term;
+    }
+
+    private static boolean hasAncestorWithin(Node node, int start, int end) {
+        for(Node ancestor = node.ancestor; ancestor != null; ancestor = ancestor.ancestor) {
+            if(ancestor.start >= start && ancestor.start <= end && ancestor.end <= end) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int lowerBound(int start) {
+        int low = 0;
+        int high = nodes.length;
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if(nodes[mid].start < start) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<IStrategoTerm> terms(List<Node> nodes) {
+        final List<IStrategoTerm> terms = new ArrayList<>(nodes.size());
+        for(Node node : nodes) {
+            terms.add(node.term);
+        }
+        return terms;
+    }
+
+
+    /**
+     * Computes the maximum end offsets of the implicit interval tree, where the node at index i is at the level equal
+     * to the number of trailing one bits of i.
+     *
+     * @return Level of the root node.
+     */
+    private int buildTree() {
+        final int n = nodes.length;
+        if(n == 0) {
+            return -1;
+        }
+        int lastIndex = 0;
+        int last = 0;
+        for(int i = 0; i < n; i += 2) {
+            lastIndex = i;
+            last = maxEnds[i] = nodes[i].end;
+        }
+        int k = 1;
+        for(; 1L << k <= n; ++k) {
+            final int x = 1 << (k - 1);
+            final int step = x << 2;
+            for(int i = (x << 1) - 1; i < n; i += step) {
+                final int leftMax = maxEnds[i - x];
+                final int rightMax = i + x < n ? maxEnds[i + x] : last;
+                maxEnds[i] = Math.max(nodes[i].end, Math.max(leftMax, rightMax));
+            }
+            lastIndex = ((lastIndex >> k) & 1) != 0 ? lastIndex - x : lastIndex + x;
+            if(lastIndex < n && maxEnds[lastIndex] > last) {
+                last = maxEnds[lastIndex];
+            }
+        }
+        return k - 1;
+    }
+
+    /**
+     * Adds all nodes with node.start < end and node.end > start to found.
+     */
+    private void overlapping(int start, int end, List<Node> found) {
+        final int n = nodes.length;
+        if(n == 0) {
+            return;
+        }
+        final long[] stack = new long[128];
+        int top = 0;
+        stack[top++] = frame((1L << rootLevel) - 1, rootLevel, false);
+        while(top > 0) {
+            final long frame = stack[--top];
+            final long x = frame >>> 8;
+            final int k = (int) (frame >> 1) & 0x7F;
+            final boolean leftDone = (frame & 1) != 0;
+            if(k <= 3) {
+                // Small subtree, scan all its nodes.
+                final long i0 = x >> k << k;
+                final long i1 = Math.min(i0 + (1L << (k + 1)) - 1, n);
+                for(long i = i0; i < i1 && nodes[(int) i].start < end; ++i) {
+                    if(start < nodes[(int) i].end) {
+                        found.add(nodes[(int) i]);
+                    }
+                }
+            } else if(!leftDone) {
+                final long left = x - (1L << (k - 1));
+                stack[top++] = frame(x, k, true);
+                if(left >= n || maxEnds[(int) left] > start) {
+                    stack[top++] = frame(left, k - 1, false);
+                }
+            } else if(x < n && nodes[(int) x].start < end) {
+                if(start < nodes[(int) x].end) {
+                    found.add(nodes[(int) x]);
+                }
+                stack[top++] = frame(x + (1L << (k - 1)), k - 1, false);
+            }
+        }
+    }
+
+    private static long frame(long index, int level, boolean leftDone) {
+        return index << 8 | (long) level << 1 | (leftDone ? 1 : 0);
+    }
+
+
+    private static class Node {
+        final IStrategoTerm term;
+        final int start;
+        final int end;
+        final int preOrder;
+        int postOrder;
+        final @Nullable Node ancestor;
+        final boolean singletonList;
+
+        Node(IStrategoTerm term, int start, int end, int preOrder, @Nullable Node ancestor, boolean singletonList) {
+            this.term = term;
+            this.start = start;
+            this.end = end;
+            this.preOrder = preOrder;
+            this.ancestor = ancestor;
+            this.singletonList = singletonList;
+        }
+    }
+}
@@ -17,6 +17,7 @@ import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.core.source.SourceRegion;
 import org.metaborg.core.tracing.Hover;
 import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
+import org.metaborg.spoofax.core.stratego.StrategoRuntimeLease;
 import org.metaborg.spoofax.core.tracing.TracingCommon.TermWithRegion;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
@@ -112,12 +113,11 @@ public class HoverService implements ISpoofaxHoverService {
         final String strategy = facet.strategyName;
 
         try {
-            final HybridInterpreter interpreter =
-                strategoRuntimeService.runtime(facetContrib.contributor, context);
             final Iterable<IStrategoTerm> inRegion = tracingService.fragments(result, new SourceRegion(offset));
             final TermWithRegion tuple;
-            try(IClosableLock _lock = context.read()) {
-                tuple = common.outputs(termFactory, interpreter, context.location(), source, result.ast(), inRegion, strategy);
+            try(StrategoRuntimeLease lease = strategoRuntimeService.leaseRuntime(facetContrib.contributor, context);
+                IClosableLock _lock = context.read()) {
+                tuple = common.outputs(lease, context.location(), source, inRegion, strategy);
             }
             return hover(tuple);
         } catch(MetaborgException e) {
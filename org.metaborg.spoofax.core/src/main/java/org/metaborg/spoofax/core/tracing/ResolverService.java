@@ -21,6 +21,7 @@ import org.metaborg.core.source.SourceRegion;
 import org.metaborg.core.tracing.Resolution;
 import org.metaborg.core.tracing.ResolutionTarget;
 import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
+import org.metaborg.spoofax.core.stratego.StrategoRuntimeLease;
 import org.metaborg.spoofax.core.tracing.TracingCommon.TermWithRegion;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
@@ -117,12 +118,11 @@ public class ResolverService implements ISpoofaxResolverService {
         final String strategy = facet.strategyName;
 
         try {
-            final HybridInterpreter interpreter =
-                strategoRuntimeService.runtime(facetContrib.contributor, context);
             final Iterable<IStrategoTerm> inRegion = tracingService.fragments(result, new SourceRegion(offset));
             final TermWithRegion tuple;
-            try(IClosableLock _lock = context.read()) {
-                tuple = common.outputs(termFactory, interpreter, source, source, result.ast(), inRegion, strategy);
+            try(StrategoRuntimeLease lease = strategoRuntimeService.leaseRuntime(facetContrib.contributor, context);
+                IClosableLock _lock = context.read()) {
+                tuple = common.outputs(lease, source, source, inRegion, strategy);
             }
             return resolve(tuple);
         } catch(MetaborgException e) {
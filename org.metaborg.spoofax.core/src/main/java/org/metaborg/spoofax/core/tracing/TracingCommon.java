@@ -7,6 +7,7 @@ import org.metaborg.core.MetaborgException;
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.spoofax.core.stratego.IStrategoCommon;
+import org.metaborg.spoofax.core.stratego.StrategoRuntimeLease;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 import org.spoofax.interpreter.terms.IStrategoTerm;
@@ -47,11 +48,36 @@ public class TracingCommon {
     public TermWithRegion outputs(ITermFactory termFactory, HybridInterpreter runtime, FileObject location,
         FileObject resource, IStrategoTerm result, Iterable<IStrategoTerm> inRegion, String strategy)
         throws MetaborgException {
+        return outputs(runtime, null, location, resource, inRegion, strategy);
+    }
 
+    /**
+     * Invokes given strategy on the fragments in the region, on the runtime of given lease. Discards the lease when an
+     * invocation fails, such that its runtime is only returned to the pool if every invocation succeeded.
+     */
+    public TermWithRegion outputs(StrategoRuntimeLease lease, FileObject location, FileObject resource,
+        Iterable<IStrategoTerm> inRegion, String strategy) throws MetaborgException {
+        return outputs(lease.runtime(), lease, location, resource, inRegion, strategy);
+    }
+
+    private TermWithRegion outputs(HybridInterpreter runtime, @Nullable StrategoRuntimeLease lease,
+        FileObject location, FileObject resource, Iterable<IStrategoTerm> inRegion, String strategy)
+        throws MetaborgException {
         for(IStrategoTerm term : inRegion) {
             final IStrategoTerm inputTerm = common.builderInputTerm(term, resource, location);
-            final IStrategoTerm output = common.invoke(runtime, inputTerm, strategy);
+            final IStrategoTerm output;
+            try {
+                output = common.invoke(runtime, inputTerm, strategy);
+            } catch(MetaborgException | RuntimeException e) {
+                if(lease != null) {
+                    lease.discard();
+                }
+                throw e;
+            }
             if(output == null) {
+                if(lease != null) {
+                    lease.discard();
+                }
                 continue;
             }
 
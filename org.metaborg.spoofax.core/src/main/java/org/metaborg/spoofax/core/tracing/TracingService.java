@@ -1,6 +1,6 @@
 package org.metaborg.spoofax.core.tracing;
 
-import java.util.Collection;
+import javax.annotation.Nullable;
 
 import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.MetaborgRuntimeException;
@@ -18,17 +18,25 @@ import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.jsglr.client.imploder.IToken;
 import org.spoofax.jsglr.client.imploder.ImploderAttachment;
 import org.spoofax.terms.attachments.OriginAttachment;
-import org.spoofax.terms.util.TermUtils;
-import org.spoofax.terms.visitor.AStrategoTermVisitor;
-import org.spoofax.terms.visitor.IStrategoTermVisitor;
-import org.spoofax.terms.visitor.StrategoTermVisitee;
 
-import com.google.common.collect.Lists;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 
 public class TracingService implements ISpoofaxTracingService {
+    /**
+     * Maximum number of ASTs for which a fragment index is cached.
+     */
+    public static final int maxCachedIndexes = 64;
+
     private final IResourceService resourceService;
 
+    // Weak keys are compared by identity, which is required since equal ASTs can have different origins. Indexes refer
+    // to their AST, so they are held softly, such that released parse and analysis results are not kept reachable by
+    // their index and can still be garbage collected.
+    private final Cache<IStrategoTerm, FragmentIndex> indexes =
+        CacheBuilder.newBuilder().weakKeys().softValues().maximumSize(maxCachedIndexes).build();
+
 
     @Inject public TracingService(IResourceService resourceService) {
         this.resourceService = resourceService;
@@ -91,19 +99,7 @@ public class TracingService implements ISpoofaxTracingService {
         if(ast == null || region == null) {
             return Iterables2.empty();
         }
-        final Collection<IStrategoTerm> parsed = Lists.newLinkedList();
-        final IStrategoTermVisitor visitor = new AStrategoTermVisitor() {
-            @Override public boolean visit(IStrategoTerm term) {
-                final ISourceLocation location = location(term);
-                if(location != null && location.region().contains(region)) {
-                    parsed.add(term);
-                    return false;
-                }
-                return true;
-            }
-        };
-        StrategoTermVisitee.bottomup(visitor, ast);
-        return parsed;
+        return index(ast).containing(region);
     }
 
 
@@ -137,23 +133,22 @@ public class TracingService implements ISpoofaxTracingService {
         if(ast == null || region == null) {
             return Iterables2.empty();
         }
-        final Collection<IStrategoTerm> parsed = Lists.newLinkedList();
-        final IStrategoTermVisitor visitor = new AStrategoTermVisitor() {
-            @Override public boolean visit(IStrategoTerm term) {
-                if(TermUtils.isList(term, 1)) {
-                    // try element instead of singleton list
-                    return true;
-                }
-                final ISourceLocation location = location(term);
-                if(location != null && region.contains(location.region())) {
-                    parsed.add(term);
-                    // no need to check the children, as this term is already within the given region
-                    return false;
-                }
-                return true;
-            }
-        };
-        StrategoTermVisitee.topdown(visitor, ast);
-        return parsed;
+        return index(ast).within(region);
+    }
+
+
+    /**
+     * Gets the fragment index of given AST, building it on first use. Indexes are cached by AST identity, and the least
+     * recently used index is evicted when more than {@link #maxCachedIndexes} ASTs are indexed. Cached indexes may also
+     * be garbage collected, in which case they are rebuilt.
+     */
+    private FragmentIndex index(IStrategoTerm ast) {
+        final @Nullable FragmentIndex cached = indexes.getIfPresent(ast);
+        if(cached != null) {
+            return cached;
+        }
+        final FragmentIndex index = FragmentIndex.build(ast);
+        indexes.put(ast, index);
+        return index;
     }
 }
@@ -1,14 +1,18 @@
 package org.metaborg.spoofax.core.transform;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
-import org.apache.commons.io.IOUtils;
+import javax.annotation.Nullable;
+
 import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.MetaborgException;
 import org.metaborg.core.action.ITransformAction;
@@ -25,6 +29,7 @@ import org.metaborg.core.unit.IUnit;
 import org.metaborg.spoofax.core.action.TransformAction;
 import org.metaborg.spoofax.core.stratego.IStrategoCommon;
 import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
+import org.metaborg.spoofax.core.stratego.StrategoRuntimeLease;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
@@ -42,10 +47,21 @@ import org.strategoxt.HybridInterpreter;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.google.inject.Inject;
 
+/**
+ * Transformer that invokes Stratego strategies. Thread-safe, transformations may run concurrently, for example when
+ * building with multiple transform threads.
+ */
 public class StrategoTransformer implements IStrategoTransformer {
     private static final ILogger logger = LoggerUtils.logger(StrategoTransformer.class);
+    private static final HashFunction contentHash = Hashing.murmur3_128();
 
     private final IResourceService resourceService;
     private final ISpoofaxUnitService unitService;
@@ -145,10 +161,19 @@ public class StrategoTransformer implements IStrategoTransformer {
         // Get input term
         final IStrategoTerm inputTerm = common.builderInputTerm(term, selectedTerm, source, location);
 
-        // Get Stratego runtime
+        // Get a Stratego runtime. When allowed, lease a pooled runtime, such that transformations running concurrently
+        // each get their own runtime, and transformations of subsequent units reuse runtimes instead of cloning a
+        // runtime for each unit.
+        final @Nullable StrategoRuntimeLease lease;
         final HybridInterpreter runtime;
         try {
-            runtime = strategoRuntimeService.runtime(component, context);
+            if(config.reuseRuntimes()) {
+                lease = strategoRuntimeService.leaseRuntime(component, context);
+                runtime = lease.runtime();
+            } else {
+                lease = null;
+                runtime = strategoRuntimeService.runtime(component, context);
+            }
         } catch(MetaborgException e) {
             throw new TransformException("Transformation failed unexpectedly; cannot get Stratego interpreter", e);
         }
@@ -157,10 +182,20 @@ public class StrategoTransformer implements IStrategoTransformer {
         logger.debug("Transforming {} with '{}'", source, action.name);
         final Timer timer = new Timer(true);
         final IStrategoTerm outputTerm;
+        boolean failed = true;
         try {
             outputTerm = common.invoke(runtime, inputTerm, action.strategy);
+            // Strategy failure may leave dynamic rule scopes open, only reuse the runtime when the strategy succeeded.
+            failed = outputTerm == null;
         } catch(MetaborgException e) {
             throw new TransformException(e.getMessage(), e.getCause());
+        } finally {
+            if(lease != null) {
+                if(failed) {
+                    lease.discard();
+                }
+                lease.close();
+            }
         }
         final long duration = timer.stop();
         if(outputTerm == null) {
@@ -242,18 +277,53 @@ public class StrategoTransformer implements IStrategoTransformer {
             final String resultContents = common.toString(contentTerm);
             // writing to output file is allowed
             FileObject output;
+            boolean changed = false;
             if(!config.dryRun()) {
                 output = resourceService.resolve(location, resourceString);
-                try(OutputStream stream = output.getContent().getOutputStream()) {
-                    IOUtils.write(resultContents, stream, Charset.defaultCharset());
+                try {
+                    changed = writeIfChanged(output, resultContents, Charset.defaultCharset());
                 } catch(IOException e) {
                     logger.error("Error occurred while writing output file", e);
                 }
             } else {
                 output = null;
             }
-            return new TransformOutput(resourceString, output, contentTerm);
+            return new TransformOutput(resourceString, output, contentTerm, changed);
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Writes given contents to given file, unless the file already has exactly the same contents. Skipping unchanged
+     * files keeps their modification time, such that they are not considered changed by subsequent builds. Contents
+     * are encoded and hashed in chunks instead of being converted into a single byte array.
+     *
+     * @return True if the file was written, false if it already had the same contents.
+     */
+    private static boolean writeIfChanged(FileObject file, String contents, Charset charset) throws IOException {
+        if(file.exists()) {
+            final HashingOutputStream hashingStream =
+                new HashingOutputStream(contentHash, ByteStreams.nullOutputStream());
+            final CountingOutputStream countingStream = new CountingOutputStream(hashingStream);
+            write(contents, countingStream, charset);
+            if(countingStream.getCount() == file.getContent().getSize()) {
+                try(final HashingInputStream stream =
+                    new HashingInputStream(contentHash, file.getContent().getInputStream())) {
+                    ByteStreams.exhaust(stream);
+                    if(stream.hash().equals(hashingStream.hash())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        try(final OutputStream stream = file.getContent().getOutputStream()) {
+            write(contents, stream, charset);
+        }
+        return true;
+    }
+
+    private static void write(String contents, OutputStream stream, Charset charset) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(stream, charset));
+        writer.write(contents);
+        writer.flush();
+    }
+}
@@ -1,5 +1,7 @@
 package org.metaborg.spoofax.core.unit;
 
+import java.util.List;
+
 import javax.annotation.Nullable;
 
 import org.metaborg.core.syntax.IParseUnit;
@@ -15,6 +17,12 @@ public interface ISpoofaxParseUnit extends IParseUnit {
      */
     @Nullable IStrategoTerm ast();
 
+    /**
+     * @return Outermost ambiguous fragments of the {@link #ast()} in traversal order, recorded while parsing, or null
+     *         if the parser did not record them. Empty when the AST is not ambiguous.
+     */
+    @Nullable List<IStrategoTerm> ambiguities();
+
     /**
      * {@inheritDoc}
      */
@@ -1,5 +1,8 @@
 package org.metaborg.spoofax.core.unit;
 
+import java.util.Collections;
+import java.util.List;
+
 import javax.annotation.Nullable;
 
 import org.metaborg.core.messages.IMessage;
@@ -11,15 +14,31 @@ public class ParseContrib implements IUnitContrib {
     public final boolean valid;
     public final boolean success;
     private final boolean isAmbiguous;
+    /**
+     * Outermost ambiguous fragments of the AST in traversal order, or null if the parser did not record them.
+     */
+    public final @Nullable List<IStrategoTerm> ambiguities;
     public final @Nullable IStrategoTerm ast;
     public final Iterable<IMessage> messages;
     public final long duration;
 
+    public ParseContrib(boolean valid, boolean success, @Nullable List<IStrategoTerm> ambiguities,
+        @Nullable IStrategoTerm ast, Iterable<IMessage> messages, long duration) {
+        this.valid = valid;
+        this.success = success;
+        this.isAmbiguous = ambiguities != null && !ambiguities.isEmpty();
+        this.ambiguities = ambiguities;
+        this.ast = ast;
+        this.messages = messages;
+        this.duration = duration;
+    }
+
     public ParseContrib(boolean valid, boolean success, boolean isAmbiguous, @Nullable IStrategoTerm ast, Iterable<IMessage> messages,
         long duration) {
         this.valid = valid;
         this.success = success;
         this.isAmbiguous = isAmbiguous;
+        this.ambiguities = isAmbiguous ? null : Collections.<IStrategoTerm>emptyList();
         this.ast = ast;
         this.messages = messages;
         this.duration = duration;
@@ -1,5 +1,7 @@
 package org.metaborg.spoofax.core.unit;
 
+import java.util.List;
+
 import org.metaborg.core.messages.IMessage;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 
@@ -35,6 +37,10 @@ public class ParseUnit extends UnitWrapper implements ISpoofaxParseUnit {
         return contrib.ast;
     }
 
+    @Override public List<IStrategoTerm> ambiguities() {
+        return contrib.ambiguities;
+    }
+
     @Override public Iterable<IMessage> messages() {
         return contrib.messages;
     }
@@ -9,11 +9,17 @@ public class TransformOutput implements ISpoofaxTransformOutput {
     public final String name;
     public final @Nullable FileObject resource;
     public final IStrategoTerm ast;
+    public final boolean changed;
 
-    public TransformOutput(String name, @Nullable FileObject output, IStrategoTerm ast) {
+    public TransformOutput(String name, @Nullable FileObject output, IStrategoTerm ast, boolean changed) {
         this.name = name;
         this.resource = output;
         this.ast = ast;
+        this.changed = changed;
+    }
+
+    public TransformOutput(String name, @Nullable FileObject output, IStrategoTerm ast) {
+        this(name, output, ast, output != null);
     }
     
     @Override
@@ -26,6 +32,11 @@ public class TransformOutput implements ISpoofaxTransformOutput {
         return resource;
     }
 
+    @Override
+    public boolean changed() {
+        return changed;
+    }
+
     @Override
     public IStrategoTerm ast() {
       return ast;
@@ -0,0 +1,124 @@
+package org.metaborg.spoofax.core.test.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.Test;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.spoofax.core.analysis.AnalysisCommon;
+import org.metaborg.spoofax.core.test.SpoofaxTest;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxUnitService;
+import org.metaborg.spoofax.core.unit.ParseContrib;
+import org.metaborg.util.iterators.Iterables2;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+public class AmbiguityMessagesTest extends SpoofaxTest {
+    private @Nullable ILanguageImpl language;
+
+
+    @Test public void unambiguousParseUnit() throws Exception {
+        final FileObject resource = resourceService.resolve("ram:///a.txt");
+        final IStrategoTerm ast = appl("Module", amb("A", "B"));
+        final ISpoofaxParseUnit parseUnit = parseUnit(resource, Lists.newArrayList(), ast);
+
+        // Unambiguous according to the parser, so the AST is not traversed.
+        assertEquals(0, analysisCommon().ambiguityMessages(resource, parseUnit, ast).size());
+    }
+
+    @Test public void analyzedAst() throws Exception {
+        final FileObject resource = resourceService.resolve("ram:///a.txt");
+        final IStrategoTerm first = amb("A", "B");
+        final IStrategoTerm parseAst = appl("Module", first, amb("C", "D"));
+        final ISpoofaxParseUnit parseUnit = parseUnit(resource, Lists.newArrayList(first), parseAst);
+
+        // Analysis resolved all ambiguities.
+        final IStrategoTerm resolvedAst = appl("Module", appl("A"), appl("C"));
+        assertEquals(0, analysisCommon().ambiguityMessages(resource, parseUnit, resolvedAst).size());
+
+        // Analysis resolved one ambiguity, the ambiguities of the analyzed AST are reported.
+        final IStrategoTerm analyzedAst = appl("Module", appl("A"), amb("C", "D"), amb("E", "F"));
+        assertEquals(2, analysisCommon().ambiguityMessages(resource, parseUnit, analyzedAst).size());
+    }
+
+    @Test public void recordedAmbiguities() throws Exception {
+        final FileObject resource = resourceService.resolve("ram:///a.txt");
+        final IStrategoTerm first = amb("A", "B");
+        final IStrategoTerm second = amb("C", "D");
+        final IStrategoTerm ast = appl("Module", first, second, amb("E", "F"));
+        final ISpoofaxParseUnit parseUnit = parseUnit(resource, Lists.newArrayList(first, second), ast);
+
+        // Only the recorded ambiguities are reported, the analyzed AST is not traversed.
+        final List<IMessage> messages =
+            Lists.newArrayList(analysisCommon().ambiguityMessages(resource, parseUnit, ast));
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(0).message().contains(first.toString()));
+        assertTrue(messages.get(1).message().contains(second.toString()));
+    }
+
+    @Test public void unrecordedAmbiguities() throws Exception {
+        final FileObject resource = resourceService.resolve("ram:///a.txt");
+        final IStrategoTerm nested = appl("Nested", amb("C", "D"));
+        final IStrategoTerm ast = appl("Module", amb("A", "B"), amb(nested, appl("E")));
+        final ISpoofaxParseUnit parseUnit = parseUnit(resource, null, ast);
+
+        // Without recorded ambiguities, the outermost ambiguities of the AST are reported.
+        final Collection<IMessage> messages = analysisCommon().ambiguityMessages(resource, parseUnit, ast);
+        assertEquals(2, messages.size());
+    }
+
+
+    private AnalysisCommon analysisCommon() {
+        return metaborg.injector.getInstance(AnalysisCommon.class);
+    }
+
+    private ISpoofaxParseUnit parseUnit(FileObject resource, @Nullable List<IStrategoTerm> ambiguities,
+        IStrategoTerm ast) throws Exception {
+        final ISpoofaxUnitService unitService = metaborg.injector.getInstance(ISpoofaxUnitService.class);
+        final ISpoofaxInputUnit input = unitService.inputUnit(resource, "text", language(), null);
+        final ParseContrib contrib = ambiguities != null
+            ? new ParseContrib(true, true, ambiguities, ast, Iterables2.empty(), -1)
+            : new ParseContrib(true, true, true, ast, Iterables2.empty(), -1);
+        return unitService.parseUnit(input, contrib);
+    }
+
+    private ILanguageImpl language() throws Exception {
+        if(language == null) {
+            final FileObject location = createDir("ram:///org.metaborg.lang.entity");
+            final ILanguageComponent component =
+                language(groupId, "org.metaborg.lang.entity", version(0, 0, 1), location, "Entity");
+            language = Iterables.get(component.contributesTo(), 0);
+        }
+        return language;
+    }
+
+    private IStrategoTerm amb(String left, String right) {
+        return amb(appl(left), appl(right));
+    }
+
+    private IStrategoTerm amb(IStrategoTerm left, IStrategoTerm right) {
+        return appl("amb", termFactory().makeList(left, right));
+    }
+
+    private IStrategoTerm appl(String constructor, IStrategoTerm... subterms) {
+        final ITermFactory termFactory = termFactory();
+        return termFactory.makeAppl(termFactory.makeConstructor(constructor, subterms.length), subterms);
+    }
+
+    private ITermFactory termFactory() {
+        return metaborg.injector.getInstance(ITermFactory.class);
+    }
+}
@@ -0,0 +1,45 @@
+package org.metaborg.spoofax.core.test.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.metaborg.spoofax.core.analysis.AnalysisFacet;
+import org.metaborg.spoofax.core.analysis.AnalysisFacetFromESV;
+import org.metaborg.spoofax.core.analysis.constraint.MultiFileConstraintAnalyzer;
+import org.spoofax.interpreter.terms.IStrategoAppl;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.terms.TermFactory;
+
+public class AnalysisFacetFromESVTest {
+    private final ITermFactory termFactory = new TermFactory();
+
+
+    @Test public void sparseChangesFromAnnotation() {
+        final IStrategoAppl esv = esv(appl("Constraint"), appl("MultiFile"), appl("Sparse"));
+        final AnalysisFacet facet = AnalysisFacetFromESV.create(esv);
+        assertEquals("editor-analyze", facet.strategyName);
+        assertTrue(facet.sparseChanges);
+        assertEquals(MultiFileConstraintAnalyzer.name, AnalysisFacetFromESV.type(esv));
+    }
+
+    @Test public void noSparseChangesByDefault() {
+        final IStrategoAppl esv = esv(appl("Constraint"), appl("MultiFile"));
+        final AnalysisFacet facet = AnalysisFacetFromESV.create(esv);
+        assertFalse(facet.sparseChanges);
+        assertEquals(MultiFileConstraintAnalyzer.name, AnalysisFacetFromESV.type(esv));
+    }
+
+
+    private IStrategoAppl esv(IStrategoTerm... annotations) {
+        final IStrategoAppl strategy = appl("Strategy", termFactory.makeString("editor-analyze"));
+        final IStrategoAppl observer = appl("SemanticObserver", strategy, termFactory.makeList(annotations));
+        return appl("Module", termFactory.makeString("Analysis"), termFactory.makeList(observer));
+    }
+
+    private IStrategoAppl appl(String constructor, IStrategoTerm... subterms) {
+        return termFactory.makeAppl(termFactory.makeConstructor(constructor, subterms.length), subterms);
+    }
+}
@@ -0,0 +1,98 @@
+package org.metaborg.spoofax.core.test.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.Test;
+import org.metaborg.core.context.ContextIdentifier;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.spoofax.core.context.constraint.ConstraintContext;
+import org.metaborg.spoofax.core.context.constraint.IConstraintContext;
+import org.metaborg.spoofax.core.test.SpoofaxTest;
+import org.metaborg.util.concurrent.IClosableLock;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+
+import com.google.common.collect.Iterables;
+
+public class ConstraintContextTest extends SpoofaxTest {
+    @Test public void restoredEntriesHaveNoAnalyzedAst() throws Exception {
+        final FileObject location = createDir("ram:///project");
+        final ContextIdentifier identifier = identifier(location);
+        final FileObject resource = resourceService.resolve("ram:///project/test.ent");
+        final IStrategoTerm analysis = term("Analysis");
+
+        final ConstraintContext context = new ConstraintContext(metaborg.injector, identifier);
+        try(IClosableLock lock = context.write()) {
+            context.put(resource, 42, term("Ast"), analysis, term("Errors"), term("Warnings"), term("Notes"),
+                Collections.singletonList("exception"));
+        }
+        context.persist();
+
+        final ConstraintContext restored = new ConstraintContext(metaborg.injector, identifier);
+        try(IClosableLock lock = restored.read()) {
+            assertTrue(restored.contains(resource));
+            assertFalse(restored.hasChanged(resource, 42));
+            final IConstraintContext.Entry entry = restored.get(resource);
+            assertNotNull(entry);
+            // Analyzed ASTs lose their attachments when persisted, so they are not persisted at all.
+            assertNull(entry.analyzedAst());
+            assertEquals(analysis, entry.analysis());
+            assertEquals(term("Errors"), entry.errors());
+            assertEquals(Collections.singletonList("exception"), entry.exceptions());
+        }
+    }
+
+    @Test public void removedEntriesAreNotRestored() throws Exception {
+        final FileObject location = createDir("ram:///project");
+        final ContextIdentifier identifier = identifier(location);
+        final FileObject resource = resourceService.resolve("ram:///project/test.ent");
+
+        final ConstraintContext context = new ConstraintContext(metaborg.injector, identifier);
+        try(IClosableLock lock = context.write()) {
+            context.put(resource, 42, term("Ast"), term("Analysis"), term("Errors"), term("Warnings"),
+                term("Notes"), Collections.emptyList());
+        }
+        context.persist();
+        try(IClosableLock lock = context.write()) {
+            context.remove(resource);
+        }
+        context.persist();
+
+        final ConstraintContext restored = new ConstraintContext(metaborg.injector, identifier);
+        try(IClosableLock lock = restored.read()) {
+            assertFalse(restored.contains(resource));
+            assertNull(restored.get(resource));
+        }
+    }
+
+    @Test public void persistAfterUnload() throws Exception {
+        final FileObject location = createDir("ram:///project");
+        final ConstraintContext context = new ConstraintContext(metaborg.injector, identifier(location));
+        context.init();
+        context.unload();
+        context.persist();
+        context.reset();
+        context.persist();
+    }
+
+
+    private ContextIdentifier identifier(FileObject location) {
+        final ILanguageComponent component =
+            language(groupId, "org.metaborg.lang.entity", version(0, 0, 1), location, "Entity", "ent");
+        final ILanguageImpl impl = Iterables.get(component.contributesTo(), 0);
+        return new ContextIdentifier(location, null, impl);
+    }
+
+    private IStrategoTerm term(String constructor) {
+        final ITermFactory termFactory = metaborg.injector.getInstance(ITermFactory.class);
+        return termFactory.makeAppl(termFactory.makeConstructor(constructor, 0));
+    }
+}
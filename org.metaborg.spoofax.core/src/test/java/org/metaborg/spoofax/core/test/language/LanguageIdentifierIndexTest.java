@@ -0,0 +1,76 @@
+package org.metaborg.spoofax.core.test.language;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.Test;
+import org.metaborg.core.language.IFacet;
+import org.metaborg.core.language.ILanguageIdentifierService;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.language.IdentificationFacet;
+import org.metaborg.core.language.ResourceExtensionsIdentifier;
+import org.metaborg.core.project.IProject;
+import org.metaborg.spoofax.core.test.SpoofaxTest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+public class LanguageIdentifierIndexTest extends SpoofaxTest {
+    @Test public void extensionAndPredicateCandidates() throws Exception {
+        final ILanguageImpl byExtension = language("org.metaborg.lang.a", extensions("a"));
+        final ILanguageImpl byPredicate = language("org.metaborg.lang.b",
+            new IdentificationFacet(file -> file.getName().getBaseName().startsWith("b-")));
+
+        assertSame(byExtension, identify("ram:///x.a"));
+        assertSame(byPredicate, identify("ram:///b-x.txt"));
+        assertSame(byPredicate, identify("ram:///b-x"));
+        assertNull(identify("ram:///x.txt"));
+        assertNull(identify("ram:///x"));
+    }
+
+    @Test(expected = IllegalStateException.class) public void ambiguityWithPredicateCandidate() throws Exception {
+        language("org.metaborg.lang.a", extensions("a"));
+        language("org.metaborg.lang.b",
+            new IdentificationFacet(file -> file.getName().getBaseName().startsWith("b-")));
+
+        // Languages that do not identify by extension are candidates for every extension.
+        identify("ram:///b-x.a");
+    }
+
+    @Test public void indexInvalidatedOnLanguageChange() throws Exception {
+        language("org.metaborg.lang.a", extensions("a"));
+        assertNull(identify("ram:///x.c"));
+
+        final ILanguageImpl added = language("org.metaborg.lang.c", extensions("c"));
+        assertSame(added, identify("ram:///x.c"));
+    }
+
+    @Test public void immutableCollectionCandidates() throws Exception {
+        final ILanguageImpl a = language("org.metaborg.lang.a", extensions("a"));
+        language("org.metaborg.lang.c", extensions("c"));
+        final ImmutableList<ILanguageImpl> languages = ImmutableList.of(a);
+        final ILanguageIdentifierService identifier = metaborg.injector.getInstance(ILanguageIdentifierService.class);
+
+        assertSame(a, identifier.identify(resourceService.resolve("ram:///x.a"), languages));
+        assertNull(identifier.identify(resourceService.resolve("ram:///x.c"), languages));
+        // Identified again from the cached index of the same collection.
+        assertSame(a, identifier.identify(resourceService.resolve("ram:///y.a"), languages));
+    }
+
+
+    private ILanguageImpl language(String id, IFacet facet) throws Exception {
+        final FileObject location = createDir("ram:///" + id);
+        return Iterables.get(language(groupId, id, version(0, 0, 1), location, id, facet).contributesTo(), 0);
+    }
+
+    private static IdentificationFacet extensions(String... extensions) {
+        return new IdentificationFacet(new ResourceExtensionsIdentifier(ImmutableSet.copyOf(extensions)));
+    }
+
+    private ILanguageImpl identify(String uri) {
+        final ILanguageIdentifierService identifier = metaborg.injector.getInstance(ILanguageIdentifierService.class);
+        return identifier.identify(resourceService.resolve(uri), (IProject) null);
+    }
+}
@@ -0,0 +1,122 @@
+package org.metaborg.spoofax.core.test.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.Test;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.processing.parse.ParseResultCacheConfiguration;
+import org.metaborg.core.processing.parse.ParseResultProcessor;
+import org.metaborg.spoofax.core.syntax.ISpoofaxSyntaxService;
+import org.metaborg.spoofax.core.test.SpoofaxTest;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxUnitService;
+import org.metaborg.spoofax.core.unit.ParseContrib;
+import org.metaborg.util.iterators.Iterables2;
+import org.spoofax.interpreter.terms.ITermFactory;
+
+import com.google.common.collect.Iterables;
+
+import io.reactivex.rxjava3.disposables.Disposable;
+
+public class ParseResultProcessorTest extends SpoofaxTest {
+    private @Nullable ILanguageImpl language;
+
+
+    @Test public void leastRecentlyUsedResultsAreEvicted() throws Exception {
+        final ParseResultProcessor<ISpoofaxInputUnit, ISpoofaxParseUnit> processor = processor(1);
+        final FileObject a = resourceService.resolve("ram:///a.txt");
+        final FileObject b = resourceService.resolve("ram:///b.txt");
+
+        processor.update(a, unit(a));
+        final ISpoofaxParseUnit unitB = unit(b);
+        processor.update(b, unitB);
+
+        assertEquals(1, processor.statistics().evictions);
+        assertEquals(1, processor.statistics().size);
+        assertSame(unitB, processor.get(b));
+    }
+
+    @Test public void touchedResultIsNotEvicted() throws Exception {
+        final ParseResultProcessor<ISpoofaxInputUnit, ISpoofaxParseUnit> processor = processor(1);
+        final FileObject a = resourceService.resolve("ram:///a.txt");
+        final FileObject b = resourceService.resolve("ram:///b.txt");
+        final FileObject c = resourceService.resolve("ram:///c.txt");
+
+        processor.update(a, unit(a));
+        final Disposable subscription = processor.updates(a).subscribe();
+        final ISpoofaxParseUnit unitB = unit(b);
+        processor.update(b, unitB);
+        processor.release(b);
+        assertEquals(1, processor.statistics().size);
+
+        // Restoring the released parse result of b exceeds the maximum size. The parse result of a has a subscriber,
+        // and the parse result of b is being returned, so neither may be evicted.
+        assertSame(unitB, processor.get(b));
+        assertEquals(0, processor.statistics().evictions);
+        assertEquals(2, processor.statistics().size);
+
+        // Without subscribers, the cache shrinks back to its maximum size, keeping the parse result of c.
+        subscription.dispose();
+        final ISpoofaxParseUnit unitC = unit(c);
+        processor.update(c, unitC);
+        assertEquals(2, processor.statistics().evictions);
+        assertEquals(1, processor.statistics().size);
+        assertSame(unitC, processor.get(c));
+    }
+
+    @Test public void releasedResultIsRestored() throws Exception {
+        final ParseResultProcessor<ISpoofaxInputUnit, ISpoofaxParseUnit> processor = processor(2);
+        final FileObject a = resourceService.resolve("ram:///a.txt");
+
+        final ISpoofaxParseUnit unitA = unit(a);
+        processor.update(a, unitA);
+        processor.release(a);
+        assertEquals(0, processor.statistics().size);
+
+        // Strongly reachable from this test, so it cannot have been garbage collected.
+        assertSame(unitA, processor.get(a));
+        assertEquals(1, processor.statistics().size);
+    }
+
+    @Test public void unboundedCacheDoesNotRelease() throws Exception {
+        final ParseResultProcessor<ISpoofaxInputUnit, ISpoofaxParseUnit> processor = processor(0);
+        final FileObject a = resourceService.resolve("ram:///a.txt");
+
+        final ISpoofaxParseUnit unitA = unit(a);
+        processor.update(a, unitA);
+        processor.release(a);
+        assertEquals(1, processor.statistics().size);
+        assertSame(unitA, processor.get(a));
+    }
+
+
+    private ParseResultProcessor<ISpoofaxInputUnit, ISpoofaxParseUnit> processor(int maximumSize) {
+        return new ParseResultProcessor<>(metaborg.injector.getInstance(ISpoofaxSyntaxService.class),
+            new ParseResultCacheConfiguration(maximumSize));
+    }
+
+    private ISpoofaxParseUnit unit(FileObject resource) throws Exception {
+        final ISpoofaxUnitService unitService = metaborg.injector.getInstance(ISpoofaxUnitService.class);
+        final ITermFactory termFactory = metaborg.injector.getInstance(ITermFactory.class);
+        final ISpoofaxInputUnit input = unitService.inputUnit(resource, "text", language(), null);
+        final ParseContrib contrib =
+            new ParseContrib(true, true, false, termFactory.makeString("text"), Iterables2.empty(), -1);
+        return unitService.parseUnit(input, contrib);
+    }
+
+    private ILanguageImpl language() throws Exception {
+        if(language == null) {
+            final FileObject location = createDir("ram:///org.metaborg.lang.entity");
+            final ILanguageComponent component =
+                language(groupId, "org.metaborg.lang.entity", version(0, 0, 1), location, "Entity");
+            language = Iterables.get(component.contributesTo(), 0);
+        }
+        return language;
+    }
+}
@@ -0,0 +1,100 @@
+package org.metaborg.spoofax.core.test.stratego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.Test;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.spoofax.core.dynamicclassloading.DynamicClassLoadingFacet;
+import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
+import org.metaborg.spoofax.core.stratego.StrategoRuntimeFacet;
+import org.metaborg.spoofax.core.stratego.StrategoRuntimeLease;
+import org.metaborg.spoofax.core.test.SpoofaxTest;
+import org.spoofax.interpreter.library.ssl.SSLLibrary;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.strategoxt.HybridInterpreter;
+
+public class StrategoRuntimePoolTest extends SpoofaxTest {
+    @Test public void pooledRuntimeLeavesNoStateBehind() throws Exception {
+        final FileObject location = createDir("ram:///project");
+        final ILanguageComponent component = component(location);
+        final IStrategoRuntimeService runtimeService = metaborg.injector.getInstance(IStrategoRuntimeService.class);
+
+        final HybridInterpreter first;
+        final Object firstAgent;
+        try(StrategoRuntimeLease lease = runtimeService.leaseRuntime(component, location)) {
+            first = lease.runtime();
+            firstAgent = first.getIOAgent();
+            first.getContext().setContextObject("context");
+            first.getCompiledContext().setContextObject("context");
+            first.setCurrent(term("Current"));
+            ssl(first).getDynamicRuleTable().put(term("Rule"), term("Value"));
+            ssl(first).getTableTable().put(term("Table"), term("Value"));
+        }
+
+        try(StrategoRuntimeLease lease = runtimeService.leaseRuntime(component, location)) {
+            final HybridInterpreter second = lease.runtime();
+            assertSame(first, second);
+            assertEquals(1, runtimeService.poolStatistics().hits);
+            assertNull(second.getContext().getContextObject());
+            assertNull(second.getCompiledContext().getContextObject());
+            assertNull(second.current());
+            assertTrue(ssl(second).getDynamicRuleTable().isEmpty());
+            assertTrue(ssl(second).getTableTable().isEmpty());
+            assertNotSame(firstAgent, second.getIOAgent());
+        }
+    }
+
+    @Test public void pooledRuntimesDoNotShareStateWithEachOther() throws Exception {
+        final FileObject location = createDir("ram:///project");
+        final ILanguageComponent component = component(location);
+        final IStrategoRuntimeService runtimeService = metaborg.injector.getInstance(IStrategoRuntimeService.class);
+
+        try(StrategoRuntimeLease first = runtimeService.leaseRuntime(component, location);
+            StrategoRuntimeLease second = runtimeService.leaseRuntime(component, location)) {
+            assertNotSame(first.runtime(), second.runtime());
+            ssl(first.runtime()).getTableTable().put(term("Table"), term("Value"));
+            assertTrue(ssl(second.runtime()).getTableTable().isEmpty());
+        }
+    }
+
+    @Test public void discardedRuntimeIsNotPooled() throws Exception {
+        final FileObject location = createDir("ram:///project");
+        final ILanguageComponent component = component(location);
+        final IStrategoRuntimeService runtimeService = metaborg.injector.getInstance(IStrategoRuntimeService.class);
+
+        final HybridInterpreter first;
+        try(StrategoRuntimeLease lease = runtimeService.leaseRuntime(component, location)) {
+            first = lease.runtime();
+            lease.discard();
+        }
+
+        try(StrategoRuntimeLease lease = runtimeService.leaseRuntime(component, location)) {
+            assertNotSame(first, lease.runtime());
+            assertEquals(0, runtimeService.poolStatistics().hits);
+            assertEquals(2, runtimeService.poolStatistics().misses);
+        }
+    }
+
+
+    private ILanguageComponent component(FileObject location) {
+        return language(groupId, "org.metaborg.lang.entity", version(0, 0, 1), location, "Entity",
+            new StrategoRuntimeFacet(Collections.emptyList()), new DynamicClassLoadingFacet(Collections.emptyList()));
+    }
+
+    private SSLLibrary ssl(HybridInterpreter runtime) {
+        return (SSLLibrary) runtime.getCompiledContext().getOperatorRegistry(SSLLibrary.REGISTRY_NAME);
+    }
+
+    private IStrategoTerm term(String constructor) {
+        final ITermFactory termFactory = metaborg.injector.getInstance(ITermFactory.class);
+        return termFactory.makeAppl(termFactory.makeConstructor(constructor, 0));
+    }
+}
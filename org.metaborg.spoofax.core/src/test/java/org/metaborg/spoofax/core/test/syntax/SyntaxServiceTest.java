@@ -0,0 +1,120 @@
+package org.metaborg.spoofax.core.test.syntax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.Test;
+import org.metaborg.core.config.JSGLRVersion;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.syntax.ParseFacet;
+import org.metaborg.spoofax.core.syntax.ISpoofaxParser;
+import org.metaborg.spoofax.core.syntax.ImploderImplementation;
+import org.metaborg.spoofax.core.syntax.SpoofaxSyntaxService;
+import org.metaborg.spoofax.core.test.SpoofaxTest;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxUnitService;
+import org.metaborg.spoofax.core.unit.ParseContrib;
+import org.metaborg.util.iterators.Iterables2;
+import org.metaborg.util.task.ICancel;
+import org.metaborg.util.task.IProgress;
+import org.spoofax.interpreter.terms.ITermFactory;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+public class SyntaxServiceTest extends SpoofaxTest {
+    @Test public void parseAllGroupsInputsByParser() throws Exception {
+        final RecordingParser parserA = new RecordingParser(true);
+        final RecordingParser parserB = new RecordingParser(false);
+        final SpoofaxSyntaxService syntaxService =
+            new SpoofaxSyntaxService(ImmutableMap.<String, ISpoofaxParser>of("a", parserA, "b", parserB));
+        final ILanguageImpl langA = language("org.metaborg.lang.a", "a");
+        final ILanguageImpl langB = language("org.metaborg.lang.b", "b");
+
+        final List<ISpoofaxInputUnit> inputs = Lists.newArrayList(input("a1", langA), input("b1", langB),
+            input("a2", langA), input("b2", langB), input("a3", langA));
+        final List<ISpoofaxParseUnit> parseUnits = Lists.newArrayList(syntaxService.parseAll(inputs));
+
+        // Each parser is called once with all its inputs, in input order.
+        assertEquals(1, parserA.parseAllCalls);
+        assertEquals(Lists.newArrayList("a1", "a2", "a3"), parserA.parsed);
+        assertEquals(1, parserB.parseAllCalls);
+        assertEquals(Lists.newArrayList("b1", "b2"), parserB.parsed);
+
+        // Parse units are returned in the order of the inputs.
+        assertEquals(inputs.size(), parseUnits.size());
+        for(int i = 0; i < inputs.size(); ++i) {
+            assertSame(inputs.get(i), parseUnits.get(i).input());
+        }
+    }
+
+    @Test public void concurrentFromParser() throws Exception {
+        final SpoofaxSyntaxService syntaxService = new SpoofaxSyntaxService(
+            ImmutableMap.<String, ISpoofaxParser>of("a", new RecordingParser(true), "b", new RecordingParser(false)));
+        assertTrue(syntaxService.concurrent(language("org.metaborg.lang.a", "a")));
+        assertFalse(syntaxService.concurrent(language("org.metaborg.lang.b", "b")));
+    }
+
+
+    private ILanguageImpl language(String id, String parserType) throws Exception {
+        final FileObject location = createDir("ram:///" + id);
+        final ILanguageComponent component =
+            language(groupId, id, version(0, 0, 1), location, id, new ParseFacet(parserType));
+        return Iterables.get(component.contributesTo(), 0);
+    }
+
+    private ISpoofaxInputUnit input(String text, ILanguageImpl langImpl) {
+        return metaborg.injector.getInstance(ISpoofaxUnitService.class).inputUnit(text, langImpl, null);
+    }
+
+
+    private class RecordingParser implements ISpoofaxParser {
+        private final boolean concurrent;
+        private final List<String> parsed = Lists.newArrayList();
+        private int parseAllCalls = 0;
+
+
+        RecordingParser(boolean concurrent) {
+            this.concurrent = concurrent;
+        }
+
+
+        @Override public ISpoofaxParseUnit parse(ISpoofaxInputUnit input, IProgress progress, ICancel cancel) {
+            parsed.add(input.text());
+            final ITermFactory termFactory = metaborg.injector.getInstance(ITermFactory.class);
+            final ParseContrib contrib =
+                new ParseContrib(true, true, false, termFactory.makeString(input.text()), Iterables2.empty(), -1);
+            return metaborg.injector.getInstance(ISpoofaxUnitService.class).parseUnit(input, contrib);
+        }
+
+        @Override public ISpoofaxParseUnit parse(ISpoofaxInputUnit input, IProgress progress, ICancel cancel,
+            @Nullable JSGLRVersion overrideJSGLRVersion, @Nullable ImploderImplementation overrideImploder) {
+            return parse(input, progress, cancel);
+        }
+
+        @Override public Collection<ISpoofaxParseUnit> parseAll(Iterable<ISpoofaxInputUnit> inputs,
+            IProgress progress, ICancel cancel) {
+            ++parseAllCalls;
+            final Collection<ISpoofaxParseUnit> parseUnits = Lists.newArrayList();
+            for(ISpoofaxInputUnit input : inputs) {
+                parseUnits.add(parse(input, progress, cancel));
+            }
+            return parseUnits;
+        }
+
+        @Override public boolean concurrent() {
+            return concurrent;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.metaborg.spoofax.core.test.tracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+import org.metaborg.core.source.ISourceRegion;
+import org.metaborg.core.source.SourceRegion;
+import org.metaborg.spoofax.core.syntax.JSGLRSourceRegionFactory;
+import org.metaborg.spoofax.core.tracing.FragmentIndex;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.jsglr.client.imploder.IToken;
+import org.spoofax.jsglr.client.imploder.ImploderAttachment;
+import org.spoofax.terms.TermFactory;
+import org.spoofax.terms.util.TermUtils;
+import org.spoofax.terms.visitor.AStrategoTermVisitor;
+import org.spoofax.terms.visitor.StrategoTermVisitee;
+
+import com.google.common.collect.Lists;
+
+public class FragmentIndexTest {
+    private final ITermFactory termFactory = new TermFactory();
+    private int id = 0;
+
+
+    @Test public void inclusiveEnds() {
+        final IStrategoTerm inner = located(appl("Inner"), 3, 5);
+        final IStrategoTerm ast = located(appl("Outer", inner), 0, 9);
+        final FragmentIndex index = FragmentIndex.build(ast);
+
+        assertTerms(Lists.newArrayList(inner, ast), index.containing(new SourceRegion(5, 5)));
+        assertTerms(Lists.newArrayList(inner, ast), index.containing(new SourceRegion(3)));
+        assertTerms(Lists.newArrayList(ast), index.containing(new SourceRegion(6, 6)));
+        assertTerms(Lists.newArrayList(ast), index.containing(new SourceRegion(9, 9)));
+        assertTerms(Lists.newArrayList(), index.containing(new SourceRegion(9, 10)));
+
+        assertTerms(Lists.newArrayList(inner), index.within(new SourceRegion(3, 5)));
+        assertTerms(Lists.newArrayList(), index.within(new SourceRegion(3, 4)));
+        assertTerms(Lists.newArrayList(), index.within(new SourceRegion(4, 5)));
+        assertTerms(Lists.newArrayList(ast), index.within(new SourceRegion(0, 9)));
+    }
+
+    @Test public void nestedEqualRegions() {
+        final IStrategoTerm innermost = located(appl("C"), 0, 9);
+        final IStrategoTerm middle = located(appl("B", innermost), 0, 9);
+        final IStrategoTerm list = located(termFactory.makeList(middle), 0, 9);
+        final IStrategoTerm ast = located(appl("A", list), 0, 9);
+        final FragmentIndex index = FragmentIndex.build(ast);
+
+        // Innermost fragments first, including the singleton list.
+        assertTerms(Lists.newArrayList(innermost, middle, list, ast), index.containing(new SourceRegion(2, 3)));
+        // Only the outermost fragment, descendants with the same region are hidden by it.
+        assertTerms(Lists.newArrayList(ast), index.within(new SourceRegion(0, 9)));
+    }
+
+    @Test public void sameAsLinearScan() {
+        final Random random = new Random(42);
+        for(int tree = 0; tree < 20; ++tree) {
+            final int length = 10 + random.nextInt(60);
+            final IStrategoTerm ast = tree(random, 0, length - 1, 5);
+            final FragmentIndex index = FragmentIndex.build(ast);
+            for(int start = 0; start <= length; ++start) {
+                for(int end = start - 1; end <= length; ++end) {
+                    final ISourceRegion region = new SourceRegion(start, end);
+                    assertTerms(linearContaining(ast, region), index.containing(region));
+                    assertTerms(linearWithin(ast, region), index.within(region));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Generates a random AST that spans the region from start to end, inclusive, with gaps between children, children
+     * with the same region as their parent, singleton lists, and fragments without a region.
+     */
+    private IStrategoTerm tree(Random random, int start, int end, int depth) {
+        final List<IStrategoTerm> children = Lists.newArrayList();
+        if(depth > 0 && end > start) {
+            if(random.nextInt(4) == 0) {
+                children.add(tree(random, start, end, depth - 1));
+            } else {
+                int childStart = start;
+                while(childStart <= end) {
+                    childStart += random.nextInt(3);
+                    final int childEnd = Math.min(end, childStart + random.nextInt(end - start + 1));
+                    if(childStart <= childEnd) {
+                        children.add(tree(random, childStart, childEnd, depth - 1));
+                    }
+                    childStart = childEnd + 1;
+                }
+            }
+        }
+        IStrategoTerm term = appl("Node", children.toArray(new IStrategoTerm[0]));
+        if(random.nextInt(10) != 0) {
+            term = located(term, start, end);
+        }
+        if(random.nextInt(6) == 0) {
+            term = located(termFactory.makeList(term), start, end);
+        }
+        return term;
+    }
+
+    private List<IStrategoTerm> linearContaining(IStrategoTerm ast, ISourceRegion region) {
+        final List<IStrategoTerm> found = Lists.newArrayList();
+        StrategoTermVisitee.bottomup(new AStrategoTermVisitor() {
+            @Override public boolean visit(IStrategoTerm term) {
+                final @Nullable ISourceRegion termRegion = region(term);
+                if(termRegion != null && termRegion.contains(region)) {
+                    found.add(term);
+                    return false;
+                }
+                return true;
+            }
+        }, ast);
+        return found;
+    }
+
+    private List<IStrategoTerm> linearWithin(IStrategoTerm ast, ISourceRegion region) {
+        final List<IStrategoTerm> found = Lists.newArrayList();
+        StrategoTermVisitee.topdown(new AStrategoTermVisitor() {
+            @Override public boolean visit(IStrategoTerm term) {
+                if(TermUtils.isList(term, 1)) {
+                    return true;
+                }
+                final @Nullable ISourceRegion termRegion = region(term);
+                if(termRegion != null && region.contains(termRegion)) {
+                    found.add(term);
+                    return false;
+                }
+                return true;
+            }
+        }, ast);
+        return found;
+    }
+
+    private static @Nullable ISourceRegion region(IStrategoTerm term) {
+        final IToken left = ImploderAttachment.getLeftToken(term);
+        final IToken right = ImploderAttachment.getRightToken(term);
+        if(left == null || right == null) {
+            return null;
+        }
+        return JSGLRSourceRegionFactory.fromTokens(left, right);
+    }
+
+
+    private IStrategoTerm appl(String constructor, IStrategoTerm... subterms) {
+        // Unique integer subterm, such that no two fragments are equal.
+        final IStrategoTerm[] allSubterms = new IStrategoTerm[subterms.length + 1];
+        System.arraycopy(subterms, 0, allSubterms, 0, subterms.length);
+        allSubterms[subterms.length] = termFactory.makeInt(id++);
+        return termFactory.makeAppl(termFactory.makeConstructor(constructor, allSubterms.length), allSubterms);
+    }
+
+    private static IStrategoTerm located(IStrategoTerm term, int start, int end) {
+        term.putAttachment(ImploderAttachment.createCompactPositionAttachment("test", 0, start, start, end));
+        return term;
+    }
+
+    private static void assertTerms(List<IStrategoTerm> expected, Iterable<IStrategoTerm> actual) {
+        final List<IStrategoTerm> actualList = Lists.newArrayList(actual);
+        assertEquals(expected.size(), actualList.size());
+        for(int i = 0; i < expected.size(); ++i) {
+            assertSame(expected.get(i), actualList.get(i));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 plugins {
   id("org.metaborg.gradle.config.java-library")
+  id("org.metaborg.gradle.config.junit-testing")
 }
 
 dependencies {
@@ -30,4 +31,7 @@ dependencies {
   api("ant-contrib:ant-contrib:1.0b3")
 
   compileOnly("com.google.code.findbugs:jsr305")
+
+  testCompileOnly("junit:junit")
+  testRuntimeOnly("org.junit.vintage:junit-vintage-engine:5.1.0")
 }
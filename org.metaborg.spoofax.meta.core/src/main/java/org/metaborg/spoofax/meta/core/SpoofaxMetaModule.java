@@ -10,6 +10,7 @@ import org.metaborg.spoofax.meta.core.ant.AntRunnerService;
 import org.metaborg.spoofax.meta.core.ant.IAntRunnerService;
 import org.metaborg.spoofax.meta.core.build.AntBuildStep;
 import org.metaborg.spoofax.meta.core.build.IBuildStep;
+import org.metaborg.spoofax.meta.core.build.LanguageSpecBuildConfiguration;
 import org.metaborg.spoofax.meta.core.build.LanguageSpecBuilder;
 import org.metaborg.spoofax.meta.core.build.StrategoBuildStep;
 import org.metaborg.spoofax.meta.core.config.ISpoofaxLanguageSpecConfigBuilder;
@@ -36,6 +37,7 @@ public class SpoofaxMetaModule extends MetaborgMetaModule {
     @Override protected void configure() {
         super.configure();
 
+        bind(LanguageSpecBuildConfiguration.class).toInstance(new LanguageSpecBuildConfiguration());
         bind(LanguageSpecBuilder.class).in(Singleton.class);
         autoClosableBinder.addBinding().to(LanguageSpecBuilder.class);
 
@@ -0,0 +1,22 @@
+package org.metaborg.spoofax.meta.core.build;
+
+/**
+ * Configuration of {@link LanguageSpecBuilder}.
+ */
+public class LanguageSpecBuildConfiguration {
+    /**
+     * Whether the completions parse table is generated in the background while the main parse table and parenthesizer
+     * are built. Both parse tables keep their own pluto unit, which reads its grammar and records its dependencies on
+     * the build thread. Disabled by default.
+     */
+    public final boolean parallelTableGeneration;
+
+
+    public LanguageSpecBuildConfiguration() {
+        this(false);
+    }
+
+    public LanguageSpecBuildConfiguration(boolean parallelTableGeneration) {
+        this.parallelTableGeneration = parallelTableGeneration;
+    }
+}
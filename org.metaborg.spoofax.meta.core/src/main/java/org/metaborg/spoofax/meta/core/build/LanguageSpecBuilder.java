@@ -45,6 +45,7 @@ import org.metaborg.spoofax.meta.core.pluto.build.main.ArchiveBuilder;
 import org.metaborg.spoofax.meta.core.pluto.build.main.GenerateSourcesBuilder;
 import org.metaborg.spoofax.meta.core.pluto.build.main.PackageBuilder;
 import org.metaborg.spoofax.meta.core.pluto.build.main.PackageBuilder.Input;
+import org.metaborg.spoofax.meta.core.pluto.stamp.StampCache;
 import org.metaborg.spoofax.meta.core.project.ISpoofaxLanguageSpec;
 import org.metaborg.util.cmd.Arguments;
 import org.metaborg.util.file.FileUtils;
@@ -76,13 +77,14 @@ public class LanguageSpecBuilder implements AutoCloseable {
     private final Set<IBuildStep> buildSteps;
     private final ILanguageComponentConfigBuilder componentConfigBuilder;
     private final ILanguageComponentConfigWriter componentConfigWriter;
+    private final LanguageSpecBuildConfiguration buildConfig;
 
 
     @Inject public LanguageSpecBuilder(Injector injector, IResourceService resourceService,
         ISourceTextService sourceTextService, ILanguageIdentifierService languageIdentifierService,
         IDependencyService dependencyService, ILanguagePathService languagePathService, ISpoofaxProcessorRunner runner,
         Set<IBuildStep> buildSteps, ILanguageComponentConfigBuilder componentConfigBuilder,
-        ILanguageComponentConfigWriter componentConfigWriter) {
+        ILanguageComponentConfigWriter componentConfigWriter, LanguageSpecBuildConfiguration buildConfig) {
         this.injector = injector;
         this.resourceService = resourceService;
         this.sourceTextService = sourceTextService;
@@ -93,6 +95,7 @@ public class LanguageSpecBuilder implements AutoCloseable {
         this.componentConfigBuilder = componentConfigBuilder;
         this.componentConfigWriter = componentConfigWriter;
         this.buildSteps = buildSteps;
+        this.buildConfig = buildConfig;
     }
 
     @Override public void close() {
@@ -293,6 +296,7 @@ public class LanguageSpecBuilder implements AutoCloseable {
         }
 
         GenerateSourcesBuilder.clean();
+        StampCache.cleanCache();
 
         for(IBuildStep buildStep : buildSteps) {
             buildStep.execute(LanguageSpecBuildPhase.clean, input);
@@ -316,6 +320,7 @@ public class LanguageSpecBuilder implements AutoCloseable {
     private void deinitPluto() {
         SpoofaxContext.deinit();
         PersistableEntity.cleanCache(); // Clean Pluto's in-memory cache.
+        StampCache.cleanCache();
         jetbrains.exodus.log.Log.invalidateSharedCache(); // Clear Xodus' shared cache.
         ThreadJobProcessorPool.getProcessors().forEach(JobProcessor::finish); // Stop Xodus' job processor threads.
     }
@@ -506,7 +511,7 @@ public class LanguageSpecBuilder implements AutoCloseable {
             sdfExternalDef, packSdfIncludePaths, packSdfArgs, sdfCompletionModule, sdfCompletionFile, sdfMetaModules,
             sdfMetaFiles, strFile, strStratPkg, strJavaStratPkg, strJavaStratFile, strFormat, strExternalJar,
             strExternalJarFlags, strjIncludeDirs, strjIncludeFiles, strjArgs, languageSpec.config().strBuildSetting(),
-            languageSpec.config().strGradualSetting());
+            languageSpec.config().strGradualSetting(), buildConfig.parallelTableGeneration);
 
     }
 
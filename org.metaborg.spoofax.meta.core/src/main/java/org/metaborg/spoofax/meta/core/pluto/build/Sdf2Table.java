@@ -3,6 +3,11 @@ package org.metaborg.spoofax.meta.core.pluto.build;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -31,6 +36,8 @@ import org.metaborg.util.resource.ResourceUtils;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import build.pluto.BuildUnit.State;
 import build.pluto.builder.BuildRequest;
@@ -39,7 +46,7 @@ import build.pluto.output.OutputPersisted;
 
 public class Sdf2Table extends SpoofaxBuilder<Sdf2Table.Input, OutputPersisted<File>> {
     public static class Input extends SpoofaxInput {
-        private static final long serialVersionUID = -2379365089609792204L;
+        private static final long serialVersionUID = -2379365089609792205L;
 
         public final File inputMainNormSdfFile;
         public final Collection<LanguageIdentifier> sourceDeps;
@@ -47,8 +54,20 @@ public class Sdf2Table extends SpoofaxBuilder<Sdf2Table.Input, OutputPersisted<F
         public final File outputPersistedParseTableFile;
         public final ParseTableConfiguration tableConfig;
         public final boolean isCompletions;
+        /**
+         * Parse table to start generating in the background when this parse table is built, or null if none. The
+         * background generation is picked up when the unit of that parse table is built, and discarded otherwise.
+         */
+        public final @Nullable Input parallelInput;
 
         public Input(SpoofaxContext context, File inputMainNormSdfFile, Collection<LanguageIdentifier> sourceDeps, File outputParseTableFile, File outputPersistedParseTableFile, ParseTableConfiguration tableConfig, boolean isCompletions) {
+            this(context, inputMainNormSdfFile, sourceDeps, outputParseTableFile, outputPersistedParseTableFile,
+                tableConfig, isCompletions, null);
+        }
+
+        public Input(SpoofaxContext context, File inputMainNormSdfFile, Collection<LanguageIdentifier> sourceDeps,
+            File outputParseTableFile, File outputPersistedParseTableFile, ParseTableConfiguration tableConfig,
+            boolean isCompletions, @Nullable Input parallelInput) {
             super(context);
             this.inputMainNormSdfFile = inputMainNormSdfFile;
             this.sourceDeps = sourceDeps;
@@ -56,12 +75,18 @@ public class Sdf2Table extends SpoofaxBuilder<Sdf2Table.Input, OutputPersisted<F
             this.outputPersistedParseTableFile = outputPersistedParseTableFile;
             this.tableConfig = tableConfig;
             this.isCompletions = isCompletions;
+            this.parallelInput = parallelInput;
         }
     }
 
     public static SpoofaxBuilderFactory<Input, OutputPersisted<File>, Sdf2Table> factory =
         SpoofaxBuilderFactoryFactory.of(Sdf2Table.class, Input.class);
 
+    private static final ExecutorService executor = Executors
+        .newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("sdf2table-%d").setDaemon(true).build());
+    // Parse tables that are being generated in the background, by their output file.
+    private static final ConcurrentMap<File, Future<ParseTable>> startedGenerations = Maps.newConcurrentMap();
+
     public Sdf2Table(Input input) {
         super(input);
     }
@@ -77,7 +102,8 @@ public class Sdf2Table extends SpoofaxBuilder<Sdf2Table.Input, OutputPersisted<F
     }
 
     @Override protected String description(Input input) {
-        return "Compile normalized grammar to parse table using the Java implementation" + (input.isCompletions ? " (completions)" : "");
+        return "Compile normalized grammar to parse table using the Java implementation" + (input.isCompletions ? " (completions)" : "")
+            + (input.parallelInput != null ? " (starting " + input.parallelInput.outputParseTableFile.getName() + ")" : "");
     }
 
     @Override public File persistentPath(Input input) {
@@ -85,22 +111,33 @@ public class Sdf2Table extends SpoofaxBuilder<Sdf2Table.Input, OutputPersisted<F
     }
 
     @Override public OutputPersisted<File> build(Input input) throws Exception {
-        List<String> paths = srcGenNormalizedSdf3Paths(input.sourceDeps);
-        
-        NormGrammarReader normGrammarReader = new NormGrammarReader(paths);
-        
-        normGrammarReader.accept(this::require);
-        
-        NormGrammar normGrammar = normGrammarReader.readGrammar(input.inputMainNormSdfFile);
-        
-        ParseTable parseTable = new ParseTable(normGrammar, input.tableConfig);
-        
+        final @Nullable Input parallelInput = input.parallelInput;
+        if(parallelInput != null) {
+            startGeneration(parallelInput, srcGenNormalizedSdf3Paths(parallelInput.sourceDeps));
+        }
+
+        // Grammars are read on the build thread, since reading them records pluto dependencies.
+        final NormGrammar normGrammar = readGrammar(input);
+
+        final @Nullable Future<ParseTable> started = startedGenerations.remove(input.outputParseTableFile);
+        final ParseTable parseTable;
+        if(started != null) {
+            try {
+                parseTable = started.get();
+            } catch(ExecutionException e) {
+                final Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        } else {
+            parseTable = new ParseTable(normGrammar, input.tableConfig);
+        }
+
         IStrategoTerm parseTableATerm = ParseTableIO.generateATerm(parseTable);
         
         ParseTableIO.outputToFile(parseTableATerm, input.outputParseTableFile);
         
         ParseTableIO.persistObjectToFile(parseTable, input.outputPersistedParseTableFile);
-        
+
         provide(input.outputParseTableFile);
         provide(input.outputPersistedParseTableFile);
 
@@ -108,6 +145,41 @@ public class Sdf2Table extends SpoofaxBuilder<Sdf2Table.Input, OutputPersisted<F
         
         return OutputPersisted.of(input.outputPersistedParseTableFile);
     }
+
+    /**
+     * Discards the parse table that was started in the background for given input, if it was not picked up by a build
+     * of given input. This happens when the unit of given input was consistent, while the unit that started the
+     * generation was not.
+     */
+    public static void discardStartedGeneration(Input input) {
+        final @Nullable Future<ParseTable> started = startedGenerations.remove(input.outputParseTableFile);
+        if(started != null) {
+            started.cancel(true);
+        }
+    }
+
+    /**
+     * Starts generating the parse table of given input in the background, such that a later build of the unit of given
+     * input picks it up instead of generating it. The grammar is read without recording dependencies, since pluto is
+     * not thread-safe. The unit of given input reads the grammar again to record its dependencies.
+     */
+    private static void startGeneration(Input input, List<String> paths) {
+        discardStartedGeneration(input);
+        startedGenerations.put(input.outputParseTableFile, executor.submit(() -> {
+            final NormGrammar normGrammar = new NormGrammarReader(paths).readGrammar(input.inputMainNormSdfFile);
+            return new ParseTable(normGrammar, input.tableConfig);
+        }));
+    }
+
+    private NormGrammar readGrammar(Input input) throws Exception {
+        List<String> paths = srcGenNormalizedSdf3Paths(input.sourceDeps);
+        
+        NormGrammarReader normGrammarReader = new NormGrammarReader(paths);
+        
+        normGrammarReader.accept(this::require);
+        
+        return normGrammarReader.readGrammar(input.inputMainNormSdfFile);
+    }
     
     private List<String> srcGenNormalizedSdf3Paths(Collection<LanguageIdentifier> sourceDeps) {
         File srcGenSyntaxDir = toFile(paths.syntaxSrcGenDir());
@@ -18,9 +18,9 @@ import org.metaborg.spoofax.meta.core.pluto.SpoofaxContext;
 import org.metaborg.spoofax.meta.core.pluto.SpoofaxInput;
 import org.metaborg.spoofax.meta.core.pluto.build.main.PackageBuilder.Output;
 import org.metaborg.spoofax.meta.core.pluto.stamp.DirectoryModifiedStamper;
+import org.metaborg.spoofax.meta.core.pluto.util.IncrementalZipArchiver;
 import org.metaborg.util.resource.FileSelectorUtils;
 import org.metaborg.util.resource.ResourceUtils;
-import org.metaborg.util.resource.ZipArchiver;
 
 import com.google.common.collect.Iterables;
 
@@ -83,7 +83,7 @@ public class ArchiveBuilder extends SpoofaxBuilder<ArchiveBuilder.Input, OutputT
         final Output packageBuilderOutput = requireBuild(input.packageBuildRequest);
         requireBuild(packageBuilderOutput.jarBuilderOrigin);
 
-        final ZipArchiver zipArchiver = new ZipArchiver();
+        final IncrementalZipArchiver zipArchiver = new IncrementalZipArchiver(context.depPath("archive.manifest"));
         final FileObject root = paths.root();
 
         require(toFile(paths.iconsDir()), new DirectoryModifiedStamper());
@@ -138,9 +138,10 @@ public class ArchiveBuilder extends SpoofaxBuilder<ArchiveBuilder.Input, OutputT
             });
         }
 
-        final FileObject spxArchiveFile = paths.spxArchiveFile(input.languageIdentifier.toFileString());
+        final File spxArchiveFile = toFile(paths.spxArchiveFile(input.languageIdentifier.toFileString()));
         zipArchiver.build(spxArchiveFile, this);
+        provide(spxArchiveFile);
 
-        return OutputTransient.of(toFile(spxArchiveFile));
+        return OutputTransient.of(spxArchiveFile);
     }
 }
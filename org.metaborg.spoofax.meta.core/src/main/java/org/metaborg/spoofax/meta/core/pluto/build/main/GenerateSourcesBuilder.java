@@ -2,11 +2,8 @@ package org.metaborg.spoofax.meta.core.pluto.build.main;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -106,6 +103,8 @@ public class GenerateSourcesBuilder extends SpoofaxBuilder<GenerateSourcesBuilde
         public final StrategoBuildSetting strBuildSetting;
         public final StrategoGradualSetting strGradualSetting;
 
+        public final boolean parallelTableGeneration;
+
 
         public Input(SpoofaxContext context, String languageId, Collection<LanguageIdentifier> sourceDeps,
             @Nullable Boolean sdfEnabled, @Nullable String sdfModule, @Nullable File sdfFile, JSGLRVersion jsglrVersion,
@@ -116,7 +115,8 @@ public class GenerateSourcesBuilder extends SpoofaxBuilder<GenerateSourcesBuilde
             @Nullable String strJavaPackage, @Nullable String strJavaStratPackage, @Nullable File strJavaStratFile,
             StrategoFormat strFormat, @Nullable File strExternalJar, @Nullable String strExternalJarFlags,
             List<File> strjIncludeDirs, List<File> strjIncludeFiles, Arguments strjArgs,
-            StrategoBuildSetting strBuildSetting, StrategoGradualSetting strGradualSetting) {
+            StrategoBuildSetting strBuildSetting, StrategoGradualSetting strGradualSetting,
+            boolean parallelTableGeneration) {
             super(context);
             this.languageId = languageId;
             this.sdfEnabled = sdfEnabled;
@@ -147,6 +147,7 @@ public class GenerateSourcesBuilder extends SpoofaxBuilder<GenerateSourcesBuilde
             this.strjArgs = strjArgs;
             this.strBuildSetting = strBuildSetting;
             this.strGradualSetting = strGradualSetting;
+            this.parallelTableGeneration = parallelTableGeneration;
         }
     }
 
@@ -219,36 +220,50 @@ public class GenerateSourcesBuilder extends SpoofaxBuilder<GenerateSourcesBuilde
         final File srcNormDir = toFile(paths.syntaxNormDir());
         final File sdfNormFile = FileUtils.getFile(srcNormDir, input.sdfModule + "-norm.aterm");
 
-        final BuildRequest<?, OutputPersisted<File>, ?, ?> parseTableGeneration =
-            newParseTableGeneration(input, sdfNormFile, "sdf.tbl", "table.bin", false);
+        final boolean completions = input.sdfCompletionFile != null && input.sdfEnabled;
+        final boolean parallel = completions && input.parallelTableGeneration;
 
-        sdfOriginBuilder.add(parseTableGeneration);
-        requireBuild(parseTableGeneration);
+        // In parallel mode, building the main parse table starts generating the completions parse table in the
+        // background, which the separate completions parse table unit picks up. Both modes use the same units.
+        final @Nullable Sdf2Table.Input completionsInput = completions ? newParseTableGenerationInput(input,
+            input.sdfCompletionFile, "sdf-completions.tbl", "table-completions.bin", true, null) : null;
+        try {
+            final BuildRequest<?, OutputPersisted<File>, ?, ?> parseTableGeneration = Sdf2Table.request(
+                newParseTableGenerationInput(input, sdfNormFile, "sdf.tbl", "table.bin", false,
+                    parallel ? completionsInput : null));
 
-        // Generate parenthesizer
-        final File srcGenPpDir = toFile(paths.syntaxSrcGenPpDir());
-        final File parenthesizerOutputFile = FileUtils.getFile(srcGenPpDir, input.sdfModule + "-parenthesize.str");
+            sdfOriginBuilder.add(parseTableGeneration);
+            requireBuild(parseTableGeneration);
 
-        Sdf2Parenthesize.Input parenthesizeInput =
-            new Sdf2Parenthesize.Input(context, parseTableGeneration, input.sdfModule, parenthesizerOutputFile);
-        final BuildRequest<?, ?, ?, ?> parenthesize = Sdf2Parenthesize.request(parenthesizeInput);
+            // Generate parenthesizer
+            final File srcGenPpDir = toFile(paths.syntaxSrcGenPpDir());
+            final File parenthesizerOutputFile =
+                FileUtils.getFile(srcGenPpDir, input.sdfModule + "-parenthesize.str");
 
-        sdfOriginBuilder.add(parenthesize);
-        requireBuild(parenthesize);
+            Sdf2Parenthesize.Input parenthesizeInput =
+                new Sdf2Parenthesize.Input(context, parseTableGeneration, input.sdfModule, parenthesizerOutputFile);
+            final BuildRequest<?, ?, ?, ?> parenthesize = Sdf2Parenthesize.request(parenthesizeInput);
 
-        // Parser generation for completions
-        if(input.sdfCompletionFile != null && input.sdfEnabled) {
-            final BuildRequest<?, ?, ?, ?> parseTableGenerationCompletions = newParseTableGeneration(input,
-                input.sdfCompletionFile, "sdf-completions.tbl", "table-completions.bin", true);
+            sdfOriginBuilder.add(parenthesize);
+            requireBuild(parenthesize);
+
+            // Parser generation for completions
+            if(completionsInput != null) {
+                final BuildRequest<?, ?, ?, ?> parseTableGenerationCompletions = Sdf2Table.request(completionsInput);
 
-            sdfOriginBuilder.add(parseTableGenerationCompletions);
-            requireBuild(parseTableGenerationCompletions);
+                sdfOriginBuilder.add(parseTableGenerationCompletions);
+                requireBuild(parseTableGenerationCompletions);
+            }
+        } finally {
+            if(parallel) {
+                Sdf2Table.discardStartedGeneration(completionsInput);
+            }
         }
     }
 
-    private BuildRequest<?, OutputPersisted<File>, ?, ?> newParseTableGeneration(GenerateSourcesBuilder.Input input,
-        File sdfNormFile, String tableFilename, String persistedTableFilename, boolean isCompletions)
-        throws IOException {
+    private Sdf2Table.Input newParseTableGenerationInput(GenerateSourcesBuilder.Input input, File sdfNormFile,
+        String tableFilename, String persistedTableFilename, boolean isCompletions,
+        @Nullable Sdf2Table.Input parallelInput) throws IOException {
         final File targetMetaborgDir = toFile(paths.targetMetaborgDir());
         final File tableFile = FileUtils.getFile(targetMetaborgDir, tableFilename);
         final File persistedTableFile = FileUtils.getFile(targetMetaborgDir, persistedTableFilename);
@@ -262,10 +277,8 @@ public class GenerateSourcesBuilder extends SpoofaxBuilder<GenerateSourcesBuilde
         ParseTableConfiguration config = new ParseTableConfiguration(dynamicGeneration, dataDependent, !layoutSensitive,
             checkOverlap, checkPriorities, layoutSensitive);
 
-        Sdf2Table.Input sdf2TableInput = new Sdf2Table.Input(context, sdfNormFile, input.sourceDeps, tableFile,
-            persistedTableFile, config, isCompletions);
-
-        return Sdf2Table.request(sdf2TableInput);
+        return new Sdf2Table.Input(context, sdfNormFile, input.sourceDeps, tableFile, persistedTableFile, config,
+            isCompletions, parallelInput);
     }
 
 
@@ -509,14 +522,28 @@ public class GenerateSourcesBuilder extends SpoofaxBuilder<GenerateSourcesBuilde
                 assert projectLocation != null;
 
                 /*
-                 * Make sure Pluto also understands which files Pie will require.
+                 * Only report files that changed since the last successful build to Pie, but make sure Pluto also
+                 * understands which files Pie will require. Include directories outside of the project are walked as
+                 * well, since Pie reads Stratego files from them.
                  */
-                final Set<Path> changedFiles = getChangedFiles(projectLocation);
+                final Path projectPath = projectLocation.toPath().toAbsolutePath().normalize();
+                final List<File> manifestLocations = Lists.newArrayList(projectLocation);
+                for(File includeDir : input.strjIncludeDirs) {
+                    if(!includeDir.toPath().toAbsolutePath().normalize().startsWith(projectPath)) {
+                        manifestLocations.add(includeDir);
+                    }
+                }
+                final StrategoFileManifest manifest =
+                    StrategoFileManifest.load(FileUtils.getFile(cacheDir, "stratego-files.manifest"));
+                final Set<Path> changedFiles = manifest.changedFiles(manifestLocations);
+                for(Path file : manifest.files()) {
+                    require(file.toFile(), FileHashStamper.instance);
+                }
                 final Set<ResourceKey> changedResources = new HashSet<>(changedFiles.size() * 2);
                 for(Path changedFile : changedFiles) {
-                    require(changedFile.toFile(), FileHashStamper.instance);
                     changedResources.add(new FSPath(changedFile));
                 }
+                logger.debug("{} Stratego files changed since the last build", changedFiles.size());
 
                 final Arguments newArgs = new Arguments();
                 final List<ResourcePath> strjIncludeDirs = input.strjIncludeDirs.stream().map(FSPath::new).collect(Collectors.toList());
@@ -539,6 +566,7 @@ public class GenerateSourcesBuilder extends SpoofaxBuilder<GenerateSourcesBuilde
                         }
                         return false;
                     });
+                    manifest.commit();
                 } catch(ExecException e) {
                     throw new MetaborgException("Incremental Stratego build failed: " + e.getMessage(), e);
                 } catch(InterruptedException e) {
@@ -556,20 +584,6 @@ public class GenerateSourcesBuilder extends SpoofaxBuilder<GenerateSourcesBuilde
         }
     }
 
-    public static Set<Path> getChangedFiles(File projectLocation) throws IOException {
-        final Set<Path> result = new HashSet<>();
-        Files.walkFileTree(projectLocation.toPath(), new SimpleFileVisitor<Path>() {
-            @Override public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-                String pathString = path.toString().toLowerCase();
-                if(pathString.endsWith(".str") || pathString.endsWith(".rtree") || pathString.endsWith(".ctree")) {
-                    result.add(path);
-                }
-                return FileVisitResult.CONTINUE;
-            }
-        });
-        return result;
-    }
-
     /**
      * Copy oldArgs to newArgs, except for built-in libraries, which are split off and their names returned.
      */
@@ -0,0 +1,212 @@
+package org.metaborg.spoofax.meta.core.pluto.build.main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Manifest of the Stratego files (.str, .rtree, and .ctree) in a project. It records the modification time,
+ * size, and content hash of each file, such that only files that really changed since the last committed build are
+ * reported to PIE. Files whose modification time changed but whose content did not, for example because they were
+ * copied again, are not reported.
+ *
+ * Changes are only persisted with {@link #commit()}, which should be called after PIE has successfully processed the
+ * changed files. A missing or unreadable manifest reports all files as changed. An {@link #inMemory()} manifest is
+ * not persisted, and reports all files as changed the first time.
+ */
+public class StrategoFileManifest {
+    private static final ILogger logger = LoggerUtils.logger(StrategoFileManifest.class);
+    private static final int formatVersion = 1;
+
+    private final @Nullable File file;
+    private final Map<Path, Entry> committed;
+    private @Nullable Map<Path, Entry> current;
+
+
+    private StrategoFileManifest(@Nullable File file, Map<Path, Entry> committed) {
+        this.file = file;
+        this.committed = committed;
+    }
+
+    /**
+     * Creates an empty manifest that is only kept in memory.
+     */
+    public static StrategoFileManifest inMemory() {
+        return new StrategoFileManifest(null, new HashMap<>());
+    }
+
+    /**
+     * Loads the manifest stored in given file, or creates an empty manifest if the file does not exist or cannot be
+     * read.
+     */
+    public static StrategoFileManifest load(File file) {
+        final Map<Path, Entry> entries = new HashMap<>();
+        if(file.exists()) {
+            try(final DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+                if(in.readInt() == formatVersion) {
+                    final int count = in.readInt();
+                    for(int i = 0; i < count; ++i) {
+                        final Path path = Paths.get(in.readUTF());
+                        entries.put(path, new Entry(in.readLong(), in.readLong(), in.readLong()));
+                    }
+                } else {
+                    logger.debug("Ignoring Stratego file manifest {} with an unsupported format", file);
+                }
+            } catch(IOException e) {
+                logger.warn("Reading Stratego file manifest {} failed, reporting all files as changed", e, file);
+                entries.clear();
+            }
+        }
+        return new StrategoFileManifest(file, entries);
+    }
+
+
+    /**
+     * Walks given project location for Stratego files, and compares them against the committed manifest.
+     *
+     * @return Files that were added, changed, or removed since the last commit.
+     */
+    public Set<Path> changedFiles(File projectLocation) throws IOException {
+        return changedFiles(Collections.singletonList(projectLocation));
+    }
+
+    /**
+     * Walks given locations for Stratego files, and compares them against the committed manifest. Pass the project
+     * location together with all include roots outside of the project, since changes to files in locations that are
+     * not walked are not detected.
+     *
+     * @return Files that were added, changed, or removed since the last commit.
+     */
+    public Set<Path> changedFiles(Collection<File> locations) throws IOException {
+        final Set<Path> files = new HashSet<>();
+        for(File location : locations) {
+            if(location.isDirectory()) {
+                files.addAll(strategoFiles(location));
+            }
+        }
+        final Map<Path, Entry> current = new HashMap<>();
+        final Set<Path> changed = new HashSet<>();
+        for(Path path : files) {
+            final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            final long lastModified = attrs.lastModifiedTime().toMillis();
+            final long size = attrs.size();
+            final @Nullable Entry previous = committed.get(path);
+            if(previous != null && previous.lastModified == lastModified && previous.size == size) {
+                current.put(path, previous);
+                continue;
+            }
+            final long hash = Hashing.murmur3_128().hashBytes(Files.readAllBytes(path)).asLong();
+            current.put(path, new Entry(lastModified, size, hash));
+            if(previous == null || previous.size != size || previous.hash != hash) {
+                changed.add(path);
+            }
+        }
+        for(Path path : committed.keySet()) {
+            if(!current.containsKey(path)) {
+                changed.add(path);
+            }
+        }
+        this.current = current;
+        return changed;
+    }
+
+    /**
+     * @return All Stratego files found by the last call to {@link #changedFiles(Collection)}.
+     */
+    public Set<Path> files() {
+        return current != null ? Collections.unmodifiableSet(current.keySet()) : Collections.emptySet();
+    }
+
+    /**
+     * Persists the state found by the last call to {@link #changedFiles(Collection)}.
+     */
+    public void commit() throws IOException {
+        if(current == null) {
+            return;
+        }
+        if(file != null) {
+            write(file, current);
+        }
+        committed.clear();
+        committed.putAll(current);
+    }
+
+    private static void write(File file, Map<Path, Entry> entries) throws IOException {
+        Files.createDirectories(file.toPath().getParent());
+        try(final DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.writeInt(formatVersion);
+            out.writeInt(entries.size());
+            for(Map.Entry<Path, Entry> pair : entries.entrySet()) {
+                final Entry entry = pair.getValue();
+                out.writeUTF(pair.getKey().toString());
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.size);
+                out.writeLong(entry.hash);
+            }
+        }
+    }
+
+
+    /**
+     * @return All Stratego files in given project location, skipping hidden directories such as version control
+     *         metadata.
+     */
+    public static Set<Path> strategoFiles(File projectLocation) throws IOException {
+        final Path root = projectLocation.toPath();
+        final Set<Path> result = new HashSet<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if(!dir.equals(root) && dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                final String pathString = path.toString().toLowerCase();
+                if(pathString.endsWith(".str") || pathString.endsWith(".rtree") || pathString.endsWith(".ctree")) {
+                    result.add(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+
+    private static class Entry {
+        final long lastModified;
+        final long size;
+        final long hash;
+
+        Entry(long lastModified, long size, long hash) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.metaborg.spoofax.meta.core.pluto.stamp;
 import java.io.File;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Objects;
 
 import javax.annotation.Nullable;
 
@@ -10,6 +11,8 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FalseFileFilter;
 import org.apache.commons.io.filefilter.IOFileFilter;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 
 import build.pluto.stamp.Stamp;
@@ -19,6 +22,10 @@ import build.pluto.stamp.ValueStamp;
 public class DirectoryModifiedStamper implements Stamper {
     private static final long serialVersionUID = 6052649976972107130L;
 
+    // Stamps of files in filtered directories, which are reused while the modification time and size of a file do not
+    // change, to avoid re-stamping unchanged files on every consistency check.
+    private static final Cache<FileStampKey, Stamp> fileStamps = CacheBuilder.newBuilder().maximumSize(16384).build();
+
     private final @Nullable IOFileFilter filter;
     private final @Nullable Stamper fileStamper;
 
@@ -42,11 +49,50 @@ public class DirectoryModifiedStamper implements Stamper {
             final Map<File, Stamp> stamps = Maps.newHashMap();
             final Collection<File> files = FileUtils.listFiles(directory, filter, FalseFileFilter.INSTANCE);
             for(File file : files) {
-                stamps.put(file, fileStamper.stampOf(file));
+                stamps.put(file, fileStampOf(file));
             }
             return new ValueStamp<>(this, stamps);
         } else {
             return new ValueStamp<>(this, directory.lastModified());
         }
     }
+
+    private Stamp fileStampOf(File file) {
+        final FileStampKey key = new FileStampKey(fileStamper, file, file.lastModified(), file.length());
+        @Nullable Stamp stamp = fileStamps.getIfPresent(key);
+        if(stamp == null) {
+            stamp = fileStamper.stampOf(file);
+            fileStamps.put(key, stamp);
+        }
+        return stamp;
+    }
+
+
+    private static class FileStampKey {
+        private final Stamper stamper;
+        private final File file;
+        private final long lastModified;
+        private final long length;
+
+        private FileStampKey(Stamper stamper, File file, long lastModified, long length) {
+            this.stamper = stamper;
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        @Override public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(o == null || getClass() != o.getClass())
+                return false;
+            final FileStampKey other = (FileStampKey) o;
+            return lastModified == other.lastModified && length == other.length && stamper.equals(other.stamper)
+                && file.equals(other.file);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(stamper, file, lastModified, length);
+        }
+    }
 }
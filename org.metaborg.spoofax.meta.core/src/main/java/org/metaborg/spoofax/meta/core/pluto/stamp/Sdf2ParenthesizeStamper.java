@@ -2,11 +2,14 @@ package org.metaborg.spoofax.meta.core.pluto.stamp;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import org.metaborg.core.syntax.ParseException;
 import org.metaborg.spoofax.meta.core.pluto.SpoofaxContext;
 import org.spoofax.interpreter.terms.IStrategoAppl;
@@ -38,19 +41,28 @@ public class Sdf2ParenthesizeStamper implements Stamper {
             return new ValueStamp<>(this, null);
         }
 
+        final @Nullable Serializable value =
+            StampCache.of(context.depPath("stamps")).get("sdf2parenthesize", file, this::extract);
+        if(value == null) {
+            return LastModifiedStamper.instance.stampOf(file);
+        }
+        return new ValueStamp<>(this, value);
+    }
+
+    private @Nullable Serializable extract(File file) {
         final IStrategoTerm term;
         try {
             term = context.parse(file);
         } catch(ParseException | IOException e) {
-            return LastModifiedStamper.instance.stampOf(file);
+            return null;
         }
         if(term == null) {
-            return LastModifiedStamper.instance.stampOf(file);
+            return null;
         }
 
         final ParenExtractor parenExtractor = new ParenExtractor(context.termFactory());
         parenExtractor.visit(term);
-        return new ValueStamp<>(this, Pair.create(parenExtractor.getRelevantProds(), parenExtractor.getPriorities()));
+        return Pair.create(parenExtractor.getRelevantProds(), parenExtractor.getPriorities());
     }
 
 
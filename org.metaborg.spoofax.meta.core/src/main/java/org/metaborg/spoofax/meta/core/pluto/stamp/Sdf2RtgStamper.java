@@ -2,6 +2,9 @@ package org.metaborg.spoofax.meta.core.pluto.stamp;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
 
 import org.metaborg.core.syntax.ParseException;
 import org.metaborg.spoofax.meta.core.pluto.SpoofaxContext;
@@ -33,20 +36,27 @@ public class Sdf2RtgStamper implements Stamper {
             return new ValueStamp<>(this, null);
         }
 
+        final @Nullable Serializable value =
+            StampCache.of(context.depPath("stamps")).get("sdf2rtg", file, this::deliteralize);
+        if(value == null) {
+            return LastModifiedStamper.instance.stampOf(file);
+        }
+        return new ValueStamp<>(this, value);
+    }
+
+    private @Nullable IStrategoTerm deliteralize(File file) {
         final IStrategoTerm term;
         try {
             term = context.parse(file);
         } catch(ParseException | IOException e) {
-            return LastModifiedStamper.instance.stampOf(file);
+            return null;
         }
         if(term == null) {
-            return LastModifiedStamper.instance.stampOf(file);
+            return null;
         }
 
-
         final Deliteralize deliteralize = new Deliteralize(context.termFactory(), false);
-        final IStrategoTerm delit = deliteralize.transform(term);
-        return new ValueStamp<>(this, delit);
+        return deliteralize.transform(term);
     }
 
 
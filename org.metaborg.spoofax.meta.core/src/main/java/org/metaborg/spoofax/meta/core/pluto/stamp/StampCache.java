@@ -0,0 +1,159 @@
+package org.metaborg.spoofax.meta.core.pluto.stamp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.input.ClassLoaderObjectInputStream;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
+
+/**
+ * Persistent cache of expensive semantic stamp values, keyed by the content hash of the stamped file. Stampers that
+ * parse or transform a file to compute their stamp only recompute it when the bytes of the file change, instead of on
+ * every consistency check of pluto.
+ *
+ * Each entry is stored in a separate file in the cache directory, and is loaded lazily. Values must be serializable,
+ * which stamp values already are since pluto persists them. Only a bounded number of entries is kept in memory, evicted
+ * entries are read from their file again when needed.
+ */
+public class StampCache {
+    private static final ILogger logger = LoggerUtils.logger(StampCache.class);
+    private static final int maxCaches = 32;
+    private static final int maxEntries = 1024;
+    private static final LoadingCache<File, StampCache> caches =
+        CacheBuilder.newBuilder().maximumSize(maxCaches).build(CacheLoader.from(StampCache::new));
+
+    private final File directory;
+    private final Cache<String, Entry> entries = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+
+
+    private StampCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return Stamp cache that stores its entries in given directory.
+     */
+    public static StampCache of(File directory) {
+        return caches.getUnchecked(directory);
+    }
+
+    /**
+     * Drops all stamp caches from memory. Entries that were written to their cache directory are kept, and are read
+     * again when requested.
+     */
+    public static void cleanCache() {
+        caches.invalidateAll();
+    }
+
+
+    /**
+     * Gets the stamp value of given kind for given file, computing it only when no value for the current contents of
+     * the file is cached.
+     *
+     * @param kind
+     *            Kind of stamp, to distinguish stampers that stamp the same file.
+     * @param file
+     *            File to stamp.
+     * @param compute
+     *            Function that computes the stamp value of the file, or returns null if it cannot be computed. Null
+     *            values are not cached.
+     * @return Stamp value, or null if it could not be computed.
+     */
+    public @Nullable Serializable get(String kind, File file, Function<File, ? extends Serializable> compute) {
+        final String hash;
+        try {
+            hash = Hashing.murmur3_128().hashBytes(Files.readAllBytes(file.toPath())).toString();
+        } catch(IOException e) {
+            return compute.apply(file);
+        }
+
+        final String key = kind + ":" + file.getAbsolutePath();
+        @Nullable Entry entry = entries.getIfPresent(key);
+        if(entry == null) {
+            entry = read(key);
+        }
+        if(entry != null && entry.hash.equals(hash)) {
+            return entry.value;
+        }
+
+        final @Nullable Serializable value = compute.apply(file);
+        if(value != null) {
+            final Entry newEntry = new Entry(hash, value);
+            entries.put(key, newEntry);
+            write(key, newEntry);
+        }
+        return value;
+    }
+
+
+    private File entryFile(String key) {
+        return new File(directory, Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8) + ".stamp");
+    }
+
+    private @Nullable Entry read(String key) {
+        final File file = entryFile(key);
+        if(!file.exists()) {
+            return null;
+        }
+        // Stamp values may be instances of classes that are only visible to this bundle, resolve them with its class
+        // loader instead of the class loader that happens to be on the stack.
+        try(final ObjectInputStream in = new ClassLoaderObjectInputStream(StampCache.class.getClassLoader(),
+            new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if(!key.equals(in.readUTF())) {
+                return null;
+            }
+            final String hash = in.readUTF();
+            final Serializable value = (Serializable) in.readObject();
+            final Entry entry = new Entry(hash, value);
+            entries.asMap().putIfAbsent(key, entry);
+            return entry;
+        } catch(IOException | ClassNotFoundException | ClassCastException e) {
+            logger.debug("Reading cached stamp {} failed, recomputing it", e, file);
+            return null;
+        }
+    }
+
+    private void write(String key, Entry entry) {
+        final File file = entryFile(key);
+        try {
+            Files.createDirectories(directory.toPath());
+            try(final ObjectOutputStream out =
+                new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+                out.writeUTF(key);
+                out.writeUTF(entry.hash);
+                out.writeObject(entry.value);
+            }
+        } catch(IOException e) {
+            logger.warn("Writing cached stamp {} failed", e, file);
+            file.delete();
+        }
+    }
+
+
+    private static class Entry {
+        final String hash;
+        final Serializable value;
+
+        Entry(String hash, Serializable value) {
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package org.metaborg.spoofax.meta.core.pluto.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSelector;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.metaborg.util.file.IFileAccess;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * ZIP archiver that rebuilds an archive incrementally. A manifest next to the archive records, for each entry, the
+ * size and CRC-32 checksum of its source file, and where its compressed data is stored in the archive. Entries whose
+ * source file has the same contents are copied from the previous archive as raw compressed bytes, without
+ * recompressing them. Only changed entries are compressed again, and files in formats that are already compressed are
+ * stored without compression. ZIP64 extensions are not supported, building an archive that requires them fails.
+ *
+ * The manifest is only used if the archive has not been modified since it was written by this archiver; otherwise all
+ * entries are compressed again.
+ */
+public class IncrementalZipArchiver {
+    private static final ILogger logger = LoggerUtils.logger(IncrementalZipArchiver.class);
+
+    private static final int manifestVersion = 1;
+    private static final int localHeaderSignature = 0x04034b50;
+    private static final int centralHeaderSignature = 0x02014b50;
+    private static final int endOfCentralDirectorySignature = 0x06054b50;
+    private static final int versionNeeded = 20;
+    private static final int utf8Flag = 1 << 11;
+    private static final int extendedTimestampTag = 0x5455;
+    private static final int msDosDirectoryAttribute = 0x10;
+    private static final long maxZip32 = 0xFFFFFFFFL;
+    private static final int stored = 0;
+    private static final int deflated = 8;
+    private static final Set<String> compressedExtensions =
+        ImmutableSet.of("jar", "zip", "gz", "bz2", "xz", "png", "jpg", "jpeg", "gif", "ico", "spoofax-language");
+
+    private final File manifestFile;
+    private final Map<String, FileObject> files = new LinkedHashMap<>();
+
+
+    /**
+     * @param manifestFile
+     *            File to store the manifest of the archive in.
+     */
+    public IncrementalZipArchiver(File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+
+    public void addFile(String name, FileObject file) {
+        files.putIfAbsent(name, file);
+    }
+
+    public void addFileTo(FileName base, FileObject file) throws FileSystemException {
+        addFile(base.getRelativeName(file.getName()), file);
+    }
+
+    public void addFilesTo(FileName base, FileObject dir, FileSelector selector) throws FileSystemException {
+        final @Nullable FileObject[] found = dir.findFiles(selector);
+        if(found == null) {
+            return;
+        }
+        for(FileObject file : found) {
+            if(file.getType() == FileType.FILE) {
+                addFileTo(base, file);
+            }
+        }
+    }
+
+
+    /**
+     * Builds the archive from all added files, reusing compressed entries of the previous archive. Entries for the
+     * parent directories of added files are added as well.
+     *
+     * @param zipFile
+     *            Archive to build.
+     * @param access
+     *            File access to report read source files to, or null.
+     * @return Number of entries whose compressed data was reused from the previous archive.
+     * @throws IOException
+     *             When reading a file or writing the archive fails, or when the archive requires ZIP64 extensions,
+     *             which are not supported.
+     */
+    public int build(File zipFile, @Nullable IFileAccess access) throws IOException {
+        final Map<String, Entry> previous = readManifest(zipFile);
+        final List<Entry> entries = new ArrayList<>(files.size());
+        final Set<String> directories = new HashSet<>();
+        int reused = 0;
+
+        final File tempFile = new File(zipFile.getPath() + ".tmp");
+        Files.createDirectories(zipFile.getAbsoluteFile().getParentFile().toPath());
+        try(final RandomAccessFile previousZip = previous.isEmpty() ? null : new RandomAccessFile(zipFile, "r");
+            final CountingOutputStream out =
+                new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            for(Map.Entry<String, FileObject> pair : files.entrySet()) {
+                final String name = pair.getKey();
+                final FileObject file = pair.getValue();
+                if(access != null) {
+                    access.read(file);
+                }
+                final long modified = file.getContent().getLastModifiedTime();
+
+                for(String directory : parentDirectories(name)) {
+                    if(directories.add(directory)) {
+                        final Entry entry = new Entry(directory, modified, 0, 0, stored, 0, 0, 0);
+                        entries.add(writeEntry(out, entry, new byte[0], zipFile));
+                    }
+                }
+
+                // Only reuse compressed data when the contents are the same, since modification times and sizes do
+                // not reliably identify changes. Reading and checksumming is cheap compared to compressing.
+                final byte[] bytes;
+                try(final InputStream in = file.getContent().getInputStream()) {
+                    bytes = IOUtils.toByteArray(in);
+                }
+                final CRC32 crc = new CRC32();
+                crc.update(bytes);
+
+                final @Nullable Entry previousEntry = previous.get(name);
+                final Entry written;
+                if(previousZip != null && previousEntry != null && previousEntry.size == bytes.length
+                    && previousEntry.crc == crc.getValue()) {
+                    final Entry entry = new Entry(name, modified, bytes.length, crc.getValue(), previousEntry.method,
+                        previousEntry.compressedSize, 0, 0);
+                    written = writeEntry(out, entry, null, zipFile);
+                    copy(previousZip, previousEntry.dataOffset, previousEntry.compressedSize, out);
+                    ++reused;
+                } else {
+                    final @Nullable byte[] compressed = shouldCompress(name) ? deflate(bytes) : null;
+                    if(compressed != null && compressed.length < bytes.length) {
+                        final Entry entry = new Entry(name, modified, bytes.length, crc.getValue(), deflated,
+                            compressed.length, 0, 0);
+                        written = writeEntry(out, entry, compressed, zipFile);
+                    } else {
+                        final Entry entry =
+                            new Entry(name, modified, bytes.length, crc.getValue(), stored, bytes.length, 0, 0);
+                        written = writeEntry(out, entry, bytes, zipFile);
+                    }
+                }
+                entries.add(written);
+            }
+
+            if(entries.size() >= 0xFFFF) {
+                throw zip64Required(zipFile, entries.size() + " entries");
+            }
+            final long centralDirectoryOffset = out.count;
+            for(Entry entry : entries) {
+                writeCentralHeader(out, entry);
+            }
+            final long centralDirectorySize = out.count - centralDirectoryOffset;
+            if(centralDirectoryOffset > maxZip32 || centralDirectorySize > maxZip32) {
+                throw zip64Required(zipFile, "a central directory at offset " + centralDirectoryOffset);
+            }
+            writeEndOfCentralDirectory(out, entries.size(), centralDirectorySize, centralDirectoryOffset);
+        } catch(IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile.toPath());
+            throw e;
+        }
+
+        Files.move(tempFile.toPath(), zipFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        writeManifest(zipFile, entries);
+        logger.debug("Archived {} entries to {}, reused {} unchanged entries", entries.size(), zipFile, reused);
+        return reused;
+    }
+
+
+    /**
+     * Writes the local header of given entry, followed by given data if not null. The caller writes the data
+     * otherwise.
+     *
+     * @return Given entry, at the offsets it was written to.
+     */
+    private static Entry writeEntry(CountingOutputStream out, Entry entry, @Nullable byte[] data, File zipFile)
+        throws IOException {
+        if(entry.size > maxZip32 || entry.compressedSize > maxZip32) {
+            throw zip64Required(zipFile, "entry " + entry.name + " of " + entry.size + " bytes");
+        }
+        final long headerOffset = out.count;
+        if(headerOffset > maxZip32) {
+            throw zip64Required(zipFile, "entry " + entry.name + " at offset " + headerOffset);
+        }
+        writeLocalHeader(out, entry);
+        final Entry written = entry.at(headerOffset, out.count);
+        if(data != null) {
+            out.write(data);
+        }
+        return written;
+    }
+
+    private static IOException zip64Required(File zipFile, String reason) {
+        return new IOException(
+            "Cannot archive " + zipFile + ", " + reason + " requires ZIP64 extensions, which are not supported");
+    }
+
+    /**
+     * @return Names of the directory entries of all parent directories of given entry name, outermost first.
+     */
+    private static List<String> parentDirectories(String name) {
+        final List<String> directories = new ArrayList<>();
+        int index = name.indexOf('/');
+        while(index >= 0) {
+            directories.add(name.substring(0, index + 1));
+            index = name.indexOf('/', index + 1);
+        }
+        return directories;
+    }
+
+    private static boolean shouldCompress(String name) {
+        return !compressedExtensions.contains(FilenameUtils.getExtension(name).toLowerCase(Locale.ROOT));
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+            final byte[] buffer = new byte[8192];
+            while(!deflater.finished()) {
+                final int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void copy(RandomAccessFile from, long offset, long length, OutputStream to) throws IOException {
+        from.seek(offset);
+        final byte[] buffer = new byte[8192];
+        long remaining = length;
+        while(remaining > 0) {
+            final int count = from.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if(count < 0) {
+                throw new IOException("Unexpected end of previous archive");
+            }
+            to.write(buffer, 0, count);
+            remaining -= count;
+        }
+    }
+
+
+    private static void writeLocalHeader(CountingOutputStream out, Entry entry) throws IOException {
+        final byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(localHeaderSignature);
+        out.writeShort(versionNeeded);
+        out.writeShort(utf8Flag);
+        out.writeShort(entry.method);
+        out.writeInt(dosTime(entry.modified));
+        out.writeInt((int) entry.crc);
+        out.writeInt((int) entry.compressedSize);
+        out.writeInt((int) entry.size);
+        out.writeShort(name.length);
+        out.writeShort(extendedTimestampLength(entry));
+        out.write(name);
+        writeExtendedTimestamp(out, entry);
+    }
+
+    private static void writeCentralHeader(CountingOutputStream out, Entry entry) throws IOException {
+        final byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(centralHeaderSignature);
+        out.writeShort(versionNeeded);
+        out.writeShort(versionNeeded);
+        out.writeShort(utf8Flag);
+        out.writeShort(entry.method);
+        out.writeInt(dosTime(entry.modified));
+        out.writeInt((int) entry.crc);
+        out.writeInt((int) entry.compressedSize);
+        out.writeInt((int) entry.size);
+        out.writeShort(name.length);
+        out.writeShort(extendedTimestampLength(entry));
+        out.writeShort(0); // Comment length
+        out.writeShort(0); // Disk number
+        out.writeShort(0); // Internal attributes
+        out.writeInt(entry.isDirectory() ? msDosDirectoryAttribute : 0); // External attributes
+        out.writeInt((int) entry.headerOffset);
+        out.write(name);
+        writeExtendedTimestamp(out, entry);
+    }
+
+    /**
+     * The DOS time in the headers is in local time with a precision of two seconds. Also write the modification time in
+     * UTC seconds in an extended timestamp field, which readers prefer when present.
+     */
+    private static void writeExtendedTimestamp(CountingOutputStream out, Entry entry) throws IOException {
+        if(extendedTimestampLength(entry) == 0) {
+            return;
+        }
+        out.writeShort(extendedTimestampTag);
+        out.writeShort(5);
+        out.write(1); // Modification time present
+        out.writeInt((int) (entry.modified / 1000));
+    }
+
+    private static int extendedTimestampLength(Entry entry) {
+        final long seconds = entry.modified / 1000;
+        return seconds >= 0 && seconds <= Integer.MAX_VALUE ? 9 : 0;
+    }
+
+    private static void writeEndOfCentralDirectory(CountingOutputStream out, int count, long size, long offset)
+        throws IOException {
+        out.writeInt(endOfCentralDirectorySignature);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(count);
+        out.writeShort(count);
+        out.writeInt((int) size);
+        out.writeInt((int) offset);
+        out.writeShort(0);
+    }
+
+    private static int dosTime(long time) {
+        final LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if(date.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (date.getYear() - 1980) << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16
+            | date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1;
+    }
+
+
+    private Map<String, Entry> readManifest(File zipFile) {
+        final Map<String, Entry> entries = new HashMap<>();
+        if(!manifestFile.exists() || !zipFile.exists()) {
+            return entries;
+        }
+        try(final DataInputStream in =
+            new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestFile.toPath())))) {
+            if(in.readInt() != manifestVersion || in.readLong() != zipFile.length()
+                || in.readLong() != zipFile.lastModified()) {
+                logger.debug("Archive {} was changed since it was last built, rebuilding all entries", zipFile);
+                return entries;
+            }
+            final int count = in.readInt();
+            for(int i = 0; i < count; ++i) {
+                final Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readLong(), in.readInt(),
+                    in.readLong(), in.readLong(), in.readLong());
+                entries.put(entry.name, entry);
+            }
+        } catch(IOException e) {
+            logger.warn("Reading archive manifest {} failed, rebuilding all entries", e, manifestFile);
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private void writeManifest(File zipFile, List<Entry> entries) throws IOException {
+        Files.createDirectories(manifestFile.getAbsoluteFile().getParentFile().toPath());
+        try(final DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(manifestFile.toPath())))) {
+            out.writeInt(manifestVersion);
+            out.writeLong(zipFile.length());
+            out.writeLong(zipFile.lastModified());
+            out.writeInt(entries.size());
+            for(Entry entry : entries) {
+                out.writeUTF(entry.name);
+                out.writeLong(entry.modified);
+                out.writeLong(entry.size);
+                out.writeLong(entry.crc);
+                out.writeInt(entry.method);
+                out.writeLong(entry.compressedSize);
+                out.writeLong(entry.headerOffset);
+                out.writeLong(entry.dataOffset);
+            }
+        }
+    }
+
+
+    private static class Entry {
+        final String name;
+        final long modified;
+        final long size;
+        final long crc;
+        final int method;
+        final long compressedSize;
+        final long headerOffset;
+        final long dataOffset;
+
+        Entry(String name, long modified, long size, long crc, int method, long compressedSize, long headerOffset,
+            long dataOffset) {
+            this.name = name;
+            this.modified = modified;
+            this.size = size;
+            this.crc = crc;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.headerOffset = headerOffset;
+            this.dataOffset = dataOffset;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        Entry at(long headerOffset, long dataOffset) {
+            return new Entry(name, modified, size, crc, method, compressedSize, headerOffset, dataOffset);
+        }
+    }
+
+    /**
+     * Output stream that counts the written bytes, and writes little-endian integers as required by the ZIP format.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        void writeShort(int value) throws IOException {
+            write(value & 0xFF);
+            write((value >>> 8) & 0xFF);
+        }
+
+        void writeInt(int value) throws IOException {
+            writeShort(value & 0xFFFF);
+            writeShort((value >>> 16) & 0xFFFF);
+        }
+
+        @Override public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override public void close() throws IOException {
+            out.close();
+        }
+    }
+}
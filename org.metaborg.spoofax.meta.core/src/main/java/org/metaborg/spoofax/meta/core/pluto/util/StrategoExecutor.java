@@ -43,9 +43,13 @@ public class StrategoExecutor {
 
     private static final ILogger log = LoggerUtils.logger("Build log");
 
-    private static Context strategoSdfContext;
-    private static Context permissiveGrammarsContext;
-    private static Context toolsContext;
+    // Contexts are confined to a thread, such that several builds can execute Stratego concurrently. Their dynamic rule
+    // and table state is reset after each execution.
+    private static final ThreadLocal<Context> strategoSdfContexts = ThreadLocal.withInitial(stratego_sdf::init);
+    private static final ThreadLocal<Context> permissiveGrammarsContexts =
+        ThreadLocal.withInitial(org.strategoxt.permissivegrammars.permissivegrammars::init);
+    private static final ThreadLocal<Context> toolsContexts =
+        ThreadLocal.withInitial(org.strategoxt.tools.tools::init);
 
     private Context context;
     private Strategy strategy;
@@ -61,31 +65,23 @@ public class StrategoExecutor {
     }
 
     public StrategoExecutor withSdfContext() {
-        if(strategoSdfContext == null) {
-            strategoSdfContext = stratego_sdf.init();
-        }
-        withContext(strategoSdfContext);
+        withContext(strategoSdfContexts.get());
         return this;
     }
 
     public StrategoExecutor withPermissiveGrammarsContext() {
-        if(permissiveGrammarsContext == null) {
-            permissiveGrammarsContext = org.strategoxt.permissivegrammars.permissivegrammars.init();
-        }
-        withContext(permissiveGrammarsContext);
+        withContext(permissiveGrammarsContexts.get());
         return this;
     }
 
     public StrategoExecutor withToolsContext() {
-        if(toolsContext == null) {
-            toolsContext = org.strategoxt.tools.tools.init();
-        }
-        withContext(toolsContext);
+        withContext(toolsContexts.get());
         return this;
     }
 
     public StrategoExecutor withStrjContext() {
-        // strj requires a fresh context each time.
+        // strj requires a fresh context each time, since compiler state such as newname counters is kept in the
+        // context, and would make the generated code depend on earlier compilations.
         withContext(org.strategoxt.strj.strj.init());
         return this;
     }
@@ -6,12 +6,18 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.vfs2.AllFileSelector;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
 import org.metaborg.core.MetaborgException;
 import org.metaborg.core.build.paths.ILanguagePathService;
 import org.metaborg.core.config.ConfigException;
@@ -24,6 +30,7 @@ import org.metaborg.spoofax.meta.core.build.SpoofaxLangSpecCommonPaths;
 import org.metaborg.spoofax.meta.core.config.ISpoofaxLanguageSpecConfig;
 import org.metaborg.spoofax.meta.core.pluto.build.main.GenerateSourcesBuilder;
 import org.metaborg.spoofax.meta.core.pluto.build.main.IPieProvider;
+import org.metaborg.spoofax.meta.core.pluto.build.main.StrategoFileManifest;
 import org.metaborg.spoofax.meta.core.project.ISpoofaxLanguageSpec;
 import org.metaborg.spoofax.meta.core.project.ISpoofaxLanguageSpecService;
 import org.metaborg.util.cmd.Arguments;
@@ -40,6 +47,7 @@ import org.spoofax.terms.attachments.OriginAttachment;
 import org.spoofax.terms.util.B;
 import org.spoofax.terms.util.TermUtils;
 
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
@@ -48,7 +56,6 @@ import mb.pie.api.MixedSession;
 import mb.pie.api.Pie;
 import mb.pie.api.STask;
 import mb.pie.api.Task;
-import mb.resource.ResourceKey;
 import mb.resource.fs.FSPath;
 import mb.resource.hierarchical.ResourcePath;
 import mb.stratego.build.strincr.Frontends;
@@ -67,6 +74,8 @@ public class StrategoPieAnalyzePrimitive extends ASpoofaxContextPrimitive implem
     private final ILanguagePathService languagePathService;
     private final IResourceService resourceService;
 
+    private final ConcurrentMap<FileName, ProjectAnalysis> analysisPerLanguageSpec = Maps.newConcurrentMap();
+
     @Inject public StrategoPieAnalyzePrimitive(Provider<StrIncrAnalysis> strIncrAnalysisProvider,
         ILanguagePathService languagePathService, IResourceService resourceService) {
         super("stratego_pie_analyze", 0, 0);
@@ -121,12 +130,122 @@ public class StrategoPieAnalyzePrimitive extends ASpoofaxContextPrimitive implem
 
         final String strExternalJarFlags = config.strExternalJarFlags();
 
-        final Iterable<FileObject> strIncludePaths =
-            languagePathService.sourceAndIncludePaths(languageSpec, SpoofaxConstants.LANG_STRATEGO_NAME);
+        final File projectLocation = resourceService.localPath(paths.root());
+        assert projectLocation != null;
+
+        final ProjectAnalysis analysis = getAnalysis(baseLoc.getName());
+        synchronized(analysis) {
+            final Iterable<FileObject> strIncludePaths =
+                languagePathService.sourceAndIncludePaths(languageSpec, SpoofaxConstants.LANG_STRATEGO_NAME);
+            final List<String> includePathsKey = includePathsKey(strIncludePaths);
+            if(!includePathsKey.equals(analysis.includePathsKey)) {
+                analysis.strjIncludeDirs = replicateIncludes(strIncludePaths, paths);
+                analysis.manifestLocations = manifestLocations(projectLocation, strIncludePaths);
+                analysis.includePathsKey = includePathsKey;
+            }
+
+            final Arguments extraArgs = new Arguments();
+            extraArgs.addAll(config.strArgs());
+
+            extraArgs.add("-la", "java-front");
+
+            if(strExternalJarFlags != null) {
+                extraArgs.addLine(strExternalJarFlags);
+            }
+
+            final List<STask<?>> sdfTasks = Collections.emptyList();
+
+            final Arguments newArgs = new Arguments();
+            final List<String> builtinLibs = GenerateSourcesBuilder.splitOffBuiltinLibs(extraArgs, newArgs);
+            Collection<STask<?>> originTasks = sdfTasks;
+            Frontends.Input strIncrAnalysisInput = new Frontends.Input(new FSPath(strFile), analysis.strjIncludeDirs,
+                builtinLibs, originTasks, new FSPath(projectLocation), config.strGradualSetting());
+            if(analysis.task == null || !strIncrAnalysisInput.equals(analysis.input)) {
+                analysis.input = strIncrAnalysisInput;
+                analysis.task = strIncrAnalysisProvider.get().createTask(strIncrAnalysisInput);
+                analysis.messagesPerModule = null;
+            }
+
+            // Serve messages from the table of the previous analysis if no Stratego file was affected since. Replicated
+            // include paths live inside the project, local include paths outside of it are walked separately.
+            final Set<Path> changedFiles = analysis.manifest.changedFiles(analysis.manifestLocations);
+            if(analysis.messagesPerModule == null || !changedFiles.isEmpty()) {
+                final @Nullable Map<String, List<Message<?>>> messagesPerModule = analyze(analysis.task);
+                if(messagesPerModule == null) {
+                    analysis.messagesPerModule = null;
+                    return messagesTuple(Collections.emptyList());
+                }
+                analysis.messagesPerModule = messagesPerModule;
+                analysis.manifest.commit();
+            } else {
+                logger.trace("No Stratego files changed, returning messages of previous analysis for {}", path);
+            }
+
+            return messagesTuple(analysis.messagesPerModule.getOrDefault(path, Collections.emptyList()));
+        }
+    }
+
+    private ProjectAnalysis getAnalysis(FileName location) {
+        ProjectAnalysis analysis = analysisPerLanguageSpec.get(location);
+        if(analysis == null) {
+            final ProjectAnalysis newAnalysis = new ProjectAnalysis();
+            analysis = analysisPerLanguageSpec.putIfAbsent(location, newAnalysis);
+            if(analysis == null) {
+                analysis = newAnalysis;
+            }
+        }
+        return analysis;
+    }
+
+    /**
+     * @return Key that identifies given include paths and their modification times, used to only replicate include
+     *         paths when they change. Folders inside an archive take the modification time of the archive, such that
+     *         their replicas are refreshed when the archive changes.
+     */
+    private static List<String> includePathsKey(Iterable<FileObject> strIncludePaths) throws FileSystemException {
+        final List<String> key = new ArrayList<>();
+        for(FileObject strIncludePath : strIncludePaths) {
+            if(!strIncludePath.exists()) {
+                continue;
+            }
+            final long lastModified;
+            if(strIncludePath.isFile()) {
+                lastModified = strIncludePath.getContent().getLastModifiedTime();
+            } else {
+                final @Nullable FileObject archive = strIncludePath.getFileSystem().getParentLayer();
+                lastModified = archive != null && archive.isFile() ? archive.getContent().getLastModifiedTime() : 0;
+            }
+            key.add(strIncludePath.getName().getURI() + "@" + lastModified);
+        }
+        return key;
+    }
+
+    /**
+     * @return Locations to walk for changed Stratego files: the project location, and all local include folders
+     *         outside of the project. Include paths that are not local are replicated into the project.
+     */
+    private List<File> manifestLocations(File projectLocation, Iterable<FileObject> strIncludePaths)
+        throws FileSystemException {
+        final Path projectPath = projectLocation.toPath().toAbsolutePath().normalize();
+        final List<File> locations = new ArrayList<>();
+        locations.add(projectLocation);
+        for(FileObject strIncludePath : strIncludePaths) {
+            if(!strIncludePath.exists() || !strIncludePath.isFolder()) {
+                continue;
+            }
+            final @Nullable File localPath = resourceService.localPath(strIncludePath);
+            if(localPath != null && !localPath.toPath().toAbsolutePath().normalize().startsWith(projectPath)) {
+                locations.add(localPath);
+            }
+        }
+        return locations;
+    }
+
+    private List<ResourcePath> replicateIncludes(Iterable<FileObject> strIncludePaths,
+        SpoofaxLangSpecCommonPaths paths) throws FileSystemException {
         final FileObject strjIncludesReplicateDir = paths.replicateDir().resolveFile("strj-includes");
         strjIncludesReplicateDir.delete(new AllFileSelector());
         final List<ResourcePath> strjIncludeDirs = new ArrayList<>();
-        final List<File> strjIncludeFiles = new ArrayList<>();
         for(FileObject strIncludePath : strIncludePaths) {
             if(!strIncludePath.exists()) {
                 continue;
@@ -135,72 +254,57 @@ public class StrategoPieAnalyzePrimitive extends ASpoofaxContextPrimitive implem
                 strjIncludeDirs.add(new FSPath(resourceService.localFile(strIncludePath, strjIncludesReplicateDir)));
             }
             if(strIncludePath.isFile()) {
-                strjIncludeFiles.add(resourceService.localFile(strIncludePath, strjIncludesReplicateDir));
+                // Single include files are not passed to the analysis, but are still replicated.
+                resourceService.localFile(strIncludePath, strjIncludesReplicateDir);
             }
         }
+        return strjIncludeDirs;
+    }
 
-        final Arguments extraArgs = new Arguments();
-        extraArgs.addAll(config.strArgs());
-
-        extraArgs.add("-la", "java-front");
-
-        if(strExternalJarFlags != null) {
-            extraArgs.addLine(strExternalJarFlags);
-        }
-
-        final File projectLocation = resourceService.localPath(paths.root());
-        assert projectLocation != null;
-
-        final List<STask<?>> sdfTasks = Collections.emptyList();
-
-        // Gather all Stratego files to be checked for changes
-        final Set<Path> changedFiles = GenerateSourcesBuilder.getChangedFiles(projectLocation);
-        final Set<ResourceKey> changedResources = new HashSet<>(changedFiles.size() * 2);
-        for(Path changedFile : changedFiles) {
-            changedResources.add(new FSPath(changedFile));
-        }
-
-        final Arguments newArgs = new Arguments();
-        final List<String> builtinLibs = GenerateSourcesBuilder.splitOffBuiltinLibs(extraArgs, newArgs);
-        Collection<STask<?>> originTasks = sdfTasks;
-        Frontends.Input strIncrAnalysisInput =
-            new Frontends.Input(new FSPath(strFile), strjIncludeDirs, builtinLibs, originTasks, new FSPath(projectLocation), config.strGradualSetting());
-        final Task<Output> strIncrAnalysisTask = strIncrAnalysisProvider.get().createTask(strIncrAnalysisInput);
-
+    /**
+     * @return Messages of the analysis per module file path, or null if the analysis was interrupted.
+     */
+    private @Nullable Map<String, List<Message<?>>> analyze(Task<Output> strIncrAnalysisTask)
+        throws MetaborgException {
         final Pie pie = GenerateSourcesBuilder.initCompiler(pieProviderProvider.get(), strIncrAnalysisTask);
 
-        final IStrategoList.Builder errors = B.listBuilder();
-        final IStrategoList.Builder warnings = B.listBuilder();
-        final IStrategoList.Builder notes = B.listBuilder();
+        final Map<String, List<Message<?>>> messagesPerModule = new HashMap<>();
         try(final MixedSession session = pie.newSession()) {
             Frontends.Output analysisInformation = session.require(strIncrAnalysisTask);
 
             for(Message<?> message : analysisInformation.messages) {
-                if(message.moduleFilePath.equals(path)) {
-                    final ImploderAttachment imploderAttachment = ImploderAttachment.get(OriginAttachment.tryGetOrigin(message.locationTerm));
-                    if(imploderAttachment == null) {
-                        logger.debug("No origins for message: " + message);
-                    }
-                    final IStrategoTuple messageTuple = B.tuple(message.locationTerm, B.string(message.getMessage()));
-                    switch(message.severity) {
-                        case ERROR:
-                            errors.add(messageTuple);
-                            break;
-                        case NOTE:
-                            notes.add(messageTuple);
-                            break;
-                        case WARNING:
-                            warnings.add(messageTuple);
-                            break;
-                    }
-                }
+                messagesPerModule.computeIfAbsent(message.moduleFilePath, k -> new ArrayList<>()).add(message);
             }
         } catch(ExecException e) {
             throw new MetaborgException("Incremental Stratego build failed", e);
         } catch(InterruptedException e) {
-            // Ignore
+            return null;
         }
+        return messagesPerModule;
+    }
 
+    private static IStrategoTuple messagesTuple(List<Message<?>> messages) {
+        final IStrategoList.Builder errors = B.listBuilder();
+        final IStrategoList.Builder warnings = B.listBuilder();
+        final IStrategoList.Builder notes = B.listBuilder();
+        for(Message<?> message : messages) {
+            final ImploderAttachment imploderAttachment = ImploderAttachment.get(OriginAttachment.tryGetOrigin(message.locationTerm));
+            if(imploderAttachment == null) {
+                logger.debug("No origins for message: " + message);
+            }
+            final IStrategoTuple messageTuple = B.tuple(message.locationTerm, B.string(message.getMessage()));
+            switch(message.severity) {
+                case ERROR:
+                    errors.add(messageTuple);
+                    break;
+                case NOTE:
+                    notes.add(messageTuple);
+                    break;
+                case WARNING:
+                    warnings.add(messageTuple);
+                    break;
+            }
+        }
         return B.tuple(B.list(errors), B.list(warnings), B.list(notes));
     }
 
@@ -225,7 +329,23 @@ public class StrategoPieAnalyzePrimitive extends ASpoofaxContextPrimitive implem
     }
 
     @Override public void close() throws Exception {
+        analysisPerLanguageSpec.clear();
         pieProviderProvider = null;
         languageSpecServiceProvider = null;
     }
+
+
+    /**
+     * Analysis state of a language specification, which is reused between calls while the Stratego files, include
+     * paths, and configuration of the language specification do not change.
+     */
+    private static class ProjectAnalysis {
+        final StrategoFileManifest manifest = StrategoFileManifest.inMemory();
+        @Nullable List<String> includePathsKey;
+        List<ResourcePath> strjIncludeDirs = Collections.emptyList();
+        List<File> manifestLocations = Collections.emptyList();
+        @Nullable Frontends.Input input;
+        @Nullable Task<Output> task;
+        @Nullable Map<String, List<Message<?>>> messagesPerModule;
+    }
 }
@@ -0,0 +1,175 @@
+package org.metaborg.spoofax.meta.core.test.pluto.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metaborg.spoofax.meta.core.pluto.util.IncrementalZipArchiver;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+
+public class IncrementalZipArchiverTest {
+    private static final long modified = 1_500_000_000_000L;
+
+    @Rule public final TemporaryFolder temp = new TemporaryFolder();
+
+    private StandardFileSystemManager manager;
+
+
+    @Before public void setUp() throws Exception {
+        manager = new StandardFileSystemManager();
+        manager.init();
+    }
+
+    @After public void tearDown() {
+        manager.close();
+    }
+
+
+    @Test public void roundTrip() throws Exception {
+        final File a = file("a.txt", Strings.repeat("compressible ", 100));
+        final File b = file("dir/sub/b.str", "module b");
+        final File icon = file("icon.png", Strings.repeat("png", 100));
+        final File zipFile = new File(temp.getRoot(), "out/archive.zip");
+
+        final IncrementalZipArchiver archiver = archiver();
+        archiver.addFile("a.txt", resolve(a));
+        archiver.addFile("dir/sub/b.str", resolve(b));
+        archiver.addFile("icon.png", resolve(icon));
+        assertEquals(0, archiver.build(zipFile, null));
+
+        try(final ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(5, zip.size());
+            assertTrue(zip.getEntry("dir/").isDirectory());
+            assertTrue(zip.getEntry("dir/sub/").isDirectory());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("a.txt").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("icon.png").getMethod());
+            // Modification time is read from the extended timestamp, independent of the time zone.
+            assertEquals(modified, zip.getEntry("a.txt").getLastModifiedTime().toMillis());
+        }
+        assertContents(zipFile, "a.txt", a, "dir/sub/b.str", b, "icon.png", icon);
+
+        final FileObject zipRoot = manager.resolveFile("zip:" + zipFile.toURI() + "!/");
+        assertEquals(FileType.FOLDER, zipRoot.resolveFile("dir/sub").getType());
+        assertVfsContents(zipRoot, "a.txt", a);
+        assertVfsContents(zipRoot, "dir/sub/b.str", b);
+        assertVfsContents(zipRoot, "icon.png", icon);
+    }
+
+    @Test public void reusesUnchangedEntries() throws Exception {
+        final File a = file("a.txt", Strings.repeat("unchanged ", 100));
+        final File b = file("b.txt", Strings.repeat("original ", 100));
+        final File c = file("c.txt", Strings.repeat("removed ", 100));
+        final File zipFile = new File(temp.getRoot(), "archive.zip");
+
+        final IncrementalZipArchiver first = archiver();
+        first.addFile("a.txt", resolve(a));
+        first.addFile("b.txt", resolve(b));
+        first.addFile("c.txt", resolve(c));
+        first.build(zipFile, null);
+
+        // Change b without changing its size and modification time, and remove c.
+        file("b.txt", Strings.repeat("changed! ", 100));
+        final IncrementalZipArchiver second = archiver();
+        second.addFile("a.txt", resolve(a));
+        second.addFile("b.txt", resolve(b));
+        assertEquals(1, second.build(zipFile, null));
+
+        assertContents(zipFile, "a.txt", a, "b.txt", b);
+        final FileObject zipRoot = manager.resolveFile("zip:" + zipFile.toURI() + "!/");
+        assertVfsContents(zipRoot, "a.txt", a);
+        assertVfsContents(zipRoot, "b.txt", b);
+        assertFalse(zipRoot.resolveFile("c.txt").exists());
+
+        // Building again reuses all entries, also from an archive with reused entries.
+        final IncrementalZipArchiver third = archiver();
+        third.addFile("a.txt", resolve(a));
+        third.addFile("b.txt", resolve(b));
+        assertEquals(2, third.build(zipFile, null));
+        assertContents(zipFile, "a.txt", a, "b.txt", b);
+    }
+
+    @Test public void failsWhenZip64IsRequired() throws Exception {
+        final File icon = file("icon.png", "png");
+        final FileObject iconObject = resolve(icon);
+        final File zipFile = new File(temp.getRoot(), "archive.zip");
+
+        final IncrementalZipArchiver archiver = archiver();
+        for(int i = 0; i < 0xFFFF; ++i) {
+            archiver.addFile("icon" + i + ".png", iconObject);
+        }
+        try {
+            archiver.build(zipFile, null);
+            fail("Expected building an archive with 65535 entries to fail");
+        } catch(IOException e) {
+            assertTrue(e.getMessage().contains("ZIP64"));
+        }
+        assertFalse(zipFile.exists());
+        assertFalse(new File(zipFile.getPath() + ".tmp").exists());
+    }
+
+
+    private IncrementalZipArchiver archiver() {
+        return new IncrementalZipArchiver(new File(temp.getRoot(), "archive.manifest"));
+    }
+
+    private File file(String name, String text) throws IOException {
+        final File file = new File(temp.getRoot(), "src/" + name);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(modified));
+        return file;
+    }
+
+    private FileObject resolve(File file) throws IOException {
+        return manager.toFileObject(file);
+    }
+
+    private void assertContents(File zipFile, Object... expected) throws IOException {
+        final Map<String, byte[]> contents = Maps.newHashMap();
+        try(final ZipFile zip = new ZipFile(zipFile)) {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while(entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if(!entry.isDirectory()) {
+                    try(final InputStream in = zip.getInputStream(entry)) {
+                        contents.put(entry.getName(), IOUtils.toByteArray(in));
+                    }
+                }
+            }
+        }
+        assertEquals(expected.length / 2, contents.size());
+        for(int i = 0; i < expected.length; i += 2) {
+            final File file = (File) expected[i + 1];
+            assertArrayEquals(Files.readAllBytes(file.toPath()), contents.remove(expected[i]));
+        }
+    }
+
+    private void assertVfsContents(FileObject zipRoot, String name, File expected) throws IOException {
+        try(final InputStream in = zipRoot.resolveFile(name).getContent().getInputStream()) {
+            assertArrayEquals(Files.readAllBytes(expected.toPath()), IOUtils.toByteArray(in));
+        }
+    }
+}